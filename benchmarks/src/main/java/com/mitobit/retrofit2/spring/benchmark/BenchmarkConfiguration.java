@@ -0,0 +1,15 @@
+package com.mitobit.retrofit2.spring.benchmark;
+
+import com.mitobit.retrofit2.spring.EnableRetrofitServices;
+
+/**
+ * Configuration scanning the benchmark package for the service interfaces of the per-call benchmarks. Not a
+ * {@code @Configuration} class, so that no CGLIB proxy is involved and the benchmarks run on any JDK without extra
+ * module flags.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+@EnableRetrofitServices("com.mitobit.retrofit2.spring.benchmark")
+public class BenchmarkConfiguration {
+
+}
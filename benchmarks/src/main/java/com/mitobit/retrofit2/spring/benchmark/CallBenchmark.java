@@ -0,0 +1,171 @@
+package com.mitobit.retrofit2.spring.benchmark;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ServerSocketFactory;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.mitobit.retrofit2.spring.RetrofitConstants;
+import com.mitobit.retrofit2.spring.benchmark.services.ItemService;
+
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+/**
+ * Measures the per-call overhead of the services against a local {@link MockWebServer}: a plain OkHttp call, a plain
+ * Retrofit service, the service bean of the context and the same bean exposed as a lazy proxy, all sharing one client.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CallBenchmark {
+
+	private static final String BODY = "{\"id\":\"42\",\"name\":\"item\",\"price\":12.5,\"available\":true}";
+
+	private MockWebServer server;
+
+	private AnnotationConfigApplicationContext context;
+
+	private AnnotationConfigApplicationContext lazyContext;
+
+	private OkHttpClient httpClient;
+
+	private Request request;
+
+	private ItemService retrofitService;
+
+	private ItemService service;
+
+	private ItemService lazyService;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new MockWebServer();
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				return new MockResponse().setHeader("Content-Type", "application/json").setBody(BODY);
+			}
+		});
+		server.setServerSocketFactory(new NoDelayServerSocketFactory());
+		server.start();
+		String url = server.url("/").toString();
+		System.setProperty("benchmark.url", url);
+		context = new AnnotationConfigApplicationContext(BenchmarkConfiguration.class);
+		lazyContext = new AnnotationConfigApplicationContext(LazyBenchmarkConfiguration.class);
+		service = context.getBean(ItemService.class);
+		lazyService = lazyContext.getBean(ItemService.class);
+		httpClient = context.getBean(RetrofitConstants.HTTP_CLIENT_BEAN_NAME, OkHttpClient.class);
+		request = new Request.Builder().url(url + "items/42").build();
+		retrofitService = new Retrofit.Builder().baseUrl(url).client(httpClient)
+				.addConverterFactory(JacksonConverterFactory.create()).build().create(ItemService.class);
+	}
+
+	/**
+	 * Disables Nagle's algorithm on the accepted sockets, otherwise the response headers and body, written separately by
+	 * the server, wait for the delayed acknowledgement of the client and every call takes about 40 ms.
+	 */
+	private static class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+		@Override
+		public ServerSocket createServerSocket() throws IOException {
+			return new NoDelayServerSocket();
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port) throws IOException {
+			return createServerSocket(port, 50, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+			return createServerSocket(port, backlog, null);
+		}
+
+		@Override
+		public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+			ServerSocket serverSocket = new NoDelayServerSocket();
+			serverSocket.bind(new InetSocketAddress(address, port), backlog);
+			return serverSocket;
+		}
+	}
+
+	private static class NoDelayServerSocket extends ServerSocket {
+
+		NoDelayServerSocket() throws IOException {
+			super();
+		}
+
+		@Override
+		public Socket accept() throws IOException {
+			Socket socket = super.accept();
+			socket.setTcpNoDelay(true);
+			return socket;
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		lazyContext.close();
+		context.close();
+		server.shutdown();
+		System.clearProperty("benchmark.url");
+	}
+
+	@Benchmark
+	public String okhttp() throws IOException {
+		Response response = httpClient.newCall(request).execute();
+		try {
+			return response.body().string();
+		} finally {
+			response.close();
+		}
+	}
+
+	@Benchmark
+	public Map<String, Object> retrofit() throws IOException {
+		return retrofitService.get("42").execute().body();
+	}
+
+	@Benchmark
+	public Map<String, Object> service() throws IOException {
+		return service.get("42").execute().body();
+	}
+
+	@Benchmark
+	public Map<String, Object> lazyService() throws IOException {
+		return lazyService.get("42").execute().body();
+	}
+
+}
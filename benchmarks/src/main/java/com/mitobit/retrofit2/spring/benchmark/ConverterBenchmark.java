@@ -0,0 +1,142 @@
+package com.mitobit.retrofit2.spring.benchmark;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.mitobit.retrofit2.spring.DataFormat;
+import com.mitobit.retrofit2.spring.JacksonConverterFactoryBean;
+
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Compares the converters of the {@link JacksonConverterFactoryBean}: JSON with an untuned {@link ObjectMapper}, JSON
+ * with the Afterburner module, Smile and CBOR, reading and writing a catalog of 100 items.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ConverterBenchmark {
+
+	private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+	@Param({ "JSON_UNTUNED", "JSON", "SMILE", "CBOR" })
+	public String format;
+
+	private Converter<ResponseBody, ?> responseConverter;
+
+	private Converter<Catalog, RequestBody> requestConverter;
+
+	private MediaType mediaType;
+
+	private Catalog catalog;
+
+	private byte[] encoded;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setUp() throws Exception {
+		JacksonConverterFactoryBean factoryBean = new JacksonConverterFactoryBean();
+		if ("JSON_UNTUNED".equals(format)) {
+			factoryBean.setObjectMapper(new ObjectMapper());
+			mediaType = DataFormat.JSON.getMediaType();
+		} else {
+			// the internal mapper registers Afterburner, on the classpath of the benchmarks
+			DataFormat dataFormat = DataFormat.valueOf(format);
+			factoryBean.setDataFormats(dataFormat == DataFormat.JSON ? new DataFormat[] { dataFormat }
+					: new DataFormat[] { dataFormat, DataFormat.JSON });
+			mediaType = dataFormat.getMediaType();
+		}
+		factoryBean.afterPropertiesSet();
+		Converter.Factory converterFactory = factoryBean.getObject();
+		Retrofit retrofit = new Retrofit.Builder().baseUrl("http://localhost/").build();
+		responseConverter = converterFactory.responseBodyConverter(Catalog.class, NO_ANNOTATIONS, retrofit);
+		requestConverter = (Converter<Catalog, RequestBody>) converterFactory.requestBodyConverter(Catalog.class,
+				NO_ANNOTATIONS, NO_ANNOTATIONS, retrofit);
+		catalog = Catalog.create(100);
+		encoded = write();
+	}
+
+	@Benchmark
+	public Object read() throws IOException {
+		return responseConverter.convert(ResponseBody.create(mediaType, encoded));
+	}
+
+	@Benchmark
+	public byte[] write() throws IOException {
+		Buffer buffer = new Buffer();
+		requestConverter.convert(catalog).writeTo(buffer);
+		return buffer.readByteArray();
+	}
+
+	public static class Catalog {
+
+		public String name;
+
+		public long version;
+
+		public List<Item> items;
+
+		static Catalog create(int size) {
+			Catalog catalog = new Catalog();
+			catalog.name = "catalog";
+			catalog.version = 42;
+			catalog.items = new ArrayList<Item>(size);
+			for (int i = 0; i < size; i++) {
+				Item item = new Item();
+				item.id = i;
+				item.name = "item-" + i;
+				item.description = "Description of the item number " + i;
+				item.price = i * 1.5;
+				item.available = i % 2 == 0;
+				item.tags = Arrays.asList("tag-" + (i % 7), "tag-" + (i % 11));
+				catalog.items.add(item);
+			}
+			return catalog;
+		}
+	}
+
+	public static class Item {
+
+		public long id;
+
+		public String name;
+
+		public String description;
+
+		public double price;
+
+		public boolean available;
+
+		public List<String> tags;
+	}
+
+}
@@ -0,0 +1,73 @@
+package com.mitobit.retrofit2.spring.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mitobit.retrofit2.spring.RetrofitRegistry;
+import com.mitobit.retrofit2.spring.RetrofitServiceFactoryBean;
+import com.mitobit.retrofit2.spring.benchmark.services.ItemService;
+
+import retrofit2.Converter;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+/**
+ * Measures the cost of creating a service through {@link RetrofitServiceFactoryBean#getObject()}, with and without a
+ * {@link RetrofitRegistry} shared across factory beans, eagerly and as a lazy proxy.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class FactoryBeanBenchmark {
+
+	@Param({ "true", "false" })
+	public boolean sharedRegistry;
+
+	@Param({ "false", "true" })
+	public boolean lazy;
+
+	private OkHttpClient httpClient;
+
+	private Converter.Factory converterFactory;
+
+	private RetrofitRegistry retrofitRegistry;
+
+	@Setup
+	public void setUp() {
+		httpClient = new OkHttpClient();
+		converterFactory = JacksonConverterFactory.create();
+		retrofitRegistry = new RetrofitRegistry();
+	}
+
+	@Benchmark
+	public ItemService getObject() throws Exception {
+		RetrofitServiceFactoryBean<ItemService> factoryBean = new RetrofitServiceFactoryBean<ItemService>(ItemService.class);
+		factoryBean.setBaseUrl("http://localhost:8080/");
+		factoryBean.setHttpClient(httpClient);
+		factoryBean.setConverterFactory(converterFactory);
+		if (sharedRegistry) {
+			factoryBean.setRetrofitRegistry(retrofitRegistry);
+		}
+		factoryBean.setLazy(lazy);
+		factoryBean.afterPropertiesSet();
+		return factoryBean.getObject();
+	}
+
+}
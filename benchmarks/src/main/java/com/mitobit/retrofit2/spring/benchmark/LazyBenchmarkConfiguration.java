@@ -0,0 +1,13 @@
+package com.mitobit.retrofit2.spring.benchmark;
+
+import com.mitobit.retrofit2.spring.EnableRetrofitServices;
+
+/**
+ * Same as {@link BenchmarkConfiguration}, exposing the services as lazy proxies.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+@EnableRetrofitServices(value = "com.mitobit.retrofit2.spring.benchmark", lazy = true)
+public class LazyBenchmarkConfiguration {
+
+}
@@ -0,0 +1,169 @@
+package com.mitobit.retrofit2.spring.benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.SpringProperties;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.FileSystemUtils;
+
+import com.mitobit.retrofit2.spring.EnableRetrofitServices;
+import com.mitobit.retrofit2.spring.RetrofitService;
+import com.mitobit.retrofit2.spring.index.RetrofitServiceIndex;
+
+/**
+ * Compares the startup of a context discovering the service interfaces through the compile-time
+ * {@link RetrofitServiceIndex} with one scanning the base package.
+ * <p>
+ * The services, each one next to a plain class the scan has to read and skip, are generated in a temporary classpath
+ * root holding their index, so that their number is a parameter of the benchmark.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+@Fork(3)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+	static final String GENERATED_PACKAGE = "com.mitobit.retrofit2.spring.benchmark.generated";
+
+	private static final int METHODS_PER_SERVICE = 3;
+
+	@Param({ "25", "250" })
+	public int services;
+
+	private File root;
+
+	private URLClassLoader classLoader;
+
+	@Setup
+	public void setUp() throws IOException {
+		root = File.createTempFile("retrofit-services", "");
+		if (!root.delete() || !root.mkdir()) {
+			throw new IOException("Unable to create directory " + root);
+		}
+		File packageDirectory = new File(root, GENERATED_PACKAGE.replace('.', File.separatorChar));
+		if (!packageDirectory.mkdirs()) {
+			throw new IOException("Unable to create directory " + packageDirectory);
+		}
+		Properties index = new Properties();
+		for (int i = 0; i < services; i++) {
+			String service = String.format("Service%04d", i);
+			FileCopyUtils.copy(generateService(service), new File(packageDirectory, service + ".class"));
+			index.setProperty(GENERATED_PACKAGE + "." + service, RetrofitService.class.getName());
+			String model = String.format("Model%04d", i);
+			FileCopyUtils.copy(generateModel(model), new File(packageDirectory, model + ".class"));
+		}
+		File indexFile = new File(root, RetrofitServiceIndex.INDEX_LOCATION);
+		if (!indexFile.getParentFile().mkdirs()) {
+			throw new IOException("Unable to create directory " + indexFile.getParentFile());
+		}
+		OutputStream out = new FileOutputStream(indexFile);
+		try {
+			index.store(out, null);
+		} finally {
+			out.close();
+		}
+		classLoader = new URLClassLoader(new URL[] { root.toURI().toURL() }, getClass().getClassLoader());
+	}
+
+	@Benchmark
+	public AnnotationConfigApplicationContext indexed() {
+		SpringProperties.setProperty(RetrofitServiceIndex.IGNORE_INDEX, null);
+		return startAndStop();
+	}
+
+	@Benchmark
+	public AnnotationConfigApplicationContext scanned() {
+		SpringProperties.setProperty(RetrofitServiceIndex.IGNORE_INDEX, "true");
+		return startAndStop();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		SpringProperties.setProperty(RetrofitServiceIndex.IGNORE_INDEX, null);
+		classLoader.close();
+		FileSystemUtils.deleteRecursively(root);
+	}
+
+	private AnnotationConfigApplicationContext startAndStop() {
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.setClassLoader(classLoader);
+		context.register(GeneratedServicesConfiguration.class);
+		context.refresh();
+		context.close();
+		return context;
+	}
+
+	/**
+	 * Generates a service interface with a few {@code Call<ResponseBody>} methods.
+	 */
+	private static byte[] generateService(String simpleName) {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE,
+				internalName(simpleName), null, "java/lang/Object", null);
+		AnnotationVisitor service = writer.visitAnnotation("Lcom/mitobit/retrofit2/spring/RetrofitService;", true);
+		service.visit("baseUrl", "http://localhost:8080/");
+		service.visitEnd();
+		for (int i = 0; i < METHODS_PER_SERVICE; i++) {
+			MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "get" + i,
+					"()Lretrofit2/Call;", "()Lretrofit2/Call<Lokhttp3/ResponseBody;>;", null);
+			AnnotationVisitor get = method.visitAnnotation("Lretrofit2/http/GET;", true);
+			get.visit("value", simpleName.toLowerCase() + "/" + i);
+			get.visitEnd();
+			method.visitEnd();
+		}
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Generates an empty class, standing for the other classes of an application package.
+	 */
+	private static byte[] generateModel(String simpleName) {
+		ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V1_7, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName(simpleName), null,
+				"java/lang/Object", null);
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+
+	private static String internalName(String simpleName) {
+		return GENERATED_PACKAGE.replace('.', '/') + "/" + simpleName;
+	}
+
+	/**
+	 * Configuration of the generated services, found in the temporary root only.
+	 */
+	@EnableRetrofitServices(GENERATED_PACKAGE)
+	public static class GeneratedServicesConfiguration {
+
+	}
+
+}
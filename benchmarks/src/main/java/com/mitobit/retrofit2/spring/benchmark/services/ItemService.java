@@ -0,0 +1,27 @@
+package com.mitobit.retrofit2.spring.benchmark.services;
+
+import java.util.List;
+import java.util.Map;
+
+import com.mitobit.retrofit2.spring.RetrofitService;
+
+import retrofit2.Call;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+
+@RetrofitService(baseUrl = "${benchmark.url:http://localhost:8080/}")
+public interface ItemService {
+
+	@GET("items")
+	Call<List<Map<String, Object>>> list(@Query("page") int page);
+
+	@GET("items/{id}")
+	Call<Map<String, Object>> get(@Path("id") String id);
+
+	@POST("items")
+	Call<Map<String, Object>> create(@Body Map<String, Object> item);
+
+}
@@ -0,0 +1,216 @@
+package com.mitobit.retrofit2.spring;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * {@link EventListener.Factory} combining several factories, as an {@link okhttp3.OkHttpClient} takes only one.
+ * Listeners are notified in the order of their factories; no-op listeners are left out.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+final class CompositeEventListenerFactory implements EventListener.Factory {
+
+	private final EventListener.Factory[] factories;
+
+	CompositeEventListenerFactory(EventListener.Factory... factories) {
+		this.factories = factories;
+	}
+
+	/**
+	 * Returns a factory combining the given ones.
+	 *
+	 * @param factories the factories, {@literal null} elements being ignored.
+	 * @return the combined factory, the only one given, or {@literal null} if none is given.
+	 */
+	static EventListener.Factory of(EventListener.Factory... factories) {
+		List<EventListener.Factory> result = new ArrayList<EventListener.Factory>(factories.length);
+		for (EventListener.Factory factory : factories) {
+			if (factory != null) {
+				result.add(factory);
+			}
+		}
+		if (result.size() <= 1) {
+			return result.isEmpty() ? null : result.get(0);
+		}
+		return new CompositeEventListenerFactory(result.toArray(new EventListener.Factory[result.size()]));
+	}
+
+	@Override
+	public EventListener create(Call call) {
+		List<EventListener> listeners = new ArrayList<EventListener>(factories.length);
+		for (EventListener.Factory factory : factories) {
+			EventListener listener = factory.create(call);
+			if (listener != EventListener.NONE) {
+				listeners.add(listener);
+			}
+		}
+		if (listeners.size() <= 1) {
+			return listeners.isEmpty() ? EventListener.NONE : listeners.get(0);
+		}
+		return new CompositeEventListener(listeners.toArray(new EventListener[listeners.size()]));
+	}
+
+	private static final class CompositeEventListener extends EventListener {
+
+		private final EventListener[] listeners;
+
+		CompositeEventListener(EventListener[] listeners) {
+			this.listeners = listeners;
+		}
+
+		@Override
+		public void callStart(Call call) {
+			for (EventListener listener : listeners) {
+				listener.callStart(call);
+			}
+		}
+
+		@Override
+		public void dnsStart(Call call, String domainName) {
+			for (EventListener listener : listeners) {
+				listener.dnsStart(call, domainName);
+			}
+		}
+
+		@Override
+		public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+			for (EventListener listener : listeners) {
+				listener.dnsEnd(call, domainName, inetAddressList);
+			}
+		}
+
+		@Override
+		public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+			for (EventListener listener : listeners) {
+				listener.connectStart(call, inetSocketAddress, proxy);
+			}
+		}
+
+		@Override
+		public void secureConnectStart(Call call) {
+			for (EventListener listener : listeners) {
+				listener.secureConnectStart(call);
+			}
+		}
+
+		@Override
+		public void secureConnectEnd(Call call, Handshake handshake) {
+			for (EventListener listener : listeners) {
+				listener.secureConnectEnd(call, handshake);
+			}
+		}
+
+		@Override
+		public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+			for (EventListener listener : listeners) {
+				listener.connectEnd(call, inetSocketAddress, proxy, protocol);
+			}
+		}
+
+		@Override
+		public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+				IOException ioe) {
+			for (EventListener listener : listeners) {
+				listener.connectFailed(call, inetSocketAddress, proxy, protocol, ioe);
+			}
+		}
+
+		@Override
+		public void connectionAcquired(Call call, Connection connection) {
+			for (EventListener listener : listeners) {
+				listener.connectionAcquired(call, connection);
+			}
+		}
+
+		@Override
+		public void connectionReleased(Call call, Connection connection) {
+			for (EventListener listener : listeners) {
+				listener.connectionReleased(call, connection);
+			}
+		}
+
+		@Override
+		public void requestHeadersStart(Call call) {
+			for (EventListener listener : listeners) {
+				listener.requestHeadersStart(call);
+			}
+		}
+
+		@Override
+		public void requestHeadersEnd(Call call, Request request) {
+			for (EventListener listener : listeners) {
+				listener.requestHeadersEnd(call, request);
+			}
+		}
+
+		@Override
+		public void requestBodyStart(Call call) {
+			for (EventListener listener : listeners) {
+				listener.requestBodyStart(call);
+			}
+		}
+
+		@Override
+		public void requestBodyEnd(Call call, long byteCount) {
+			for (EventListener listener : listeners) {
+				listener.requestBodyEnd(call, byteCount);
+			}
+		}
+
+		@Override
+		public void responseHeadersStart(Call call) {
+			for (EventListener listener : listeners) {
+				listener.responseHeadersStart(call);
+			}
+		}
+
+		@Override
+		public void responseHeadersEnd(Call call, Response response) {
+			for (EventListener listener : listeners) {
+				listener.responseHeadersEnd(call, response);
+			}
+		}
+
+		@Override
+		public void responseBodyStart(Call call) {
+			for (EventListener listener : listeners) {
+				listener.responseBodyStart(call);
+			}
+		}
+
+		@Override
+		public void responseBodyEnd(Call call, long byteCount) {
+			for (EventListener listener : listeners) {
+				listener.responseBodyEnd(call, byteCount);
+			}
+		}
+
+		@Override
+		public void callEnd(Call call) {
+			for (EventListener listener : listeners) {
+				listener.callEnd(call);
+			}
+		}
+
+		@Override
+		public void callFailed(Call call, IOException ioe) {
+			for (EventListener listener : listeners) {
+				listener.callFailed(call, ioe);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,70 @@
+package com.mitobit.retrofit2.spring;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.SimpleMetadataReaderFactory;
+
+/**
+ * {@link SimpleMetadataReaderFactory} caching the {@link MetadataReader}s of the first {@code cacheLimit} resources, to
+ * be shared by the concurrent scans of several packages. Unlike {@link CachingMetadataReaderFactory}, which reads class
+ * files while holding a global lock, class files are read concurrently: the same one may be read twice, only the first
+ * reader being cached.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+class ConcurrentMetadataReaderFactory extends SimpleMetadataReaderFactory {
+
+	private final int cacheLimit;
+
+	private final ConcurrentMap<Resource, MetadataReader> metadataReaderCache = new ConcurrentHashMap<Resource, MetadataReader>();
+
+	/**
+	 * Creates a new {@link ConcurrentMetadataReaderFactory} for the given {@link ResourceLoader}.
+	 *
+	 * @param resourceLoader the resource loader to use, may be {@literal null} to use the default one.
+	 */
+	public ConcurrentMetadataReaderFactory(ResourceLoader resourceLoader) {
+		this(resourceLoader, CachingMetadataReaderFactory.DEFAULT_CACHE_LIMIT);
+	}
+
+	/**
+	 * Creates a new {@link ConcurrentMetadataReaderFactory} for the given {@link ResourceLoader}.
+	 *
+	 * @param resourceLoader the resource loader to use, may be {@literal null} to use the default one.
+	 * @param cacheLimit the maximum number of cached readers.
+	 */
+	public ConcurrentMetadataReaderFactory(ResourceLoader resourceLoader, int cacheLimit) {
+		super(resourceLoader);
+		this.cacheLimit = cacheLimit;
+	}
+
+	@Override
+	public MetadataReader getMetadataReader(Resource resource) throws IOException {
+		MetadataReader metadataReader = metadataReaderCache.get(resource);
+		if (metadataReader != null) {
+			return metadataReader;
+		}
+		metadataReader = super.getMetadataReader(resource);
+		if (metadataReaderCache.size() < cacheLimit) {
+			MetadataReader cached = metadataReaderCache.putIfAbsent(resource, metadataReader);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		return metadataReader;
+	}
+
+	/**
+	 * Clears the cached readers.
+	 */
+	public void clearCache() {
+		metadataReaderCache.clear();
+	}
+
+}
@@ -0,0 +1,187 @@
+package com.mitobit.retrofit2.spring;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import com.mitobit.retrofit2.spring.balancer.ServerListSupplier;
+
+/**
+ * Opens connections to the servers of a service ahead of its calls, so that they do not pay the TCP and TLS
+ * handshakes. Each server gets as many concurrent {@code HEAD} requests to its base URL as connections wanted: any
+ * response leaves its connection in the pool of the client. The requests skip the application interceptors and the
+ * disk cache of the client, and run on its dispatcher executor.
+ * <p>
+ * Keeping warm repeats the requests periodically, without waiting for them, so the pooled connections are not closed
+ * for being idle, by the pool or by the servers. The interval should be shorter than both idle timeouts. With HTTP/2
+ * the concurrent requests are multiplexed over a single connection per server.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see RetrofitService#prewarmConnections()
+ */
+public class ConnectionWarmer {
+
+	private static final Log logger = LogFactory.getLog(ConnectionWarmer.class);
+
+	private final ServerListSupplier servers;
+
+	private final int connections;
+
+	private final ScheduledExecutorService scheduler;
+
+	private volatile OkHttpClient client;
+
+	private ScheduledFuture<?> keepWarm;
+
+	/**
+	 * Creates a new {@link ConnectionWarmer}.
+	 *
+	 * @param client the client whose pool is warmed, must not be {@literal null}.
+	 * @param servers the servers to connect to, read on each warm-up, must not be {@literal null}.
+	 * @param connections the connections per server, must be positive.
+	 * @param scheduler the scheduler sending the keep-warm requests, must not be {@literal null}.
+	 */
+	public ConnectionWarmer(OkHttpClient client, ServerListSupplier servers, int connections,
+			ScheduledExecutorService scheduler) {
+		Assert.notNull(servers, "Servers must not be null");
+		Assert.isTrue(connections > 0, "Connections must be positive");
+		Assert.notNull(scheduler, "Scheduler must not be null");
+		this.servers = servers;
+		this.connections = connections;
+		this.scheduler = scheduler;
+		setClient(client);
+	}
+
+	/**
+	 * Sets the client whose pool is warmed from now on.
+	 *
+	 * @param client the client, must not be {@literal null}.
+	 */
+	public void setClient(OkHttpClient client) {
+		Assert.notNull(client, "Client must not be null");
+		OkHttpClient.Builder builder = client.newBuilder().cache(null);
+		builder.interceptors().clear();
+		// its own limits, so that the requests to a server run concurrently, on the executor of the client
+		Dispatcher dispatcher = new Dispatcher(client.dispatcher().executorService());
+		dispatcher.setMaxRequestsPerHost(connections);
+		dispatcher.setMaxRequests(Math.max(dispatcher.getMaxRequests(), connections));
+		this.client = builder.dispatcher(dispatcher).build();
+	}
+
+	/**
+	 * Sends the requests to every server and waits for their responses, at most the connect and read timeouts of the
+	 * client.
+	 *
+	 * @return the number of requests that got a response, an upper bound of the connections opened.
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public int warm() throws InterruptedException {
+		OkHttpClient client = this.client;
+		List<Call> calls = newCalls(client);
+		final CountDownLatch latch = new CountDownLatch(calls.size());
+		final AtomicInteger succeeded = new AtomicInteger();
+		for (Call call : calls) {
+			call.enqueue(new Callback() {
+				@Override
+				public void onResponse(Call call, Response response) {
+					response.close();
+					succeeded.incrementAndGet();
+					latch.countDown();
+				}
+
+				@Override
+				public void onFailure(Call call, IOException e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Could not warm a connection to " + call.request().url() + ": " + e);
+					}
+					latch.countDown();
+				}
+			});
+		}
+		long timeout = client.connectTimeoutMillis() + client.readTimeoutMillis();
+		if (!latch.await(timeout > 0 ? timeout : RetrofitConstants.DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+			for (Call call : calls) {
+				call.cancel();
+			}
+		}
+		return succeeded.get();
+	}
+
+	/**
+	 * Starts sending the requests at the given interval, replacing the previous schedule.
+	 *
+	 * @param interval the interval in milliseconds, must be positive.
+	 */
+	public synchronized void keepWarm(long interval) {
+		Assert.isTrue(interval > 0, "Interval must be positive");
+		stop();
+		keepWarm = scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				ping();
+			}
+		}, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops keeping the connections warm.
+	 */
+	public synchronized void stop() {
+		if (keepWarm != null) {
+			keepWarm.cancel(false);
+			keepWarm = null;
+		}
+	}
+
+	private void ping() {
+		Callback callback = new Callback() {
+			@Override
+			public void onResponse(Call call, Response response) {
+				response.close();
+			}
+
+			@Override
+			public void onFailure(Call call, IOException e) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Could not keep a connection to " + call.request().url() + " warm: " + e);
+				}
+			}
+		};
+		try {
+			for (Call call : newCalls(client)) {
+				call.enqueue(callback);
+			}
+		} catch (RuntimeException e) {
+			// thrown by the server list or a rejecting executor, must not cancel the schedule
+			logger.warn("Could not keep connections warm: " + e);
+		}
+	}
+
+	private List<Call> newCalls(OkHttpClient client) {
+		List<Call> calls = new ArrayList<Call>();
+		for (String server : servers.getServers()) {
+			Request request = new Request.Builder().url(server).head().build();
+			for (int i = 0; i < connections; i++) {
+				calls.add(client.newCall(request));
+			}
+		}
+		return calls;
+	}
+
+}
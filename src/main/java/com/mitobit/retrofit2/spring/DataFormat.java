@@ -0,0 +1,57 @@
+package com.mitobit.retrofit2.spring;
+
+import okhttp3.MediaType;
+
+/**
+ * Body formats the default converter factory can read and write.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see EnableRetrofitServices#dataFormats()
+ * @see JacksonConverterFactoryBean
+ */
+public enum DataFormat {
+
+	/**
+	 * Text JSON, through Jackson.
+	 */
+	JSON("application/json", "com.fasterxml.jackson.core.JsonFactory"),
+
+	/**
+	 * Binary JSON, through Jackson and {@code jackson-dataformat-smile.jar}.
+	 */
+	SMILE("application/x-jackson-smile", "com.fasterxml.jackson.dataformat.smile.SmileFactory"),
+
+	/**
+	 * CBOR, through Jackson and {@code jackson-dataformat-cbor.jar}.
+	 */
+	CBOR("application/cbor", "com.fasterxml.jackson.dataformat.cbor.CBORFactory"),
+
+	/**
+	 * Protocol Buffers, for the generated message types only, through {@code converter-protobuf.jar}.
+	 */
+	PROTOBUF("application/x-protobuf", "retrofit2.converter.protobuf.ProtoConverterFactory");
+
+	private final MediaType mediaType;
+
+	private final String requiredClassName;
+
+	private DataFormat(String mediaType, String requiredClassName) {
+		this.mediaType = MediaType.parse(mediaType);
+		this.requiredClassName = requiredClassName;
+	}
+
+	/**
+	 * @return the media type identifying the format in the {@code Content-Type} header.
+	 */
+	public MediaType getMediaType() {
+		return mediaType;
+	}
+
+	/**
+	 * @return the name of the class that must be on the classpath to use the format.
+	 */
+	public String getRequiredClassName() {
+		return requiredClassName;
+	}
+
+}
@@ -0,0 +1,109 @@
+package com.mitobit.retrofit2.spring;
+
+import java.io.IOException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Timeout;
+
+/**
+ * {@link Call.Factory} deferring the creation of the calls of an {@link OkHttpClient} until they are executed.
+ * <p>
+ * Retrofit creates the call of a service call as soon as its request is read, and the client then creates the
+ * {@link okhttp3.EventListener} of the call. The call decorators reading the request of a call they may answer
+ * themselves, e.g. from a cache or from an identical call in flight, would otherwise create a call, and its listener,
+ * for nothing.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+final class DeferredCallFactory implements Call.Factory {
+
+	private final OkHttpClient client;
+
+	DeferredCallFactory(OkHttpClient client) {
+		this.client = client;
+	}
+
+	OkHttpClient getClient() {
+		return client;
+	}
+
+	@Override
+	public Call newCall(Request request) {
+		return new DeferredCall(client, request);
+	}
+
+	private static final class DeferredCall implements Call {
+
+		private final OkHttpClient client;
+
+		private final Request request;
+
+		// guarded by this
+		private Call call;
+
+		private boolean canceled;
+
+		DeferredCall(OkHttpClient client, Request request) {
+			this.client = client;
+			this.request = request;
+		}
+
+		@Override
+		public Request request() {
+			return request;
+		}
+
+		@Override
+		public Response execute() throws IOException {
+			return call().execute();
+		}
+
+		@Override
+		public void enqueue(Callback responseCallback) {
+			call().enqueue(responseCallback);
+		}
+
+		@Override
+		public synchronized void cancel() {
+			canceled = true;
+			if (call != null) {
+				call.cancel();
+			}
+		}
+
+		@Override
+		public synchronized boolean isExecuted() {
+			return call != null && call.isExecuted();
+		}
+
+		@Override
+		public synchronized boolean isCanceled() {
+			return canceled || (call != null && call.isCanceled());
+		}
+
+		@Override
+		public Timeout timeout() {
+			return call().timeout();
+		}
+
+		@Override
+		public Call clone() {
+			return new DeferredCall(client, request);
+		}
+
+		private synchronized Call call() {
+			if (call == null) {
+				call = client.newCall(request);
+				if (canceled) {
+					call.cancel();
+				}
+			}
+			return call;
+		}
+	}
+
+}
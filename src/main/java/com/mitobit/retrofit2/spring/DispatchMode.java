@@ -0,0 +1,27 @@
+package com.mitobit.retrofit2.spring;
+
+/**
+ * How the shared {@link okhttp3.OkHttpClient} runs asynchronous calls.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see EnableRetrofitServices#dispatchMode()
+ */
+public enum DispatchMode {
+
+	/**
+	 * The OkHttp default: an unbounded cached thread pool owned by the client.
+	 */
+	DEFAULT,
+
+	/**
+	 * The {@link java.util.concurrent.Executor} bean named by {@link EnableRetrofitServices#dispatcherExecutorRef()},
+	 * whose lifecycle is left to the container.
+	 */
+	EXECUTOR,
+
+	/**
+	 * A virtual-thread-per-task executor owned by the client. Requires a runtime supporting virtual threads.
+	 */
+	VIRTUAL_THREADS
+
+}
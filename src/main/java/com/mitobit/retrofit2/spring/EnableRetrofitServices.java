@@ -60,6 +60,101 @@ public @interface EnableRetrofitServices {
 	 * discovered through this annotation. Defaults to {@code jacksonConverterFactory}.
 	 * 
 	 */
-	String converterFactoryRef() default RetrofitConstants.CONVERTER_FACTORY_BEAN_NAME;	
-	
+	String converterFactoryRef() default RetrofitConstants.CONVERTER_FACTORY_BEAN_NAME;
+
+	/**
+	 * The body formats of the {@code jacksonConverterFactory} bean, in order of preference, when it is registered
+	 * automatically. With several formats, responses are read according to their {@code Content-Type} and request
+	 * bodies are written in the first format. Defaults to JSON.
+	 *
+	 * @see JacksonConverterFactoryBean
+	 */
+	DataFormat[] dataFormats() default {};
+
+	/**
+	 * Configures the names of the {@link retrofit2.CallAdapter.Factory} bean definitions to be used to create services
+	 * discovered through this annotation. They are consulted before the built-in factories, which support
+	 * {@code ListenableFuture<T>} and, when {@code adapter-java8.jar} is on the classpath, {@code CompletableFuture<T>}
+	 * return types.
+	 */
+	String[] callAdapterFactoryRefs() default {};
+
+	/**
+	 * Configures the name of the {@link okhttp3.OkHttpClient} bean definition shared by services discovered through
+	 * this annotation that do not declare their own {@link RetrofitService#httpClient()}. Defaults to
+	 * {@code retrofitHttpClient}, which is registered automatically when missing and tuned through the
+	 * {@code retrofit.client.*} environment properties ({@code max-idle-connections}, {@code keep-alive-duration},
+	 * {@code max-requests}, {@code max-requests-per-host}, {@code connect-timeout}, {@code read-timeout},
+	 * {@code write-timeout}; durations in milliseconds). Setting {@code cache-directory}, and optionally
+	 * {@code cache-size} in bytes, gives it an OkHttp disk cache revalidating stale responses with conditional requests.
+	 */
+	String httpClientRef() default RetrofitConstants.HTTP_CLIENT_BEAN_NAME;
+
+	/**
+	 * Whether the methods of all the services discovered through this annotation are parsed and their converters
+	 * resolved in parallel at startup, instead of on their first call. A malformed interface fails the context startup.
+	 */
+	boolean eagerlyValidate() default false;
+
+	/**
+	 * How the shared client registered for {@link #httpClientRef()} runs asynchronous calls. Has no effect on
+	 * clients defined by the application.
+	 */
+	DispatchMode dispatchMode() default DispatchMode.DEFAULT;
+
+	/**
+	 * Configures the name of the {@link java.util.concurrent.Executor} bean, e.g. a Spring {@code TaskExecutor},
+	 * running the asynchronous calls of the shared client in {@link DispatchMode#EXECUTOR} mode.
+	 */
+	String dispatcherExecutorRef() default "";
+
+	/**
+	 * Configures the name of the {@link java.util.concurrent.Executor} bean Retrofit runs the callbacks of
+	 * asynchronous calls on. Defaults to the thread that completed the call.
+	 */
+	String callbackExecutorRef() default "";
+
+	/**
+	 * Whether all the services discovered through this annotation are exposed as proxies that build their Retrofit
+	 * instance and client on the first method invocation, so services never called cost nothing at startup.
+	 */
+	boolean lazy() default false;
+
+	/**
+	 * Whether all the services discovered through this annotation can be rebound to another base URL or client
+	 * without restarting the context. The {@code retrofitServiceRefresher} bean rebinds them when the placeholders of
+	 * their base URL resolve differently after a Spring Cloud {@code EnvironmentChangeEvent}, or on demand.
+	 *
+	 * @see RetrofitServiceRefresher
+	 */
+	boolean refreshable() default false;
+
+	/**
+	 * Whether all the services discovered through this annotation stream {@code Iterator<T>} request bodies and
+	 * {@code Iterator<T>} or {@link com.mitobit.retrofit2.spring.stream.CloseableIterator CloseableIterator<T>}
+	 * response bodies as JSON arrays, one element at a time, instead of holding the whole payload in memory. The
+	 * {@code streamingConverterFactory} bean is registered automatically when missing.
+	 */
+	boolean streaming() default false;
+
+	/**
+	 * Whether the calls of all the services discovered through this annotation, and the connection pool of the shared
+	 * client, are recorded by the {@link com.mitobit.retrofit2.spring.metrics.ServiceMetrics} bean named
+	 * {@code retrofitServiceMetrics}. When no such bean is defined, one publishing to the Micrometer
+	 * {@code MeterRegistry} of the context is registered.
+	 */
+	boolean metrics() default false;
+
+	/**
+	 * Whether the calls of all the services discovered through this annotation are traced by the
+	 * {@link com.mitobit.retrofit2.spring.trace.Tracer} bean named {@code retrofitTracer}, installed on the shared
+	 * client. When no such bean is defined, one sampling the ratio of calls set by the
+	 * {@code retrofit.client.trace-sample-rate} environment property (default {@code 0.01}), propagating W3C
+	 * {@code traceparent} headers and, with {@link #metrics()}, recording the phase breakdown of each service method is
+	 * registered. Services with their own {@link RetrofitService#httpClient()} are not traced. A
+	 * {@code retrofitHttpClient} bean defined by the application must install the tracer itself, e.g. through
+	 * {@link OkHttpClientFactoryBean#setTracer}; a definition not setting that property gets a warning.
+	 */
+	boolean tracing() default false;
+
 }
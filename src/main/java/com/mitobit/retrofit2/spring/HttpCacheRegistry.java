@@ -0,0 +1,138 @@
+package com.mitobit.retrofit2.spring;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import okhttp3.Cache;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import com.mitobit.retrofit2.spring.metrics.SampledValue;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+
+/**
+ * Registry of the OkHttp disk {@link Cache}s of the Retrofit services, one per directory: two {@link Cache} instances
+ * must never write to the same directory. With a cache, OkHttp stores the cacheable responses and revalidates them
+ * with conditional requests ({@code If-None-Match}, {@code If-Modified-Since}) once stale.
+ * <p>
+ * When {@link ServiceMetrics} are set, the {@value ServiceMetrics#HTTP_CACHE_REQUESTS} counters of each cache, tagged by
+ * {@code result}, count the responses served from the cache ({@code hit}), revalidated by the server
+ * ({@code conditional}) and downloaded ({@code network}). The caches are closed with the context.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class HttpCacheRegistry implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(HttpCacheRegistry.class);
+
+	private final ConcurrentMap<File, Cache> caches = new ConcurrentHashMap<File, Cache>();
+
+	private ServiceMetrics serviceMetrics;
+
+	/**
+	 * Sets the metrics the cache counters are registered with.
+	 *
+	 * @param serviceMetrics
+	 */
+	public void setServiceMetrics(ServiceMetrics serviceMetrics) {
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * Returns the cache of the given directory, creating it on first request. The size of the first request wins.
+	 *
+	 * @param directory the cache directory, must not be {@literal null}.
+	 * @param maxSize the maximum size of the cache in bytes.
+	 * @return the shared cache.
+	 */
+	public Cache obtain(File directory, long maxSize) {
+		Assert.notNull(directory, "Directory must not be null");
+		Assert.isTrue(maxSize > 0, "Max size must be positive");
+		File key = canonicalFile(directory);
+		Cache cache = caches.get(key);
+		if (cache == null) {
+			Cache created = new Cache(key, maxSize);
+			cache = caches.putIfAbsent(key, created);
+			if (cache == null) {
+				cache = created;
+				if (serviceMetrics != null) {
+					bindMetrics(cache);
+				}
+			}
+		}
+		if (cache.maxSize() != maxSize && logger.isWarnEnabled()) {
+			logger.warn("HTTP cache " + key + " already created with size " + cache.maxSize() + ", ignoring size " + maxSize);
+		}
+		return cache;
+	}
+
+	/**
+	 * @return the number of caches created so far.
+	 */
+	public int getCacheCount() {
+		return caches.size();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		for (Cache cache : caches.values()) {
+			try {
+				cache.close();
+			} catch (IOException e) {
+				logger.warn("Unable to close HTTP cache " + cache.directory(), e);
+			}
+		}
+		caches.clear();
+	}
+
+	private void bindMetrics(final Cache cache) {
+		// OkHttp counts a conditional hit both as a network response and as a hit
+		serviceMetrics.counter(ServiceMetrics.HTTP_CACHE_REQUESTS, tags(cache, "hit"), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return cache.requestCount() - cache.networkCount();
+			}
+		});
+		serviceMetrics.counter(ServiceMetrics.HTTP_CACHE_REQUESTS, tags(cache, "conditional"), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return cache.hitCount() + cache.networkCount() - cache.requestCount();
+			}
+		});
+		serviceMetrics.counter(ServiceMetrics.HTTP_CACHE_REQUESTS, tags(cache, "network"), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return cache.requestCount() - cache.hitCount();
+			}
+		});
+	}
+
+	private static Map<String, String> tags(Cache cache, String result) {
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("cache", cache.directory().getPath());
+		tags.put("result", result);
+		return tags;
+	}
+
+	private static File canonicalFile(File directory) {
+		try {
+			return directory.getCanonicalFile();
+		} catch (IOException e) {
+			return directory.getAbsoluteFile();
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+package com.mitobit.retrofit2.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Per-service overrides applied on top of a base {@link okhttp3.OkHttpClient}. Two settings are equal when they hold
+ * the same values and the same interceptor instances, so services configured alike can share a derived client.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see OkHttpClientRegistry
+ */
+public final class HttpClientSettings {
+
+	/**
+	 * Value used for unset numeric settings: the base client value is kept.
+	 */
+	public static final int UNSET = -1;
+
+	private final long connectTimeout;
+
+	private final long readTimeout;
+
+	private final long writeTimeout;
+
+	private final int maxRequestsPerHost;
+
+	private final List<Interceptor> interceptors;
+
+	private final List<Interceptor> networkInterceptors;
+
+	private final Cache cache;
+
+	private final boolean cacheDisabled;
+
+	private final List<Protocol> protocols;
+
+	/**
+	 * Creates a new {@link HttpClientSettings}.
+	 *
+	 * @param connectTimeout connect timeout in milliseconds or {@link #UNSET}
+	 * @param readTimeout read timeout in milliseconds or {@link #UNSET}
+	 * @param writeTimeout write timeout in milliseconds or {@link #UNSET}
+	 * @param maxRequestsPerHost max concurrent asynchronous requests per host or {@link #UNSET}, as any value not positive
+	 * @param interceptors application interceptors to add, may be {@literal null}
+	 * @param networkInterceptors network interceptors to add, may be {@literal null}
+	 */
+	public HttpClientSettings(long connectTimeout, long readTimeout, long writeTimeout, int maxRequestsPerHost,
+			List<Interceptor> interceptors, List<Interceptor> networkInterceptors) {
+		this(connectTimeout, readTimeout, writeTimeout, maxRequestsPerHost, interceptors, networkInterceptors, null, false);
+	}
+
+	/**
+	 * Creates a new {@link HttpClientSettings}.
+	 *
+	 * @param connectTimeout connect timeout in milliseconds or {@link #UNSET}
+	 * @param readTimeout read timeout in milliseconds or {@link #UNSET}
+	 * @param writeTimeout write timeout in milliseconds or {@link #UNSET}
+	 * @param maxRequestsPerHost max concurrent asynchronous requests per host or {@link #UNSET}, as any value not positive
+	 * @param interceptors application interceptors to add, may be {@literal null}
+	 * @param networkInterceptors network interceptors to add, may be {@literal null}
+	 * @param cache disk cache replacing the one of the base client, may be {@literal null}
+	 * @param cacheDisabled whether the disk cache of the base client is removed
+	 */
+	public HttpClientSettings(long connectTimeout, long readTimeout, long writeTimeout, int maxRequestsPerHost,
+			List<Interceptor> interceptors, List<Interceptor> networkInterceptors, Cache cache, boolean cacheDisabled) {
+		this(connectTimeout, readTimeout, writeTimeout, maxRequestsPerHost, interceptors, networkInterceptors, cache,
+				cacheDisabled, null);
+	}
+
+	/**
+	 * Creates a new {@link HttpClientSettings}.
+	 *
+	 * @param connectTimeout connect timeout in milliseconds or {@link #UNSET}
+	 * @param readTimeout read timeout in milliseconds or {@link #UNSET}
+	 * @param writeTimeout write timeout in milliseconds or {@link #UNSET}
+	 * @param maxRequestsPerHost max concurrent asynchronous requests per host or {@link #UNSET}, as any value not positive
+	 * @param interceptors application interceptors to add, may be {@literal null}
+	 * @param networkInterceptors network interceptors to add, may be {@literal null}
+	 * @param cache disk cache replacing the one of the base client, may be {@literal null}
+	 * @param cacheDisabled whether the disk cache of the base client is removed
+	 * @param protocols protocols replacing the ones of the base client, may be {@literal null}
+	 */
+	public HttpClientSettings(long connectTimeout, long readTimeout, long writeTimeout, int maxRequestsPerHost,
+			List<Interceptor> interceptors, List<Interceptor> networkInterceptors, Cache cache, boolean cacheDisabled,
+			List<Protocol> protocols) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.writeTimeout = writeTimeout;
+		this.maxRequestsPerHost = maxRequestsPerHost > 0 ? maxRequestsPerHost : UNSET;
+		this.interceptors = copyOf(interceptors);
+		this.networkInterceptors = copyOf(networkInterceptors);
+		this.cache = cacheDisabled ? null : cache;
+		this.cacheDisabled = cacheDisabled;
+		this.protocols = protocols != null ? Collections.unmodifiableList(new ArrayList<Protocol>(protocols)) : null;
+	}
+
+	public long getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public long getReadTimeout() {
+		return readTimeout;
+	}
+
+	public long getWriteTimeout() {
+		return writeTimeout;
+	}
+
+	public int getMaxRequestsPerHost() {
+		return maxRequestsPerHost;
+	}
+
+	public List<Interceptor> getInterceptors() {
+		return interceptors;
+	}
+
+	public List<Interceptor> getNetworkInterceptors() {
+		return networkInterceptors;
+	}
+
+	public Cache getCache() {
+		return cache;
+	}
+
+	public boolean isCacheDisabled() {
+		return cacheDisabled;
+	}
+
+	public List<Protocol> getProtocols() {
+		return protocols;
+	}
+
+	/**
+	 * @return {@literal true} if these settings do not override anything of the base client.
+	 */
+	public boolean isEmpty() {
+		return connectTimeout < 0 && readTimeout < 0 && writeTimeout < 0 && maxRequestsPerHost < 0
+				&& interceptors.isEmpty() && networkInterceptors.isEmpty() && cache == null && !cacheDisabled
+				&& protocols == null;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof HttpClientSettings)) {
+			return false;
+		}
+		HttpClientSettings other = (HttpClientSettings) obj;
+		return connectTimeout == other.connectTimeout && readTimeout == other.readTimeout
+				&& writeTimeout == other.writeTimeout && maxRequestsPerHost == other.maxRequestsPerHost
+				&& interceptors.equals(other.interceptors) && networkInterceptors.equals(other.networkInterceptors)
+				&& cache == other.cache && cacheDisabled == other.cacheDisabled
+				&& ObjectUtils.nullSafeEquals(protocols, other.protocols);
+	}
+
+	@Override
+	public int hashCode() {
+		int result = ObjectUtils.hashCode(connectTimeout);
+		result = 31 * result + ObjectUtils.hashCode(readTimeout);
+		result = 31 * result + ObjectUtils.hashCode(writeTimeout);
+		result = 31 * result + maxRequestsPerHost;
+		result = 31 * result + interceptors.hashCode();
+		result = 31 * result + networkInterceptors.hashCode();
+		result = 31 * result + System.identityHashCode(cache);
+		result = 31 * result + (cacheDisabled ? 1 : 0);
+		result = 31 * result + ObjectUtils.nullSafeHashCode(protocols);
+		return result;
+	}
+
+	private static List<Interceptor> copyOf(List<Interceptor> interceptors) {
+		if (interceptors == null || interceptors.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(new ArrayList<Interceptor>(interceptors));
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.mitobit.retrofit2.spring;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.Protocol;
+
+/**
+ * The HTTP versions a service talks to its servers. With HTTP/2 the calls to a server are multiplexed over a single
+ * connection instead of needing one connection each.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see RetrofitService#protocol()
+ */
+public enum HttpProtocol {
+
+	/**
+	 * The protocols of the client: with OkHttp defaults, HTTP/2 when negotiated over TLS, HTTP/1.1 otherwise.
+	 */
+	DEFAULT(null),
+
+	/**
+	 * HTTP/1.1 only, even when the server supports HTTP/2.
+	 */
+	HTTP_1_1(Collections.singletonList(Protocol.HTTP_1_1)),
+
+	/**
+	 * HTTP/2 over TLS when the server supports it, negotiated through ALPN, HTTP/1.1 otherwise.
+	 */
+	HTTP_2(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)),
+
+	/**
+	 * HTTP/2 in cleartext with prior knowledge, without upgrade or fallback. Requires {@code http} base URLs of
+	 * servers known to support it.
+	 */
+	H2C(Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+
+	private final List<Protocol> protocols;
+
+	HttpProtocol(List<Protocol> protocols) {
+		this.protocols = protocols;
+	}
+
+	/**
+	 * @return the OkHttp protocols, or {@literal null} to keep the ones of the client.
+	 */
+	public List<Protocol> getProtocols() {
+		return protocols;
+	}
+
+}
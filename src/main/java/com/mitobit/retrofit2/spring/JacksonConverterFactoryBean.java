@@ -0,0 +1,179 @@
+package com.mitobit.retrofit2.spring;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.MediaType;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanFactoryUtils;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+
+import com.mitobit.retrofit2.spring.converter.JacksonFormatConverterFactory;
+import com.mitobit.retrofit2.spring.converter.NegotiatingConverterFactory;
+
+import retrofit2.Converter;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+/**
+ * FactoryBean that creates the default {@link Converter.Factory} of the Retrofit services. Bodies are mapped by the
+ * {@link ObjectMapper} set on this factory, or else by the single {@link ObjectMapper} bean of the context, or else by
+ * an internal one registering the Jackson Blackbird or Afterburner module when present on the classpath.
+ * <p>
+ * With several {@link DataFormat}s, a {@link NegotiatingConverterFactory} reads each response according to its
+ * {@code Content-Type} and writes request bodies in the first format. The binary Jackson formats share the
+ * configuration, serializers and deserializers of the JSON mapper.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class JacksonConverterFactoryBean implements FactoryBean<Converter.Factory>, InitializingBean, BeanFactoryAware {
+
+	private static final Log logger = LogFactory.getLog(JacksonConverterFactoryBean.class);
+
+	private static final String[] PERFORMANCE_MODULE_CLASS_NAMES = {
+			"com.fasterxml.jackson.module.blackbird.BlackbirdModule",
+			"com.fasterxml.jackson.module.afterburner.AfterburnerModule" };
+
+	private ObjectMapper objectMapper;
+
+	private DataFormat[] dataFormats = { DataFormat.JSON };
+
+	private BeanFactory beanFactory;
+
+	private ObjectMapper resolvedObjectMapper;
+
+	private Converter.Factory converterFactory;
+
+	/**
+	 * Sets the mapper of the JSON bodies, and the source of the configuration of the binary formats.
+	 *
+	 * @param objectMapper
+	 */
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Sets the body formats in order of preference, defaults to {@link DataFormat#JSON}.
+	 *
+	 * @param dataFormats
+	 */
+	public void setDataFormats(DataFormat... dataFormats) {
+		this.dataFormats = dataFormats;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		this.beanFactory = beanFactory;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		ObjectMapper mapper = objectMapper != null ? objectMapper : resolveObjectMapper();
+		resolvedObjectMapper = mapper;
+		if (ObjectUtils.isEmpty(dataFormats) || Arrays.equals(dataFormats, new DataFormat[] { DataFormat.JSON })) {
+			converterFactory = JacksonConverterFactory.create(mapper);
+			return;
+		}
+		Map<MediaType, Converter.Factory> factories = new LinkedHashMap<MediaType, Converter.Factory>();
+		for (DataFormat dataFormat : dataFormats) {
+			factories.put(dataFormat.getMediaType(), createConverterFactory(dataFormat, mapper));
+		}
+		converterFactory = new NegotiatingConverterFactory(factories);
+	}
+
+	/**
+	 * Returns the single {@link ObjectMapper} bean of the context, or a new tuned one.
+	 */
+	private ObjectMapper resolveObjectMapper() {
+		if (beanFactory instanceof ListableBeanFactory) {
+			String[] beanNames = BeanFactoryUtils.beanNamesForTypeIncludingAncestors((ListableBeanFactory) beanFactory,
+					ObjectMapper.class, true, false);
+			if (beanNames.length == 1) {
+				return beanFactory.getBean(beanNames[0], ObjectMapper.class);
+			}
+			if (beanNames.length > 1 && logger.isInfoEnabled()) {
+				logger.info("Found " + beanNames.length + " ObjectMapper beans " + Arrays.toString(beanNames)
+						+ ", using an internal one for the Retrofit services");
+			}
+		}
+		ObjectMapper mapper = new ObjectMapper();
+		ClassLoader classLoader = getClass().getClassLoader();
+		for (String moduleClassName : PERFORMANCE_MODULE_CLASS_NAMES) {
+			if (ClassUtils.isPresent(moduleClassName, classLoader)) {
+				mapper.registerModule((Module) BeanUtils.instantiateClass(ClassUtils.resolveClassName(moduleClassName, classLoader)));
+				break;
+			}
+		}
+		return mapper;
+	}
+
+	private static Converter.Factory createConverterFactory(DataFormat dataFormat, ObjectMapper mapper) {
+		ClassLoader classLoader = JacksonConverterFactoryBean.class.getClassLoader();
+		Class<?> requiredClass = ClassUtils.resolveClassName(dataFormat.getRequiredClassName(), classLoader);
+		switch (dataFormat) {
+		case JSON:
+			return JacksonConverterFactory.create(mapper);
+		case PROTOBUF:
+			return (Converter.Factory) ReflectionUtils.invokeMethod(ReflectionUtils.findMethod(requiredClass, "create"), null);
+		default:
+			JsonFactory jsonFactory = (JsonFactory) BeanUtils.instantiateClass(requiredClass);
+			return new JacksonFormatConverterFactory(copyOf(mapper, jsonFactory), dataFormat.getMediaType());
+		}
+	}
+
+	/**
+	 * Creates a mapper of another format sharing the configuration, serializers and deserializers of the given one.
+	 */
+	private static ObjectMapper copyOf(ObjectMapper mapper, JsonFactory jsonFactory) {
+		DefaultSerializerProvider serializerProvider = mapper.getSerializerProvider() instanceof DefaultSerializerProvider
+				? (DefaultSerializerProvider) mapper.getSerializerProvider() : null;
+		DefaultDeserializationContext deserializationContext = mapper.getDeserializationContext() instanceof DefaultDeserializationContext
+				? (DefaultDeserializationContext) mapper.getDeserializationContext() : null;
+		ObjectMapper copy = new ObjectMapper(jsonFactory, serializerProvider, deserializationContext);
+		copy.setSerializerFactory(mapper.getSerializerFactory());
+		copy.setConfig(mapper.getSerializationConfig());
+		copy.setConfig(mapper.getDeserializationConfig());
+		return copy;
+	}
+
+	/**
+	 * @return the mapper of the JSON bodies, as resolved once this factory is initialized.
+	 */
+	public ObjectMapper getObjectMapper() {
+		return resolvedObjectMapper;
+	}
+
+	@Override
+	public Converter.Factory getObject() throws Exception {
+		return converterFactory;
+	}
+
+	@Override
+	public Class<?> getObjectType() {
+		return Converter.Factory.class;
+	}
+
+	@Override
+	public boolean isSingleton() {
+		return true;
+	}
+
+}
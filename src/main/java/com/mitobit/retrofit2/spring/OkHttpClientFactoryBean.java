@@ -0,0 +1,295 @@
+package com.mitobit.retrofit2.spring;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+
+import org.springframework.beans.factory.BeanNameAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.support.ExecutorServiceAdapter;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.util.ReflectionUtils;
+
+import com.mitobit.retrofit2.spring.metrics.ConnectionMetrics;
+import com.mitobit.retrofit2.spring.metrics.OkHttpClientMetrics;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+import com.mitobit.retrofit2.spring.trace.Tracer;
+
+/**
+ * FactoryBean that creates the {@link OkHttpClient} shared by every {@link RetrofitService} that does not declare its
+ * own {@link RetrofitService#httpClient()}. Sharing a single client means a single {@link ConnectionPool} and a single
+ * {@link Dispatcher} executor for the whole application context.
+ * <p>
+ * Asynchronous calls run according to the {@link DispatchMode}. When a cache directory is set, responses are cached
+ * on disk through the {@link HttpCacheRegistry}. The client is released when the context is closed:
+ * the dispatcher executor, unless provided by the container, is shut down and idle connections are evicted.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class OkHttpClientFactoryBean implements FactoryBean<OkHttpClient>, InitializingBean, DisposableBean, BeanNameAware {
+
+	private int maxIdleConnections = RetrofitConstants.DEFAULT_MAX_IDLE_CONNECTIONS;
+
+	private long keepAliveDuration = RetrofitConstants.DEFAULT_KEEP_ALIVE_DURATION;
+
+	private int maxRequests = RetrofitConstants.DEFAULT_MAX_REQUESTS;
+
+	private int maxRequestsPerHost = RetrofitConstants.DEFAULT_MAX_REQUESTS_PER_HOST;
+
+	private long connectTimeout = RetrofitConstants.DEFAULT_TIMEOUT;
+
+	private long readTimeout = RetrofitConstants.DEFAULT_TIMEOUT;
+
+	private long writeTimeout = RetrofitConstants.DEFAULT_TIMEOUT;
+
+	private DispatchMode dispatchMode = DispatchMode.DEFAULT;
+
+	private Executor dispatcherExecutor;
+
+	private boolean ownsExecutor = true;
+
+	private File cacheDirectory;
+
+	private long cacheSize = RetrofitConstants.DEFAULT_CACHE_SIZE;
+
+	private HttpCacheRegistry httpCacheRegistry;
+
+	private ServiceMetrics serviceMetrics;
+
+	private Tracer tracer;
+
+	private String beanName = RetrofitConstants.HTTP_CLIENT_BEAN_NAME;
+
+	private OkHttpClient httpClient;
+
+	/**
+	 * Sets the maximum number of idle connections kept in the shared pool.
+	 *
+	 * @param maxIdleConnections
+	 */
+	public void setMaxIdleConnections(int maxIdleConnections) {
+		this.maxIdleConnections = maxIdleConnections;
+	}
+
+	/**
+	 * Sets how long, in milliseconds, an idle connection is kept alive in the shared pool.
+	 *
+	 * @param keepAliveDuration
+	 */
+	public void setKeepAliveDuration(long keepAliveDuration) {
+		this.keepAliveDuration = keepAliveDuration;
+	}
+
+	/**
+	 * Sets the maximum number of asynchronous requests executed concurrently by the dispatcher.
+	 *
+	 * @param maxRequests
+	 */
+	public void setMaxRequests(int maxRequests) {
+		this.maxRequests = maxRequests;
+	}
+
+	/**
+	 * Sets the maximum number of asynchronous requests executed concurrently for each host.
+	 *
+	 * @param maxRequestsPerHost
+	 */
+	public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+		this.maxRequestsPerHost = maxRequestsPerHost;
+	}
+
+	/**
+	 * Sets the connect timeout in milliseconds, {@code 0} means no timeout.
+	 *
+	 * @param connectTimeout
+	 */
+	public void setConnectTimeout(long connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Sets the read timeout in milliseconds, {@code 0} means no timeout.
+	 *
+	 * @param readTimeout
+	 */
+	public void setReadTimeout(long readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Sets the write timeout in milliseconds, {@code 0} means no timeout.
+	 *
+	 * @param writeTimeout
+	 */
+	public void setWriteTimeout(long writeTimeout) {
+		this.writeTimeout = writeTimeout;
+	}
+
+	/**
+	 * Sets how asynchronous calls are run, defaults to {@link DispatchMode#DEFAULT}.
+	 *
+	 * @param dispatchMode
+	 */
+	public void setDispatchMode(DispatchMode dispatchMode) {
+		this.dispatchMode = dispatchMode;
+	}
+
+	/**
+	 * Sets the executor running asynchronous calls in {@link DispatchMode#EXECUTOR} mode. The executor is not shut down
+	 * with the client.
+	 *
+	 * @param dispatcherExecutor
+	 */
+	public void setDispatcherExecutor(Executor dispatcherExecutor) {
+		this.dispatcherExecutor = dispatcherExecutor;
+	}
+
+	/**
+	 * Sets the directory of the disk cache, none by default.
+	 *
+	 * @param cacheDirectory
+	 */
+	public void setCacheDirectory(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Sets the maximum size in bytes of the disk cache.
+	 *
+	 * @param cacheSize
+	 */
+	public void setCacheSize(long cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Sets the registry the disk cache is obtained from, so that it is shared with the services using the same
+	 * directory.
+	 *
+	 * @param httpCacheRegistry
+	 */
+	public void setHttpCacheRegistry(HttpCacheRegistry httpCacheRegistry) {
+		this.httpCacheRegistry = httpCacheRegistry;
+	}
+
+	/**
+	 * Sets the metrics the connection pool and dispatcher gauges, and the connection reuse and handshake meters, are
+	 * registered with.
+	 *
+	 * @param serviceMetrics
+	 */
+	public void setServiceMetrics(ServiceMetrics serviceMetrics) {
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * Sets the tracer of the calls of the services, installed as event listener and interceptor.
+	 *
+	 * @param tracer
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	@Override
+	public void setBeanName(String name) {
+		this.beanName = name;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		ExecutorService executorService = createExecutorService();
+		Dispatcher dispatcher = executorService != null ? new Dispatcher(executorService) : new Dispatcher();
+		dispatcher.setMaxRequests(maxRequests);
+		dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+		OkHttpClient.Builder builder = new OkHttpClient.Builder()
+				.connectionPool(new ConnectionPool(maxIdleConnections, keepAliveDuration, TimeUnit.MILLISECONDS))
+				.dispatcher(dispatcher)
+				.connectTimeout(connectTimeout, TimeUnit.MILLISECONDS)
+				.readTimeout(readTimeout, TimeUnit.MILLISECONDS)
+				.writeTimeout(writeTimeout, TimeUnit.MILLISECONDS);
+		if (cacheDirectory != null) {
+			HttpCacheRegistry registry = httpCacheRegistry != null ? httpCacheRegistry : new HttpCacheRegistry();
+			builder.cache(registry.obtain(cacheDirectory, cacheSize));
+		}
+		EventListener.Factory eventListenerFactory = CompositeEventListenerFactory.of(
+				serviceMetrics != null ? new ConnectionMetrics(serviceMetrics, beanName) : null, tracer);
+		if (eventListenerFactory != null) {
+			builder.eventListenerFactory(eventListenerFactory);
+		}
+		if (tracer != null) {
+			builder.addInterceptor(tracer);
+		}
+		this.httpClient = builder.build();
+		if (serviceMetrics != null) {
+			OkHttpClientMetrics.bind(serviceMetrics, beanName, httpClient);
+		}
+	}
+
+	/**
+	 * Creates the executor of the dispatcher according to the dispatch mode.
+	 *
+	 * @return the executor, or {@literal null} for the OkHttp default.
+	 */
+	private ExecutorService createExecutorService() {
+		switch (dispatchMode) {
+		case EXECUTOR:
+			if (dispatcherExecutor == null) {
+				throw new IllegalArgumentException("Property 'dispatcherExecutor' is required in EXECUTOR dispatch mode.");
+			}
+			ownsExecutor = false;
+			if (dispatcherExecutor instanceof ExecutorService) {
+				return (ExecutorService) dispatcherExecutor;
+			}
+			return new ExecutorServiceAdapter(dispatcherExecutor instanceof TaskExecutor ? (TaskExecutor) dispatcherExecutor
+					: new ConcurrentTaskExecutor(dispatcherExecutor));
+		case VIRTUAL_THREADS:
+			Method factoryMethod = ReflectionUtils.findMethod(Executors.class, "newVirtualThreadPerTaskExecutor");
+			if (factoryMethod == null) {
+				throw new IllegalStateException("VIRTUAL_THREADS dispatch mode requires a runtime supporting virtual threads, found Java "
+						+ System.getProperty("java.version"));
+			}
+			return (ExecutorService) ReflectionUtils.invokeMethod(factoryMethod, null);
+		default:
+			return null;
+		}
+	}
+
+	@Override
+	public OkHttpClient getObject() throws Exception {
+		return httpClient;
+	}
+
+	@Override
+	public Class<?> getObjectType() {
+		return OkHttpClient.class;
+	}
+
+	@Override
+	public boolean isSingleton() {
+		return true;
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (httpClient == null) {
+			return;
+		}
+		if (ownsExecutor) {
+			httpClient.dispatcher().executorService().shutdown();
+		}
+		httpClient.connectionPool().evictAll();
+	}
+
+}
@@ -0,0 +1,129 @@
+package com.mitobit.retrofit2.spring;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+
+import org.springframework.util.Assert;
+
+/**
+ * Registry of {@link OkHttpClient} instances derived from a base client through {@link OkHttpClient#newBuilder()}.
+ * Derived clients keep the {@link okhttp3.ConnectionPool} and the {@link Dispatcher} executor of their base client, so
+ * per-service timeouts and interceptors do not add sockets or threads. Services resolving to the same host with equal
+ * {@link HttpClientSettings} share a single derived instance.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class OkHttpClientRegistry {
+
+	private final ConcurrentMap<Key, OkHttpClient> clients = new ConcurrentHashMap<Key, OkHttpClient>();
+
+	/**
+	 * Returns the client to be used for the given host and settings.
+	 *
+	 * @param base the base client, must not be {@literal null}.
+	 * @param host the host the service points at, must not be {@literal null}.
+	 * @param settings the overrides to apply, must not be {@literal null}.
+	 * @return the base client itself when the settings are empty, a shared derived client otherwise.
+	 */
+	public OkHttpClient obtain(OkHttpClient base, String host, HttpClientSettings settings) {
+		Assert.notNull(base, "Base client must not be null");
+		Assert.notNull(host, "Host must not be null");
+		Assert.notNull(settings, "Settings must not be null");
+		if (settings.isEmpty()) {
+			return base;
+		}
+		Key key = new Key(base, host, settings);
+		OkHttpClient client = clients.get(key);
+		if (client == null) {
+			OkHttpClient derived = derive(base, settings);
+			client = clients.putIfAbsent(key, derived);
+			if (client == null) {
+				client = derived;
+			}
+		}
+		return client;
+	}
+
+	/**
+	 * @return the number of derived clients built so far.
+	 */
+	public int getDerivedClientCount() {
+		return clients.size();
+	}
+
+	protected OkHttpClient derive(OkHttpClient base, HttpClientSettings settings) {
+		OkHttpClient.Builder builder = base.newBuilder();
+		if (settings.getConnectTimeout() >= 0) {
+			builder.connectTimeout(settings.getConnectTimeout(), TimeUnit.MILLISECONDS);
+		}
+		if (settings.getReadTimeout() >= 0) {
+			builder.readTimeout(settings.getReadTimeout(), TimeUnit.MILLISECONDS);
+		}
+		if (settings.getWriteTimeout() >= 0) {
+			builder.writeTimeout(settings.getWriteTimeout(), TimeUnit.MILLISECONDS);
+		}
+		if (settings.getMaxRequestsPerHost() > 0
+				&& settings.getMaxRequestsPerHost() != base.dispatcher().getMaxRequestsPerHost()) {
+			// a new dispatcher is needed for its own per-host limit; it runs calls on the base executor with the same
+			// maxRequests, but counts only the calls of this client, so both limits apply per derived client
+			Dispatcher dispatcher = new Dispatcher(base.dispatcher().executorService());
+			dispatcher.setMaxRequests(base.dispatcher().getMaxRequests());
+			dispatcher.setMaxRequestsPerHost(settings.getMaxRequestsPerHost());
+			builder.dispatcher(dispatcher);
+		}
+		if (settings.getCache() != null || settings.isCacheDisabled()) {
+			builder.cache(settings.getCache());
+		}
+		if (settings.getProtocols() != null) {
+			builder.protocols(settings.getProtocols());
+		}
+		for (Interceptor interceptor : settings.getInterceptors()) {
+			builder.addInterceptor(interceptor);
+		}
+		for (Interceptor interceptor : settings.getNetworkInterceptors()) {
+			builder.addNetworkInterceptor(interceptor);
+		}
+		return builder.build();
+	}
+
+	private static final class Key {
+
+		private final OkHttpClient base;
+
+		private final String host;
+
+		private final HttpClientSettings settings;
+
+		Key(OkHttpClient base, String host, HttpClientSettings settings) {
+			this.base = base;
+			this.host = host;
+			this.settings = settings;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return base == other.base && host.equals(other.host) && settings.equals(other.settings);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = System.identityHashCode(base);
+			result = 31 * result + host.hashCode();
+			result = 31 * result + settings.hashCode();
+			return result;
+		}
+	}
+
+}
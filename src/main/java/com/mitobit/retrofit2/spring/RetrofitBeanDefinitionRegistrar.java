@@ -3,21 +3,54 @@ package com.mitobit.retrofit2.spring;
 
 import static com.mitobit.retrofit2.spring.RetrofitConstants.CONVERTER_FACTORY_BEAN_NAME;
 import static com.mitobit.retrofit2.spring.RetrofitConstants.CONVERTER_FACTORY_CLASS_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_CACHE_SIZE;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_EJECTION_FAILURES;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_EJECTION_TIME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_KEEP_ALIVE_DURATION;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_MAX_IDLE_CONNECTIONS;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_MAX_REQUESTS;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_MAX_REQUESTS_PER_HOST;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_TIMEOUT;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.DEFAULT_TRACE_SAMPLE_RATE;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.HTTP_CACHE_REGISTRY_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.HTTP_CLIENT_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.HTTP_CLIENT_PROPERTY_PREFIX;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.HTTP_CLIENT_REGISTRY_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.JAVA8_CALL_ADAPTER_FACTORY_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.JAVA8_CALL_ADAPTER_FACTORY_CLASS_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.LISTENABLE_FUTURE_CALL_ADAPTER_FACTORY_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.METER_REGISTRY_CLASS_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.RETROFIT_REGISTRY_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.SCAN_PARALLELISM_PROPERTY;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.SCHEDULER_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.SERVICE_METRICS_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.SERVICE_METRICS_CLASS_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.SERVICE_REFRESHER_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.SERVICE_WARMER_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.STREAMING_CONVERTER_FACTORY_BEAN_NAME;
+import static com.mitobit.retrofit2.spring.RetrofitConstants.TRACER_BEAN_NAME;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.parsing.BeanComponentDefinition;
 import org.springframework.beans.factory.support.AbstractBeanDefinition;
 import org.springframework.beans.factory.support.AutowireCandidateQualifier;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.ManagedList;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.context.ResourceLoaderAware;
@@ -27,10 +60,20 @@ import org.springframework.core.env.Environment;
 import org.springframework.core.io.ResourceLoader;
 import org.springframework.core.type.AnnotationMetadata;
 import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.scheduling.concurrent.ScheduledExecutorFactoryBean;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
 import org.springframework.util.StringUtils;
 
+import com.mitobit.retrofit2.spring.index.RetrofitScanCache;
+import com.mitobit.retrofit2.spring.index.RetrofitServiceIndex;
+
+import com.mitobit.retrofit2.spring.call.ListenableFutureCallAdapterFactory;
+import com.mitobit.retrofit2.spring.stream.StreamingJacksonConverterFactory;
+import com.mitobit.retrofit2.spring.trace.Tracer;
+
+import retrofit2.CallAdapter;
 import retrofit2.Converter;
 
 /**
@@ -38,6 +81,9 @@ import retrofit2.Converter;
  * Retrofit services scanning. Using an @Enable annotation allows beans to be
  * registered via @Component configuration, whereas implementing
  * {@code BeanDefinitionRegistryPostProcessor} will work for XML configuration.
+ * <p>
+ * When a compile-time {@link RetrofitServiceIndex} is present on the classpath only the indexed interfaces are read,
+ * otherwise the base packages are scanned.
  *
  * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
  * 
@@ -46,8 +92,22 @@ import retrofit2.Converter;
  */
 public class RetrofitBeanDefinitionRegistrar implements ImportBeanDefinitionRegistrar, ResourceLoaderAware, EnvironmentAware {
 
+	private static final Log logger = LogFactory.getLog(RetrofitBeanDefinitionRegistrar.class);
+
 	private static final String HTTP_CLIENT_REF = "httpClient";
 	private static final String CONVERTER_FACTORY_REF = "converterFactoryRef";
+	private static final String DATA_FORMATS = "dataFormats";
+	private static final String CALL_ADAPTER_FACTORY_REFS = "callAdapterFactoryRefs";
+	private static final String HTTP_CLIENT_GLOBAL_REF = "httpClientRef";
+	private static final String EAGERLY_VALIDATE = "eagerlyValidate";
+	private static final String LAZY = "lazy";
+	private static final String REFRESHABLE = "refreshable";
+	private static final String METRICS = "metrics";
+	private static final String TRACING = "tracing";
+	private static final String STREAMING = "streaming";
+	private static final String DISPATCH_MODE = "dispatchMode";
+	private static final String DISPATCHER_EXECUTOR_REF = "dispatcherExecutorRef";
+	private static final String CALLBACK_EXECUTOR_REF = "callbackExecutorRef";
 
 	private ResourceLoader resourceLoader;
 	private Environment environment;	
@@ -58,11 +118,38 @@ public class RetrofitBeanDefinitionRegistrar implements ImportBeanDefinitionRegi
 		Assert.notNull(importingClassMetadata, "AnnotationMetadata must not be null!");
 		Assert.notNull(registry, "BeanDefinitionRegistry must not be null!");		
 		
-		registerConverterFactoryIfNecessary(registry);
-		
 		Map<String, Object> annotationAttributes = importingClassMetadata.getAnnotationAttributes(EnableRetrofitServices.class.getName());
+		DataFormat[] globalDataFormats = (DataFormat[]) annotationAttributes.get(DATA_FORMATS);
+		registerConverterFactoryIfNecessary(registry, CONVERTER_FACTORY_BEAN_NAME, globalDataFormats);
+		List<String> defaultCallAdapterFactoryRefs = registerCallAdapterFactoriesIfNecessary(registry);
+		registerInfrastructureBeanIfNecessary(registry, HTTP_CLIENT_REGISTRY_BEAN_NAME, OkHttpClientRegistry.class);
+		registerInfrastructureBeanIfNecessary(registry, RETROFIT_REGISTRY_BEAN_NAME, RetrofitRegistry.class);
+		registerSchedulerIfNecessary(registry);
+		
 		String[] basePackages = (String[]) annotationAttributes.get("basePackages");
 		String globalConverterFactoryRef = (String) annotationAttributes.get(CONVERTER_FACTORY_REF);
+		String[] globalCallAdapterFactoryRefs = (String[]) annotationAttributes.get(CALL_ADAPTER_FACTORY_REFS);
+		String globalHttpClientRef = (String) annotationAttributes.get(HTTP_CLIENT_GLOBAL_REF);
+		boolean globalEagerlyValidate = (Boolean) annotationAttributes.get(EAGERLY_VALIDATE);
+		boolean globalLazy = (Boolean) annotationAttributes.get(LAZY);
+		boolean globalRefreshable = (Boolean) annotationAttributes.get(REFRESHABLE);
+		boolean metrics = (Boolean) annotationAttributes.get(METRICS);
+		boolean globalStreaming = (Boolean) annotationAttributes.get(STREAMING);
+		boolean tracing = (Boolean) annotationAttributes.get(TRACING);
+		if (metrics) {
+			registerServiceMetricsIfNecessary(registry);
+		}
+		if (tracing) {
+			registerTracerIfNecessary(registry, metrics);
+		}
+		registerHttpCacheRegistryIfNecessary(registry, metrics);
+		long globalCacheSize = getClientProperty("cache-size", Long.class, DEFAULT_CACHE_SIZE);
+		int ejectionFailures = getClientProperty("ejection-failures", Integer.class, DEFAULT_EJECTION_FAILURES);
+		long ejectionTime = getClientProperty("ejection-time", Long.class, DEFAULT_EJECTION_TIME);
+		String callbackExecutorRef = (String) annotationAttributes.get(CALLBACK_EXECUTOR_REF);
+		if (HTTP_CLIENT_BEAN_NAME.equals(globalHttpClientRef)) {
+			registerHttpClientIfNecessary(registry, annotationAttributes, metrics);
+		}
 		if (basePackages == null || basePackages.length == 0) {
 			basePackages = (String[]) annotationAttributes.get("value");
 		}
@@ -71,15 +158,18 @@ public class RetrofitBeanDefinitionRegistrar implements ImportBeanDefinitionRegi
 		RetrofitComponentProvider scanner = new RetrofitComponentProvider(includeFilters);
 		scanner.setResourceLoader(resourceLoader);
 		scanner.setEnvironment(environment);
+		scanner.setServiceIndex(RetrofitServiceIndex.load(resourceLoader.getClassLoader()));
+		String scanCacheDirectory = environment.getProperty(RetrofitScanCache.CACHE_DIRECTORY);
+		if (!StringUtils.isEmpty(scanCacheDirectory)) {
+			scanner.setScanCache(new RetrofitScanCache(new File(scanCacheDirectory)));
+		}
+		scanner.setParallelism(environment.getProperty(SCAN_PARALLELISM_PROPERTY, Integer.class, Runtime.getRuntime().availableProcessors()));
 
 		for (TypeFilter filter : getExcludeFilters()) {
 			scanner.addExcludeFilter(filter);
 		}
 
-		Set<BeanDefinition> result = new HashSet<BeanDefinition>();
-		for (String basePackage : basePackages) {
-			result.addAll(scanner.findCandidateComponents(basePackage));
-		}
+		Set<BeanDefinition> result = scanner.findCandidateComponents(Arrays.asList(basePackages));
 
 		for (BeanDefinition definition : result) {
 			ScannedGenericBeanDefinition scanneDefinition = (ScannedGenericBeanDefinition) definition;
@@ -88,23 +178,98 @@ public class RetrofitBeanDefinitionRegistrar implements ImportBeanDefinitionRegi
 			Map<String, Object> qualifierAttributes = scanneDefinition.getMetadata().getAnnotationAttributes(Qualifier.class.getName());
 			// check http client
 			String httpClientRef = (String) serviceAttributes.get(HTTP_CLIENT_REF);
+			if (StringUtils.isEmpty(httpClientRef)) {
+				httpClientRef = globalHttpClientRef;
+			}
 			// check converter factory
 			String converterFactoryRef = (String) serviceAttributes.get(CONVERTER_FACTORY_REF);
+			DataFormat[] dataFormats = (DataFormat[]) serviceAttributes.get(DATA_FORMATS);
+			if (StringUtils.isEmpty(converterFactoryRef) && !ObjectUtils.isEmpty(dataFormats)) {
+				converterFactoryRef = CONVERTER_FACTORY_BEAN_NAME + "-" + StringUtils.arrayToDelimitedString(dataFormats, "-");
+				registerConverterFactoryIfNecessary(registry, converterFactoryRef, dataFormats);
+			}
 			if (StringUtils.isEmpty(converterFactoryRef)) {
 				converterFactoryRef = globalConverterFactoryRef;
 			}
+			// check call adapter factories
+			String[] callAdapterFactoryRefs = (String[]) serviceAttributes.get(CALL_ADAPTER_FACTORY_REFS);
+			if (ObjectUtils.isEmpty(callAdapterFactoryRefs)) {
+				callAdapterFactoryRefs = globalCallAdapterFactoryRefs;
+			}
+			ManagedList<RuntimeBeanReference> callAdapterFactories = toReferences(callAdapterFactoryRefs);
+			callAdapterFactories.addAll(toReferences(StringUtils.toStringArray(defaultCallAdapterFactoryRefs)));
 
 
 
 			BeanDefinitionBuilder builder = BeanDefinitionBuilder.rootBeanDefinition(RetrofitServiceFactoryBean.class);
-			builder.addPropertyValue("serviceInterface", beanClassName);
+			builder.addConstructorArgValue(beanClassName);
 			builder.addPropertyValue("baseUrl", environment.resolvePlaceholders((String) serviceAttributes.get("baseUrl")));
+			String serverListRef = (String) serviceAttributes.get("serverListRef");
+			if (!StringUtils.isEmpty(serverListRef)) {
+				builder.addPropertyReference("serverListSupplier", serverListRef);
+			}
+			builder.addPropertyValue("loadBalancingStrategy", serviceAttributes.get("loadBalancing"));
+			builder.addPropertyValue("ejectionFailures", ejectionFailures);
+			builder.addPropertyValue("ejectionTime", ejectionTime);
 			if (!StringUtils.isEmpty(httpClientRef)) {
 				builder.addPropertyReference("httpClient", httpClientRef);
 			}
+			if (tracing && HTTP_CLIENT_BEAN_NAME.equals(httpClientRef)) {
+				builder.addPropertyReference("tracer", TRACER_BEAN_NAME);
+			}
 			if (converterFactoryRef != null) {
 				builder.addPropertyReference("converterFactory", converterFactoryRef);
 			}
+			builder.addPropertyValue("callAdapterFactories", callAdapterFactories);
+			builder.addPropertyReference("httpClientRegistry", HTTP_CLIENT_REGISTRY_BEAN_NAME);
+			builder.addPropertyReference("retrofitRegistry", RETROFIT_REGISTRY_BEAN_NAME);
+			builder.addPropertyReference("scheduler", SCHEDULER_BEAN_NAME);
+			builder.addPropertyValue("connectTimeout", serviceAttributes.get("connectTimeout"));
+			builder.addPropertyValue("readTimeout", serviceAttributes.get("readTimeout"));
+			builder.addPropertyValue("writeTimeout", serviceAttributes.get("writeTimeout"));
+			builder.addPropertyValue("maxRequestsPerHost", serviceAttributes.get("maxRequestsPerHost"));
+			builder.addPropertyValue("interceptors", toReferences((String[]) serviceAttributes.get("interceptors")));
+			builder.addPropertyValue("networkInterceptors", toReferences((String[]) serviceAttributes.get("networkInterceptors")));
+			String cacheDirectory = (String) serviceAttributes.get("cacheDirectory");
+			if (!StringUtils.isEmpty(cacheDirectory)) {
+				long cacheSize = (Long) serviceAttributes.get("cacheSize");
+				builder.addPropertyValue("cacheDirectory", environment.resolvePlaceholders(cacheDirectory));
+				builder.addPropertyValue("cacheSize", cacheSize > 0 ? cacheSize : globalCacheSize);
+			}
+			builder.addPropertyValue("cacheEnabled", serviceAttributes.get("cache"));
+			builder.addPropertyValue("retryBudgetRatio", serviceAttributes.get("retryBudgetRatio"));
+			builder.addPropertyValue("protocol", serviceAttributes.get("protocol"));
+			int prewarmConnections = (Integer) serviceAttributes.get("prewarmConnections");
+			long keepWarmInterval = (Long) serviceAttributes.get("keepWarmInterval");
+			if (prewarmConnections > 0 || keepWarmInterval > 0) {
+				builder.addPropertyValue("prewarmConnections", prewarmConnections);
+				builder.addPropertyValue("keepWarmInterval", keepWarmInterval);
+				registerInfrastructureBeanIfNecessary(registry, SERVICE_WARMER_BEAN_NAME, RetrofitServiceWarmer.class);
+			}
+			builder.addPropertyValue("minRetriesPerSecond", serviceAttributes.get("minRetriesPerSecond"));
+			builder.addPropertyReference("httpCacheRegistry", HTTP_CACHE_REGISTRY_BEAN_NAME);
+			if (globalEagerlyValidate || (Boolean) serviceAttributes.get(EAGERLY_VALIDATE)) {
+				builder.addPropertyValue(EAGERLY_VALIDATE, true);
+				registerInfrastructureBeanIfNecessary(registry, SERVICE_WARMER_BEAN_NAME, RetrofitServiceWarmer.class);
+			}
+			if (globalLazy || (Boolean) serviceAttributes.get(LAZY)) {
+				builder.addPropertyValue(LAZY, true);
+			}
+			if (globalRefreshable || (Boolean) serviceAttributes.get(REFRESHABLE)) {
+				builder.addPropertyValue(REFRESHABLE, true);
+				builder.addPropertyValue("baseUrlExpression", serviceAttributes.get("baseUrl"));
+				registerInfrastructureBeanIfNecessary(registry, SERVICE_REFRESHER_BEAN_NAME, RetrofitServiceRefresher.class);
+			}
+			if (metrics) {
+				builder.addPropertyReference("serviceMetrics", SERVICE_METRICS_BEAN_NAME);
+			}
+			if (globalStreaming || (Boolean) serviceAttributes.get(STREAMING)) {
+				registerStreamingConverterFactoryIfNecessary(registry);
+				builder.addPropertyReference("streamingConverterFactory", STREAMING_CONVERTER_FACTORY_BEAN_NAME);
+			}
+			if (!StringUtils.isEmpty(callbackExecutorRef)) {
+				builder.addPropertyReference("callbackExecutor", callbackExecutorRef);
+			}
 			
 			AbstractBeanDefinition beanDefinition = builder.getBeanDefinition();
 			// If the plugin interface has a Qualifier annotation, propagate that to the bean definition of the registry
@@ -168,11 +333,16 @@ public class RetrofitBeanDefinitionRegistrar implements ImportBeanDefinitionRegi
 	}
 
     /**
+     * Registers a {@link JacksonConverterFactoryBean} for the given formats, unless a bean with the same name has
+     * already been defined.
+     * 
      * @param registry, the {@link BeanDefinitionRegistry} to be used to register the
      *          {@link Converter.Factory}.
+     * @param beanName the name of the bean.
+     * @param dataFormats the body formats in order of preference, JSON when empty.
      */
-    private void registerConverterFactoryIfNecessary(BeanDefinitionRegistry registry) {
-        if (registry.containsBeanDefinition(CONVERTER_FACTORY_BEAN_NAME)) {
+    private void registerConverterFactoryIfNecessary(BeanDefinitionRegistry registry, String beanName, DataFormat[] dataFormats) {
+        if (registry.containsBeanDefinition(beanName)) {
             return;
         }
 
@@ -183,12 +353,254 @@ public class RetrofitBeanDefinitionRegistrar implements ImportBeanDefinitionRegi
                     + "If you want to use Retrofit please add converter-jackson.jar to the classpath.");
         }
 
-        RootBeanDefinition def = new RootBeanDefinition();
-        def.setBeanClassName(CONVERTER_FACTORY_CLASS_NAME);
-        def.setFactoryMethodName("create");
+        for (DataFormat dataFormat : dataFormats) {
+            if (!ClassUtils.isPresent(dataFormat.getRequiredClassName(), getClass().getClassLoader())) {
+                throw new BeanDefinitionStoreException(dataFormat.getRequiredClassName() + " not found. \n"
+                        + "Could not configure the " + dataFormat + " data format of Retrofit services because"
+                        + " its library is not on the classpath!");
+            }
+        }
+
+        RootBeanDefinition def = new RootBeanDefinition(JacksonConverterFactoryBean.class);
+        if (!ObjectUtils.isEmpty(dataFormats)) {
+            def.getPropertyValues().add(DATA_FORMATS, dataFormats);
+        }
         def.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
 
-        registry.registerBeanDefinition(CONVERTER_FACTORY_BEAN_NAME, new BeanComponentDefinition(def, CONVERTER_FACTORY_BEAN_NAME).getBeanDefinition());
+        registry.registerBeanDefinition(beanName, new BeanComponentDefinition(def, beanName).getBeanDefinition());
     }	
+
+    /**
+     * Registers the {@link StreamingJacksonConverterFactory} of the streaming services, unless a bean with the same
+     * name has already been defined. It maps bodies with the {@link com.fasterxml.jackson.databind.ObjectMapper} of the
+     * default {@link JacksonConverterFactoryBean}, unless the default converter factory is user-defined.
+     * 
+     * @param registry, the {@link BeanDefinitionRegistry} to be used to register the converter factory.
+     */
+    private void registerStreamingConverterFactoryIfNecessary(BeanDefinitionRegistry registry) {
+        if (registry.containsBeanDefinition(STREAMING_CONVERTER_FACTORY_BEAN_NAME)) {
+            return;
+        }
+
+        RootBeanDefinition def = new RootBeanDefinition(StreamingJacksonConverterFactory.class);
+        def.setFactoryMethodName("create");
+        if (registry.containsBeanDefinition(CONVERTER_FACTORY_BEAN_NAME) && JacksonConverterFactoryBean.class.getName()
+                .equals(registry.getBeanDefinition(CONVERTER_FACTORY_BEAN_NAME).getBeanClassName())) {
+            RootBeanDefinition objectMapper = new RootBeanDefinition();
+            objectMapper.setFactoryBeanName(BeanFactory.FACTORY_BEAN_PREFIX + CONVERTER_FACTORY_BEAN_NAME);
+            objectMapper.setFactoryMethodName("getObjectMapper");
+            def.getConstructorArgumentValues().addGenericArgumentValue(objectMapper);
+        }
+        def.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+
+        registry.registerBeanDefinition(STREAMING_CONVERTER_FACTORY_BEAN_NAME, def);
+    }
+
+    /**
+     * Registers the built-in {@link CallAdapter.Factory} beans, unless beans with the same names have already been
+     * defined: {@link ListenableFutureCallAdapterFactory} and, when {@code adapter-java8.jar} is on the classpath, the
+     * {@code CompletableFuture} one.
+     * 
+     * @param registry, the {@link BeanDefinitionRegistry} to be used to register the call adapter factories.
+     * @return the names of the built-in call adapter factories.
+     */
+    private List<String> registerCallAdapterFactoriesIfNecessary(BeanDefinitionRegistry registry) {
+        List<String> beanNames = new ArrayList<String>(2);
+        registerInfrastructureBeanIfNecessary(registry, LISTENABLE_FUTURE_CALL_ADAPTER_FACTORY_BEAN_NAME, ListenableFutureCallAdapterFactory.class);
+        beanNames.add(LISTENABLE_FUTURE_CALL_ADAPTER_FACTORY_BEAN_NAME);
+
+        if (registry.containsBeanDefinition(JAVA8_CALL_ADAPTER_FACTORY_BEAN_NAME)) {
+            beanNames.add(JAVA8_CALL_ADAPTER_FACTORY_BEAN_NAME);
+        } else if (ClassUtils.isPresent(JAVA8_CALL_ADAPTER_FACTORY_CLASS_NAME, getClass().getClassLoader())) {
+            RootBeanDefinition def = new RootBeanDefinition();
+            def.setBeanClassName(JAVA8_CALL_ADAPTER_FACTORY_CLASS_NAME);
+            def.setFactoryMethodName("create");
+            def.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+
+            registry.registerBeanDefinition(JAVA8_CALL_ADAPTER_FACTORY_BEAN_NAME, def);
+            beanNames.add(JAVA8_CALL_ADAPTER_FACTORY_BEAN_NAME);
+        }
+        return beanNames;
+    }
+
+    /**
+     * Registers the {@link okhttp3.OkHttpClient} shared by all the services without an explicit http client, unless
+     * a bean with the same name has already been defined. With tracing, a client defined by the application that does
+     * not install the {@link Tracer} gets a warning: the spans of its calls would not be recorded.
+     * 
+     * @param registry, the {@link BeanDefinitionRegistry} to be used to register the shared client.
+     * @param annotationAttributes the attributes of {@link EnableRetrofitServices}.
+     * @param metrics whether the pool of the shared client is bound to the service metrics.
+     */
+    private void registerHttpClientIfNecessary(BeanDefinitionRegistry registry, Map<String, Object> annotationAttributes, boolean metrics) {
+        if (registry.containsBeanDefinition(HTTP_CLIENT_BEAN_NAME)) {
+            if ((Boolean) annotationAttributes.get(TRACING)
+                    && !registry.getBeanDefinition(HTTP_CLIENT_BEAN_NAME).getPropertyValues().contains("tracer")) {
+                logger.warn("Tracing is enabled but the '" + HTTP_CLIENT_BEAN_NAME + "' bean is defined by the"
+                        + " application without the 'tracer' property: unless it installs the '" + TRACER_BEAN_NAME
+                        + "' bean as its event listener factory and interceptor, the calls of the services are not"
+                        + " traced.");
+            }
+            return;
+        }
+
+        BeanDefinitionBuilder builder = BeanDefinitionBuilder.rootBeanDefinition(OkHttpClientFactoryBean.class);
+        builder.addPropertyValue("maxIdleConnections", getClientProperty("max-idle-connections", Integer.class, DEFAULT_MAX_IDLE_CONNECTIONS));
+        builder.addPropertyValue("keepAliveDuration", getClientProperty("keep-alive-duration", Long.class, DEFAULT_KEEP_ALIVE_DURATION));
+        builder.addPropertyValue("maxRequests", getClientProperty("max-requests", Integer.class, DEFAULT_MAX_REQUESTS));
+        builder.addPropertyValue("maxRequestsPerHost", getClientProperty("max-requests-per-host", Integer.class, DEFAULT_MAX_REQUESTS_PER_HOST));
+        builder.addPropertyValue("connectTimeout", getClientProperty("connect-timeout", Long.class, DEFAULT_TIMEOUT));
+        builder.addPropertyValue("readTimeout", getClientProperty("read-timeout", Long.class, DEFAULT_TIMEOUT));
+        builder.addPropertyValue("writeTimeout", getClientProperty("write-timeout", Long.class, DEFAULT_TIMEOUT));
+        DispatchMode dispatchMode = (DispatchMode) annotationAttributes.get(DISPATCH_MODE);
+        builder.addPropertyValue(DISPATCH_MODE, dispatchMode);
+        if (dispatchMode == DispatchMode.EXECUTOR) {
+            String dispatcherExecutorRef = (String) annotationAttributes.get(DISPATCHER_EXECUTOR_REF);
+            if (StringUtils.isEmpty(dispatcherExecutorRef)) {
+                throw new BeanDefinitionStoreException("EXECUTOR dispatch mode requires the '" + DISPATCHER_EXECUTOR_REF
+                        + "' attribute of @EnableRetrofitServices to name an Executor bean.");
+            }
+            builder.addPropertyReference("dispatcherExecutor", dispatcherExecutorRef);
+        }
+        String cacheDirectory = getClientProperty("cache-directory", String.class, null);
+        if (!StringUtils.isEmpty(cacheDirectory)) {
+            builder.addPropertyValue("cacheDirectory", cacheDirectory);
+            builder.addPropertyValue("cacheSize", getClientProperty("cache-size", Long.class, DEFAULT_CACHE_SIZE));
+            builder.addPropertyReference("httpCacheRegistry", HTTP_CACHE_REGISTRY_BEAN_NAME);
+        }
+        if (metrics) {
+            builder.addPropertyReference("serviceMetrics", SERVICE_METRICS_BEAN_NAME);
+        }
+        if ((Boolean) annotationAttributes.get(TRACING)) {
+            builder.addPropertyReference("tracer", TRACER_BEAN_NAME);
+        }
+        builder.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+
+        registry.registerBeanDefinition(HTTP_CLIENT_BEAN_NAME, builder.getBeanDefinition());
+    }
+
+    /**
+     * Registers the {@link HttpCacheRegistry} sharing the disk caches of the services, unless a bean with the same name
+     * has already been defined.
+     * 
+     * @param registry, the {@link BeanDefinitionRegistry} to be used to register the cache registry.
+     * @param metrics whether the caches are bound to the service metrics.
+     */
+    private void registerHttpCacheRegistryIfNecessary(BeanDefinitionRegistry registry, boolean metrics) {
+        if (registry.containsBeanDefinition(HTTP_CACHE_REGISTRY_BEAN_NAME)) {
+            return;
+        }
+
+        BeanDefinitionBuilder builder = BeanDefinitionBuilder.rootBeanDefinition(HttpCacheRegistry.class);
+        if (metrics) {
+            builder.addPropertyReference("serviceMetrics", SERVICE_METRICS_BEAN_NAME);
+        }
+        builder.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+
+        registry.registerBeanDefinition(HTTP_CACHE_REGISTRY_BEAN_NAME, builder.getBeanDefinition());
+    }
+
+    /**
+     * Registers the scheduler shared by the services for their batch windows, retry backoffs, hedging delays and
+     * keep-warm requests, unless a bean with the same name has already been defined. Its single daemon thread starts
+     * on first use and is shut down with the context.
+     * 
+     * @param registry, the {@link BeanDefinitionRegistry} to be used to register the scheduler.
+     */
+    private void registerSchedulerIfNecessary(BeanDefinitionRegistry registry) {
+        if (registry.containsBeanDefinition(SCHEDULER_BEAN_NAME)) {
+            return;
+        }
+
+        BeanDefinitionBuilder builder = BeanDefinitionBuilder.rootBeanDefinition(ScheduledExecutorFactoryBean.class);
+        builder.addPropertyValue("threadNamePrefix", "retrofit-scheduler-");
+        builder.addPropertyValue("daemon", true);
+        builder.addPropertyValue("removeOnCancelPolicy", true);
+        builder.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+
+        registry.registerBeanDefinition(SCHEDULER_BEAN_NAME, builder.getBeanDefinition());
+    }
+
+    /**
+     * Registers the {@link Tracer} of the calls of the services, sampling the ratio of calls set by the
+     * {@code trace-sample-rate} client property, unless a bean with the same name has already been defined.
+     * 
+     * @param registry, the {@link BeanDefinitionRegistry} to be used to register the tracer.
+     * @param metrics whether the phase breakdown of the calls is recorded by the service metrics.
+     */
+    private void registerTracerIfNecessary(BeanDefinitionRegistry registry, boolean metrics) {
+        if (registry.containsBeanDefinition(TRACER_BEAN_NAME)) {
+            return;
+        }
+
+        BeanDefinitionBuilder builder = BeanDefinitionBuilder.rootBeanDefinition(Tracer.class);
+        builder.addPropertyValue("sampleRate", getClientProperty("trace-sample-rate", Double.class, DEFAULT_TRACE_SAMPLE_RATE));
+        if (metrics) {
+            builder.addPropertyReference("serviceMetrics", SERVICE_METRICS_BEAN_NAME);
+        }
+        builder.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+
+        registry.registerBeanDefinition(TRACER_BEAN_NAME, builder.getBeanDefinition());
+    }
+
+    /**
+     * Registers the {@link com.mitobit.retrofit2.spring.metrics.ServiceMetrics} publishing to the Micrometer
+     * {@code MeterRegistry} of the context, unless a bean with the same name has already been defined.
+     * 
+     * @param registry, the {@link BeanDefinitionRegistry} to be used to register the metrics.
+     */
+    private void registerServiceMetricsIfNecessary(BeanDefinitionRegistry registry) {
+        if (registry.containsBeanDefinition(SERVICE_METRICS_BEAN_NAME)) {
+            return;
+        }
+
+        if (!ClassUtils.isPresent(METER_REGISTRY_CLASS_NAME, getClass().getClassLoader())) {
+            throw new BeanDefinitionStoreException(METER_REGISTRY_CLASS_NAME + " not found. \n"
+                    + "Could not configure Retrofit services metrics because"
+                    + " micrometer-core.jar is not on the classpath!\n"
+                    + "Add micrometer-core.jar to the classpath or define a ServiceMetrics bean named "
+                    + SERVICE_METRICS_BEAN_NAME + ".");
+        }
+
+        RootBeanDefinition def = new RootBeanDefinition();
+        def.setBeanClassName(SERVICE_METRICS_CLASS_NAME);
+        def.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_CONSTRUCTOR);
+        def.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+
+        registry.registerBeanDefinition(SERVICE_METRICS_BEAN_NAME, def);
+    }
+
+    /**
+     * Registers an infrastructure bean shared by all the services, such as the {@link OkHttpClientRegistry} or the
+     * {@link RetrofitRegistry}, unless a bean with the same name has already been defined.
+     * 
+     * @param registry, the {@link BeanDefinitionRegistry} to be used to register the bean.
+     * @param beanName the name of the bean.
+     * @param beanClass the class of the bean.
+     */
+    private void registerInfrastructureBeanIfNecessary(BeanDefinitionRegistry registry, String beanName, Class<?> beanClass) {
+        if (registry.containsBeanDefinition(beanName)) {
+            return;
+        }
+
+        RootBeanDefinition def = new RootBeanDefinition(beanClass);
+        def.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+
+        registry.registerBeanDefinition(beanName, def);
+    }
+
+    private static ManagedList<RuntimeBeanReference> toReferences(String[] beanNames) {
+        ManagedList<RuntimeBeanReference> references = new ManagedList<RuntimeBeanReference>();
+        if (beanNames != null) {
+            for (String beanName : beanNames) {
+                references.add(new RuntimeBeanReference(beanName));
+            }
+        }
+        return references;
+    }
+
+    private <V> V getClientProperty(String name, Class<V> type, V defaultValue) {
+        return environment.getProperty(HTTP_CLIENT_PROPERTY_PREFIX + name, type, defaultValue);
+    }
 	
 }
@@ -1,23 +1,49 @@
 package com.mitobit.retrofit2.spring;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.springframework.beans.factory.BeanDefinitionStoreException;
 import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.annotation.AnnotationConfigUtils;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternUtils;
 import org.springframework.core.type.classreading.MetadataReader;
 import org.springframework.core.type.classreading.MetadataReaderFactory;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
 import org.springframework.core.type.filter.TypeFilter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import com.mitobit.retrofit2.spring.index.RetrofitScanCache;
+import com.mitobit.retrofit2.spring.index.RetrofitServiceIndex;
 
 /**
  * Custom {@link ClassPathScanningCandidateComponentProvider} scanning for interfaces extending the given base
  * interface.
+ * <p>
+ * Several base packages are scanned concurrently, sharing a {@link ConcurrentMetadataReaderFactory}, once the packages
+ * nested in another one have been dropped. The result of scanning a package found in jars only can be kept in a
+ * {@link RetrofitScanCache}, unless custom include or exclude filters are added: their settings are not known, so the
+ * cache could not tell the scans they select apart.
  * 
  * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
  */
@@ -27,6 +53,14 @@ class RetrofitComponentProvider extends ClassPathScanningCandidateComponentProvi
 
 	private boolean considerNestedServiceInterfaces;
 
+	private RetrofitServiceIndex serviceIndex;
+
+	private RetrofitScanCache scanCache;
+
+	private int parallelism = 1;
+
+	private boolean customFilters;
+
 	/**
 	 * Creates a new {@link RetrofitComponentProvider} using the given {@link TypeFilter} to include components to be
 	 * picked up.
@@ -61,10 +95,28 @@ class RetrofitComponentProvider extends ClassPathScanningCandidateComponentProvi
 		filterPlusInterface.add(new InterfaceTypeFilter());
 		if (includeFilter != null) {
 			filterPlusInterface.add(includeFilter);
+			customFilters = true;
 		}
 		super.addIncludeFilter(new AllTypeFilter(filterPlusInterface));
 	}
 
+	@Override
+	public void addExcludeFilter(TypeFilter excludeFilter) {
+		super.addExcludeFilter(excludeFilter);
+		customFilters = true;
+	}
+
+	/**
+	 * Sets the resource loader and a {@link ConcurrentMetadataReaderFactory} reading through it.
+	 * 
+	 * @see ClassPathScanningCandidateComponentProvider#setResourceLoader(ResourceLoader)
+	 */
+	@Override
+	public void setResourceLoader(ResourceLoader resourceLoader) {
+		super.setResourceLoader(resourceLoader);
+		setMetadataReaderFactory(new ConcurrentMetadataReaderFactory(resourceLoader));
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider#isCandidateComponent(org.springframework.beans.factory.annotation.AnnotatedBeanDefinition)
@@ -76,12 +128,74 @@ class RetrofitComponentProvider extends ClassPathScanningCandidateComponentProvi
 		return (isTopLevelType || isConsiderNestedServices);
 	}
 
+	/**
+	 * Scans the given base packages, concurrently if {@link #setParallelism(int) parallelism} allows.
+	 * 
+	 * @param basePackages the base packages, possibly overlapping.
+	 * @return the candidates of all the packages.
+	 */
+	public Set<BeanDefinition> findCandidateComponents(Collection<String> basePackages) {
+		List<String> resolvedBasePackages = new ArrayList<String>(basePackages.size());
+		for (String basePackage : basePackages) {
+			resolvedBasePackages.add(getEnvironment().resolveRequiredPlaceholders(basePackage));
+		}
+		final List<String> scannedPackages = dropNestedPackages(resolvedBasePackages);
+		Set<BeanDefinition> candidates = new LinkedHashSet<BeanDefinition>();
+		int threads = Math.min(scannedPackages.size(), parallelism);
+		if (threads <= 1) {
+			for (String basePackage : scannedPackages) {
+				candidates.addAll(findCandidateComponents(basePackage));
+			}
+			return candidates;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("retrofit-scan-"));
+		try {
+			List<Future<Set<BeanDefinition>>> results = new ArrayList<Future<Set<BeanDefinition>>>(scannedPackages.size());
+			for (final String basePackage : scannedPackages) {
+				results.add(executor.submit(new Callable<Set<BeanDefinition>>() {
+					@Override
+					public Set<BeanDefinition> call() {
+						return findCandidateComponents(basePackage);
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				try {
+					candidates.addAll(results.get(i).get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw new BeanDefinitionStoreException("Failed to scan package " + scannedPackages.get(i), e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BeanDefinitionStoreException("Interrupted while scanning packages " + scannedPackages, e);
+		} finally {
+			executor.shutdownNow();
+		}
+		return candidates;
+	}
+
 	/**
 	 * Customizes the service interface detection and triggers annotation detection on them.
 	 */
 	@Override
 	public Set<BeanDefinition> findCandidateComponents(String basePackage) {
-		Set<BeanDefinition> candidates = super.findCandidateComponents(basePackage);
+		Set<BeanDefinition> candidates;
+		String resolvedBasePackage = getEnvironment().resolveRequiredPlaceholders(basePackage);
+		if (serviceIndex != null && isIndexed(resolvedBasePackage)) {
+			candidates = findCandidateComponentsOf(serviceIndex.getCandidateTypes(resolvedBasePackage));
+		} else if (scanCache != null && !customFilters) {
+			candidates = findCandidateComponentsThroughCache(basePackage);
+		} else {
+			candidates = super.findCandidateComponents(basePackage);
+		}
 		for (BeanDefinition candidate : candidates) {
 			if (candidate instanceof AnnotatedBeanDefinition) {
 				AnnotationConfigUtils.processCommonDefinitionAnnotations((AnnotatedBeanDefinition) candidate);
@@ -90,6 +204,114 @@ class RetrofitComponentProvider extends ClassPathScanningCandidateComponentProvi
 		return candidates;
 	}
 
+	/**
+	 * Returns whether every classpath root the given package is found in holds an index; otherwise the package must be
+	 * scanned, as the services of a root compiled without annotation processing are not indexed.
+	 */
+	private boolean isIndexed(String basePackage) {
+		try {
+			Resource[] roots = ResourcePatternUtils.getResourcePatternResolver(getResourceLoader()).getResources(
+					ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX + ClassUtils.convertClassNameToResourcePath(basePackage) + "/");
+			for (Resource root : roots) {
+				if (!serviceIndex.covers(root.getURL().toExternalForm(), basePackage)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Scanning package " + basePackage + ", not indexed in " + root);
+					}
+					return false;
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			throw new BeanDefinitionStoreException("I/O failure while resolving package " + basePackage, e);
+		}
+	}
+
+	/**
+	 * Reuses the result of a previous scan of the given package if its classes have not changed, otherwise scans it
+	 * and stores the result.
+	 */
+	private Set<BeanDefinition> findCandidateComponentsThroughCache(String basePackage) {
+		String resolvedBasePackage = getEnvironment().resolveRequiredPlaceholders(basePackage);
+		List<String> filters = Collections.singletonList("nested:" + isConsiderNestedServiceInterfaces());
+		String key = scanCache.keyOf(resolvedBasePackage, ResourcePatternUtils.getResourcePatternResolver(getResourceLoader()), filters);
+		if (key == null) {
+			return super.findCandidateComponents(basePackage);
+		}
+		Set<String> types = scanCache.get(key);
+		if (types != null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Reused the scan of package " + resolvedBasePackage + " from " + scanCache.getDirectory());
+			}
+			return findCandidateComponentsOf(types);
+		}
+		Set<BeanDefinition> candidates = super.findCandidateComponents(basePackage);
+		types = new LinkedHashSet<String>(candidates.size());
+		for (BeanDefinition candidate : candidates) {
+			types.add(candidate.getBeanClassName());
+		}
+		scanCache.put(key, types);
+		return candidates;
+	}
+
+	/**
+	 * Reads the metadata of the given types only, e.g. the indexed ones, instead of scanning all the class files of a
+	 * package. The same filters used by classpath scanning are applied.
+	 */
+	private Set<BeanDefinition> findCandidateComponentsOf(Set<String> types) {
+		Set<BeanDefinition> candidates = new LinkedHashSet<BeanDefinition>();
+		for (String type : types) {
+			try {
+				MetadataReader metadataReader = getMetadataReaderFactory().getMetadataReader(type);
+				if (isCandidateComponent(metadataReader)) {
+					ScannedGenericBeanDefinition definition = new ScannedGenericBeanDefinition(metadataReader);
+					definition.setResource(metadataReader.getResource());
+					definition.setSource(metadataReader.getResource());
+					if (isCandidateComponent(definition)) {
+						candidates.add(definition);
+					}
+				}
+			} catch (FileNotFoundException e) {
+				// stale index entry, the type has been removed
+				if (logger.isDebugEnabled()) {
+					logger.debug("Ignored indexed type not found on the classpath: " + type);
+				}
+			} catch (IOException e) {
+				throw new BeanDefinitionStoreException("Failed to read candidate component class: " + type, e);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Sets the compile-time index of the service interfaces. When set, only the indexed types are considered for the
+	 * packages found in indexed classpath roots only; the other packages are scanned.
+	 * 
+	 * @param serviceIndex the index, may be {@literal null} to scan the classpath.
+	 */
+	public void setServiceIndex(RetrofitServiceIndex serviceIndex) {
+		this.serviceIndex = serviceIndex;
+	}
+
+	/**
+	 * Sets the persistent cache of the scan results, used for the packages not covered by the
+	 * {@link #setServiceIndex(RetrofitServiceIndex) index} when no custom filter is added.
+	 * 
+	 * @param scanCache the cache, may be {@literal null} to always scan the classpath.
+	 */
+	public void setScanCache(RetrofitScanCache scanCache) {
+		this.scanCache = scanCache;
+	}
+
+	/**
+	 * Sets the maximum number of base packages scanned concurrently, defaults to {@code 1}.
+	 * 
+	 * @param parallelism
+	 */
+	public void setParallelism(int parallelism) {
+		Assert.isTrue(parallelism > 0, "Parallelism must be positive");
+		this.parallelism = parallelism;
+	}
+
 	/**
 	 * @return the considerNestedServiceInterfaces
 	 */
@@ -107,6 +329,32 @@ class RetrofitComponentProvider extends ClassPathScanningCandidateComponentProvi
 		this.considerNestedServiceInterfaces = considerNestedServiceInterfaces;
 	}
 
+	/**
+	 * Drops the duplicate packages and the ones nested in another package, which are scanned along with it.
+	 * 
+	 * @param basePackages the resolved base packages.
+	 * @return the packages to scan, in lexical order.
+	 */
+	static List<String> dropNestedPackages(Collection<String> basePackages) {
+		List<String> result = new ArrayList<String>(basePackages.size());
+		// in lexical order, a package follows the ones it is nested in
+		for (String basePackage : new TreeSet<String>(basePackages)) {
+			if (!isNested(basePackage, result)) {
+				result.add(basePackage);
+			}
+		}
+		return result;
+	}
+
+	private static boolean isNested(String basePackage, List<String> packages) {
+		for (String candidate : packages) {
+			if (candidate.isEmpty() || basePackage.startsWith(candidate + ".")) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Makes sure {@link AnnotationConfigUtils#processCommonDefinitionAnnotations(AnnotatedBeanDefinition) is public and
 	 * indicates the offending JAR if not.
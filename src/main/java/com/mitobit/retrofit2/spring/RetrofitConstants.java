@@ -5,6 +5,64 @@ public class RetrofitConstants {
 	public static final String CONVERTER_FACTORY_BEAN_NAME = "jacksonConverterFactory";
 	
 	public static final String CONVERTER_FACTORY_CLASS_NAME = "retrofit2.converter.jackson.JacksonConverterFactory";	
+
+	public static final String STREAMING_CONVERTER_FACTORY_BEAN_NAME = "streamingConverterFactory";
+
+	public static final String LISTENABLE_FUTURE_CALL_ADAPTER_FACTORY_BEAN_NAME = "listenableFutureCallAdapterFactory";
+
+	public static final String JAVA8_CALL_ADAPTER_FACTORY_BEAN_NAME = "java8CallAdapterFactory";
+
+	public static final String JAVA8_CALL_ADAPTER_FACTORY_CLASS_NAME = "retrofit2.adapter.java8.Java8CallAdapterFactory";
+
+	public static final String HTTP_CLIENT_BEAN_NAME = "retrofitHttpClient";
+
+	public static final String HTTP_CLIENT_REGISTRY_BEAN_NAME = "retrofitHttpClientRegistry";
+
+	public static final String RETROFIT_REGISTRY_BEAN_NAME = "retrofitRegistry";
+
+	public static final String HTTP_CACHE_REGISTRY_BEAN_NAME = "retrofitHttpCacheRegistry";
+
+	public static final String SERVICE_WARMER_BEAN_NAME = "retrofitServiceWarmer";
+
+	public static final String SERVICE_REFRESHER_BEAN_NAME = "retrofitServiceRefresher";
+
+	public static final String SCHEDULER_BEAN_NAME = "retrofitScheduler";
+
+	public static final String ENVIRONMENT_CHANGE_EVENT_CLASS_NAME = "org.springframework.cloud.context.environment.EnvironmentChangeEvent";
+
+	public static final String TRACER_BEAN_NAME = "retrofitTracer";
+
+	public static final String SERVICE_METRICS_BEAN_NAME = "retrofitServiceMetrics";
+
+	public static final String SERVICE_METRICS_CLASS_NAME = "com.mitobit.retrofit2.spring.metrics.MicrometerServiceMetrics";
+
+	public static final String METER_REGISTRY_CLASS_NAME = "io.micrometer.core.instrument.MeterRegistry";
+
+	public static final String HTTP_CLIENT_PROPERTY_PREFIX = "retrofit.client.";
+
+	public static final String SCAN_PARALLELISM_PROPERTY = "retrofit.scan.parallelism";
+
+	public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+
+	public static final long DEFAULT_KEEP_ALIVE_DURATION = 5 * 60 * 1000L;
+
+	public static final int DEFAULT_MAX_REQUESTS = 64;
+
+	public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
+
+	public static final long DEFAULT_TIMEOUT = 10 * 1000L;
+
+	public static final long DEFAULT_CACHE_SIZE = 10 * 1024 * 1024L;
+
+	public static final int DEFAULT_EJECTION_FAILURES = 3;
+
+	public static final long DEFAULT_EJECTION_TIME = 30 * 1000L;
+
+	public static final double DEFAULT_RETRY_BUDGET_RATIO = 0.2;
+
+	public static final int DEFAULT_MIN_RETRIES_PER_SECOND = 10;
+
+	public static final double DEFAULT_TRACE_SAMPLE_RATE = 0.01;
 	
 	private RetrofitConstants() {
 		// hide default constructor
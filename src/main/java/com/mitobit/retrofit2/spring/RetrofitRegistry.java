@@ -0,0 +1,172 @@
+package com.mitobit.retrofit2.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.util.Assert;
+
+import retrofit2.CallAdapter;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Registry of the {@link Retrofit} instances backing the {@link RetrofitService} interfaces. Services configured with
+ * the same base URL, {@link OkHttpClient}, converter factories, call adapter factories and callback executor share one
+ * {@link Retrofit}, and with it the cache of parsed service methods.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class RetrofitRegistry implements ApplicationListener<ContextRefreshedEvent> {
+
+	private static final Log logger = LogFactory.getLog(RetrofitRegistry.class);
+
+	private final ConcurrentMap<Key, Retrofit> instances = new ConcurrentHashMap<Key, Retrofit>();
+
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	/**
+	 * Returns the {@link Retrofit} for the given configuration, building it on first request.
+	 *
+	 * @param baseUrl the API base URL, must not be {@literal null}.
+	 * @param client the http client, may be {@literal null} to use the Retrofit default.
+	 * @param converterFactories the converter factories in registration order, must not be {@literal null}.
+	 * @param callAdapterFactories the call adapter factories in registration order, must not be {@literal null}.
+	 * @param callbackExecutor the callback executor, may be {@literal null} to use the Retrofit default.
+	 * @return the shared instance.
+	 */
+	public Retrofit obtain(String baseUrl, OkHttpClient client, List<? extends Converter.Factory> converterFactories,
+			List<? extends CallAdapter.Factory> callAdapterFactories, Executor callbackExecutor) {
+		Assert.notNull(baseUrl, "Base URL must not be null");
+		Assert.notNull(converterFactories, "Converter factories must not be null");
+		Assert.notNull(callAdapterFactories, "Call adapter factories must not be null");
+		requestCount.incrementAndGet();
+		Key key = new Key(baseUrl, client, converterFactories, callAdapterFactories, callbackExecutor);
+		Retrofit retrofit = instances.get(key);
+		if (retrofit == null) {
+			Retrofit created = build(baseUrl, client, converterFactories, callAdapterFactories, callbackExecutor);
+			retrofit = instances.putIfAbsent(key, created);
+			if (retrofit == null) {
+				retrofit = created;
+				if (logger.isDebugEnabled()) {
+					logger.debug("Created Retrofit instance #" + instances.size() + " for " + baseUrl);
+				}
+			}
+		}
+		return retrofit;
+	}
+
+	/**
+	 * @return the number of distinct {@link Retrofit} instances built so far.
+	 */
+	public int getInstanceCount() {
+		return instances.size();
+	}
+
+	/**
+	 * @return the number of times a {@link Retrofit} instance has been requested, one per created service.
+	 */
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+
+	@Override
+	public void onApplicationEvent(ContextRefreshedEvent event) {
+		if (logger.isInfoEnabled() && getRequestCount() > 0) {
+			logger.info(getRequestCount() + " Retrofit services share " + getInstanceCount()
+					+ " distinct Retrofit instances");
+		}
+	}
+
+	protected Retrofit build(String baseUrl, OkHttpClient client, List<? extends Converter.Factory> converterFactories,
+			List<? extends CallAdapter.Factory> callAdapterFactories, Executor callbackExecutor) {
+		Retrofit.Builder builder = new Retrofit.Builder().baseUrl(baseUrl);
+		for (Converter.Factory converterFactory : converterFactories) {
+			builder.addConverterFactory(converterFactory);
+		}
+		for (CallAdapter.Factory callAdapterFactory : callAdapterFactories) {
+			builder.addCallAdapterFactory(callAdapterFactory);
+		}
+		if (client != null) {
+			// the calls are created when executed, not when their request is read
+			builder.callFactory(new DeferredCallFactory(client));
+		}
+		if (callbackExecutor != null) {
+			builder.callbackExecutor(callbackExecutor);
+		}
+		return builder.build();
+	}
+
+	private static final class Key {
+
+		private final String baseUrl;
+
+		private final Object client;
+
+		private final List<Object> converterFactories;
+
+		private final List<Object> callAdapterFactories;
+
+		private final Object callbackExecutor;
+
+		Key(String baseUrl, OkHttpClient client, List<?> converterFactories, List<?> callAdapterFactories,
+				Executor callbackExecutor) {
+			this.baseUrl = baseUrl;
+			this.client = client;
+			this.converterFactories = Collections.unmodifiableList(new ArrayList<Object>(converterFactories));
+			this.callAdapterFactories = Collections.unmodifiableList(new ArrayList<Object>(callAdapterFactories));
+			this.callbackExecutor = callbackExecutor;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return baseUrl.equals(other.baseUrl) && client == other.client && callbackExecutor == other.callbackExecutor
+					&& sameElements(converterFactories, other.converterFactories)
+					&& sameElements(callAdapterFactories, other.callAdapterFactories);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = baseUrl.hashCode();
+			result = 31 * result + System.identityHashCode(client);
+			result = 31 * result + System.identityHashCode(callbackExecutor);
+			for (Object converterFactory : converterFactories) {
+				result = 31 * result + System.identityHashCode(converterFactory);
+			}
+			for (Object callAdapterFactory : callAdapterFactories) {
+				result = 31 * result + System.identityHashCode(callAdapterFactory);
+			}
+			return result;
+		}
+
+		private static boolean sameElements(List<Object> left, List<Object> right) {
+			if (left.size() != right.size()) {
+				return false;
+			}
+			for (int i = 0; i < left.size(); i++) {
+				if (left.get(i) != right.get(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
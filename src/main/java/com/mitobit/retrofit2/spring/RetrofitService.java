@@ -8,6 +8,8 @@ import java.lang.annotation.Target;
 
 import org.springframework.stereotype.Service;
 
+import com.mitobit.retrofit2.spring.balancer.LoadBalancingStrategy;
+
 import retrofit2.Converter;
 
 @Retention(RetentionPolicy.RUNTIME)
@@ -17,11 +19,30 @@ import retrofit2.Converter;
 public @interface RetrofitService {
 	
 	String value() default "";
-    
+
+	/**
+	 * The API base URL. Several comma-separated URLs, e.g. the replicas of the API, spread the requests of this
+	 * service over them through a {@link com.mitobit.retrofit2.spring.balancer.LoadBalancingInterceptor}. Placeholders
+	 * are resolved against the environment.
+	 */
 	String baseUrl();
 
 	/**
-	 * Specify new {@link okhttp3.OkHttpClient} bean name.
+	 * Configures the name of the {@link com.mitobit.retrofit2.spring.balancer.ServerListSupplier} bean supplying the
+	 * servers the requests of this service are spread over, in place of the host of {@link #baseUrl()}.
+	 */
+	String serverListRef() default "";
+
+	/**
+	 * How the server of each request is chosen when this service has several servers. Servers failing consecutive
+	 * requests are ejected for a while, as configured by the {@code retrofit.client.ejection-failures} and
+	 * {@code retrofit.client.ejection-time} (milliseconds) environment properties.
+	 */
+	LoadBalancingStrategy loadBalancing() default LoadBalancingStrategy.ROUND_ROBIN;
+
+	/**
+	 * Specify new {@link okhttp3.OkHttpClient} bean name. When empty the client referenced by
+	 * {@link EnableRetrofitServices#httpClientRef()} is used.
 	 */
 	String httpClient() default "";
 
@@ -30,5 +51,133 @@ public @interface RetrofitService {
 	 * discovered through this annotation.
 	 */
 	String converterFactoryRef() default "";
-	
+
+	/**
+	 * The body formats of this service, in order of preference, replacing the ones of
+	 * {@link EnableRetrofitServices#dataFormats()}. Ignored when {@link #converterFactoryRef()} is set. The services
+	 * with the same formats share a converter factory bean named after them, e.g.
+	 * {@code jacksonConverterFactory-SMILE-JSON}.
+	 */
+	DataFormat[] dataFormats() default {};
+
+	/**
+	 * Configures the names of the {@link retrofit2.CallAdapter.Factory} bean definitions to be used to create this
+	 * service, replacing the ones of {@link EnableRetrofitServices#callAdapterFactoryRefs()}.
+	 */
+	String[] callAdapterFactoryRefs() default {};
+
+	/**
+	 * Connect timeout in milliseconds for this service. Negative values keep the timeout of the base client.
+	 */
+	long connectTimeout() default -1;
+
+	/**
+	 * Read timeout in milliseconds for this service. Negative values keep the timeout of the base client.
+	 */
+	long readTimeout() default -1;
+
+	/**
+	 * Write timeout in milliseconds for this service. Negative values keep the timeout of the base client.
+	 */
+	long writeTimeout() default -1;
+
+	/**
+	 * Maximum number of concurrent asynchronous requests per host for this service. Values not positive keep the limit
+	 * of the base client.
+	 * <p>
+	 * A different limit gives the derived client its own dispatcher, with the global limit of the base client: both
+	 * limits then count the calls of the derived client only, apart from those of the base client and of the other
+	 * derived clients.
+	 */
+	int maxRequestsPerHost() default -1;
+
+	/**
+	 * Names of the {@link okhttp3.Interceptor} beans to add as application interceptors for this service.
+	 */
+	String[] interceptors() default {};
+
+	/**
+	 * Names of the {@link okhttp3.Interceptor} beans to add as network interceptors for this service.
+	 */
+	String[] networkInterceptors() default {};
+
+	/**
+	 * Directory of an OkHttp disk cache for this service, replacing the one of the base client. Services using the same
+	 * directory share one cache. Placeholders are resolved against the environment.
+	 */
+	String cacheDirectory() default "";
+
+	/**
+	 * Maximum size in bytes of the {@link #cacheDirectory()} cache. Negative values use the
+	 * {@code retrofit.client.cache-size} environment property, 10 MB by default.
+	 */
+	long cacheSize() default -1;
+
+	/**
+	 * Whether this service uses a disk cache. When {@literal false}, the cache of the base client, if any, is not used.
+	 */
+	boolean cache() default true;
+
+	/**
+	 * Retries and hedged requests allowed per call of the {@link com.mitobit.retrofit2.spring.retry.Retry @Retry} and
+	 * {@link com.mitobit.retrofit2.spring.retry.Hedge @Hedge} methods of this service, on top of
+	 * {@link #minRetriesPerSecond()}.
+	 *
+	 * @see com.mitobit.retrofit2.spring.retry.RetryBudget
+	 */
+	double retryBudgetRatio() default RetrofitConstants.DEFAULT_RETRY_BUDGET_RATIO;
+
+	/**
+	 * Retries and hedged requests allowed per second to this service regardless of its calls.
+	 */
+	int minRetriesPerSecond() default RetrofitConstants.DEFAULT_MIN_RETRIES_PER_SECOND;
+
+	/**
+	 * Whether the methods of this service are parsed and their converters resolved at startup, failing the context
+	 * if the interface is malformed. Also enabled by {@link EnableRetrofitServices#eagerlyValidate()}.
+	 */
+	boolean eagerlyValidate() default false;
+
+	/**
+	 * Whether this service is exposed as a proxy that builds its Retrofit instance and client on the first method
+	 * invocation instead of at startup. Also enabled by {@link EnableRetrofitServices#lazy()}.
+	 */
+	boolean lazy() default false;
+
+	/**
+	 * Whether this service can be rebound to another base URL or client without restarting the context, through
+	 * {@link RetrofitServiceRefresher}. The placeholders of {@link #baseUrl()} are resolved again on each environment
+	 * change. Also enabled by {@link EnableRetrofitServices#refreshable()}.
+	 */
+	boolean refreshable() default false;
+
+	/**
+	 * The HTTP versions this service talks to its servers, e.g. {@link HttpProtocol#H2C} to multiplex its calls over a
+	 * single cleartext HTTP/2 connection per server. Defaults to the ones of the client.
+	 */
+	HttpProtocol protocol() default HttpProtocol.DEFAULT;
+
+	/**
+	 * The number of connections opened to each server of this service at startup, so that the first calls do not pay
+	 * the TCP and TLS handshakes. Failures to connect are logged and do not fail the startup.
+	 *
+	 * @see ConnectionWarmer
+	 */
+	int prewarmConnections() default 0;
+
+	/**
+	 * The interval, in milliseconds, at which the {@link #prewarmConnections()} of this service, or a single one, are
+	 * used to keep them open while the service is idle. Never by default; should be shorter than the
+	 * {@code retrofit.client.keep-alive-duration} and the idle timeout of the servers.
+	 */
+	long keepWarmInterval() default 0;
+
+	/**
+	 * Whether this service streams {@code Iterator<T>} request and response bodies as JSON arrays, one element at a
+	 * time. Also enabled by {@link EnableRetrofitServices#streaming()}.
+	 *
+	 * @see com.mitobit.retrofit2.spring.stream.StreamingJacksonConverterFactory
+	 */
+	boolean streaming() default false;
+
 }
\ No newline at end of file
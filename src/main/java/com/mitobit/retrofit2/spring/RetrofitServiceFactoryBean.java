@@ -1,14 +1,58 @@
 package com.mitobit.retrofit2.spring;
 
+import static org.springframework.util.Assert.isTrue;
 import static org.springframework.util.Assert.notNull;
 
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import com.mitobit.retrofit2.spring.balancer.LoadBalancingInterceptor;
+import com.mitobit.retrofit2.spring.balancer.LoadBalancingStrategy;
+import com.mitobit.retrofit2.spring.balancer.ServerListSupplier;
+import com.mitobit.retrofit2.spring.batch.MethodBatcher;
+import com.mitobit.retrofit2.spring.bulkhead.BulkheadCallDecoratorFactory;
+import com.mitobit.retrofit2.spring.cache.CachingCallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.DecoratingCallAdapterFactory;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+import com.mitobit.retrofit2.spring.coalesce.CoalescingCallDecoratorFactory;
+import com.mitobit.retrofit2.spring.metrics.MetricsCallDecoratorFactory;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+import com.mitobit.retrofit2.spring.retry.RetryBudget;
+import com.mitobit.retrofit2.spring.retry.RetryingCallDecoratorFactory;
+import com.mitobit.retrofit2.spring.trace.Tracer;
+import com.mitobit.retrofit2.spring.trace.TracingCallDecoratorFactory;
 
+import retrofit2.CallAdapter;
 import retrofit2.Converter.Factory;
 import retrofit2.Retrofit;
-import retrofit2.Retrofit.Builder;
 
 /**
  * BeanFactory that enables injection of RetrofitService interfaces. 
@@ -18,15 +62,122 @@ import retrofit2.Retrofit.Builder;
  * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
  * 
  */
-public class RetrofitServiceFactoryBean<T> implements FactoryBean<T>, InitializingBean {
+public class RetrofitServiceFactoryBean<T> implements FactoryBean<T>, InitializingBean, DisposableBean, EnvironmentAware {
+
+	private static final Log logger = LogFactory.getLog(RetrofitServiceFactoryBean.class);
+
+	private static final Method LOAD_SERVICE_METHOD = ReflectionUtils.findMethod(Retrofit.class, "loadServiceMethod", Method.class);
+
+	static {
+		if (LOAD_SERVICE_METHOD != null) {
+			ReflectionUtils.makeAccessible(LOAD_SERVICE_METHOD);
+		}
+	}
 
 	private Class<T> serviceInterface;
 	
 	private OkHttpClient httpClient;
 
 	private Factory converterFactory;
+
+	private Factory streamingConverterFactory;
 	
 	private String baseUrl;
+
+	private ServerListSupplier serverListSupplier;
+
+	private LoadBalancingStrategy loadBalancingStrategy = LoadBalancingStrategy.ROUND_ROBIN;
+
+	private int ejectionFailures = RetrofitConstants.DEFAULT_EJECTION_FAILURES;
+
+	private long ejectionTime = RetrofitConstants.DEFAULT_EJECTION_TIME;
+
+	private OkHttpClientRegistry httpClientRegistry;
+
+	private RetrofitRegistry retrofitRegistry;
+
+	private long connectTimeout = HttpClientSettings.UNSET;
+
+	private long readTimeout = HttpClientSettings.UNSET;
+
+	private long writeTimeout = HttpClientSettings.UNSET;
+
+	private int maxRequestsPerHost = HttpClientSettings.UNSET;
+
+	private List<Interceptor> interceptors;
+
+	private List<Interceptor> networkInterceptors;
+
+	private File cacheDirectory;
+
+	private long cacheSize = RetrofitConstants.DEFAULT_CACHE_SIZE;
+
+	private boolean cacheEnabled = true;
+
+	private HttpCacheRegistry httpCacheRegistry;
+
+	private HttpProtocol protocol = HttpProtocol.DEFAULT;
+
+	private int prewarmConnections;
+
+	private long keepWarmInterval;
+
+	private boolean eagerlyValidate;
+
+	private boolean lazy;
+
+	private boolean refreshable;
+
+	private String baseUrlExpression;
+
+	private Environment environment;
+
+	private ServiceMetrics serviceMetrics;
+
+	private Tracer tracer;
+
+	private double retryBudgetRatio = RetrofitConstants.DEFAULT_RETRY_BUDGET_RATIO;
+
+	private int minRetriesPerSecond = RetrofitConstants.DEFAULT_MIN_RETRIES_PER_SECOND;
+
+	private List<CallAdapter.Factory> callAdapterFactories;
+
+	private Executor callbackExecutor;
+
+	private ScheduledExecutorService scheduler;
+
+	private ScheduledThreadPoolExecutor ownScheduler;
+
+	private Retrofit retrofit;
+
+	private OkHttpClient resolvedHttpClient;
+
+	private boolean reboundHttpClient;
+
+	private List<CallDecoratorFactory> decoratorFactories;
+
+	private LoadBalancingInterceptor loadBalancingInterceptor;
+
+	private volatile ServiceInvocationHandler<T> handler;
+
+	private ConnectionWarmer connectionWarmer;
+
+	/**
+	 * Creates a new {@link RetrofitServiceFactoryBean}, the service interface must be set through
+	 * {@link #setServiceInterface(Class)}.
+	 */
+	public RetrofitServiceFactoryBean() {
+	}
+
+	/**
+	 * Creates a new {@link RetrofitServiceFactoryBean} for the given service interface. Knowing the interface at
+	 * construction time lets the container determine the object type without configuring the factory.
+	 *
+	 * @param serviceInterface class of the interface
+	 */
+	public RetrofitServiceFactoryBean(Class<T> serviceInterface) {
+		this.serviceInterface = serviceInterface;
+	}
 	
 	/**
 	 * Sets the service interface of the Retrofit adapter.
@@ -58,7 +209,45 @@ public class RetrofitServiceFactoryBean<T> implements FactoryBean<T>, Initializi
 	}
 
 	/**
-	 * Set a fixed API base URL.
+	 * Sets the converter factory of the streamed bodies, consulted before {@link #setConverterFactory(Factory) the
+	 * converter factory}.
+	 *
+	 * @param streamingConverterFactory the converter factory instance
+	 */
+	public void setStreamingConverterFactory(Factory streamingConverterFactory) {
+		this.streamingConverterFactory = streamingConverterFactory;
+	}
+
+	/**
+	 * Sets the call adapter factories to add to Retrofit adapter, in order of precedence.
+	 *
+	 * @param callAdapterFactories the call adapter factory instances
+	 */
+	public void setCallAdapterFactories(List<CallAdapter.Factory> callAdapterFactories) {
+		this.callAdapterFactories = callAdapterFactories;
+	}
+
+	/**
+	 * Sets the executor Retrofit runs the callbacks of asynchronous calls on.
+	 *
+	 * @param callbackExecutor
+	 */
+	public void setCallbackExecutor(Executor callbackExecutor) {
+		this.callbackExecutor = callbackExecutor;
+	}
+
+	/**
+	 * Sets the scheduler timing the batch windows, the retry backoffs, the hedging delays and the keep-warm requests
+	 * of this service. Without one, this service creates its own on first use and shuts it down when destroyed.
+	 *
+	 * @param scheduler
+	 */
+	public void setScheduler(ScheduledExecutorService scheduler) {
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Set a fixed API base URL, or several comma-separated ones the requests are spread over.
 	 * 
 	 * @param baseUrl
 	 */
@@ -66,17 +255,608 @@ public class RetrofitServiceFactoryBean<T> implements FactoryBean<T>, Initializi
 		this.baseUrl = baseUrl;
 	}
 
+	/**
+	 * Sets the supplier of the servers the requests to the base URL are spread over.
+	 *
+	 * @param serverListSupplier
+	 */
+	public void setServerListSupplier(ServerListSupplier serverListSupplier) {
+		this.serverListSupplier = serverListSupplier;
+	}
+
+	/**
+	 * Sets how the server of each request is chosen when there are several servers, defaults to round-robin.
+	 *
+	 * @param loadBalancingStrategy
+	 */
+	public void setLoadBalancingStrategy(LoadBalancingStrategy loadBalancingStrategy) {
+		this.loadBalancingStrategy = loadBalancingStrategy;
+	}
+
+	/**
+	 * Sets the number of consecutive failures ejecting a server when there are several servers.
+	 *
+	 * @param ejectionFailures
+	 */
+	public void setEjectionFailures(int ejectionFailures) {
+		this.ejectionFailures = ejectionFailures;
+	}
+
+	/**
+	 * Sets the base time in milliseconds a failing server is ejected for when there are several servers.
+	 *
+	 * @param ejectionTime
+	 */
+	public void setEjectionTime(long ejectionTime) {
+		this.ejectionTime = ejectionTime;
+	}
+
+	/**
+	 * Sets the registry used to derive a per-service client from {@link #setHttpClient(OkHttpClient) the http client}.
+	 *
+	 * @param httpClientRegistry
+	 */
+	public void setHttpClientRegistry(OkHttpClientRegistry httpClientRegistry) {
+		this.httpClientRegistry = httpClientRegistry;
+	}
+
+	/**
+	 * Sets the registry sharing {@link Retrofit} instances among services with the same configuration.
+	 *
+	 * @param retrofitRegistry
+	 */
+	public void setRetrofitRegistry(RetrofitRegistry retrofitRegistry) {
+		this.retrofitRegistry = retrofitRegistry;
+	}
+
+	/**
+	 * Sets the connect timeout in milliseconds, negative values keep the one of the http client.
+	 *
+	 * @param connectTimeout
+	 */
+	public void setConnectTimeout(long connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	/**
+	 * Sets the read timeout in milliseconds, negative values keep the one of the http client.
+	 *
+	 * @param readTimeout
+	 */
+	public void setReadTimeout(long readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Sets the write timeout in milliseconds, negative values keep the one of the http client.
+	 *
+	 * @param writeTimeout
+	 */
+	public void setWriteTimeout(long writeTimeout) {
+		this.writeTimeout = writeTimeout;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent asynchronous requests per host, values not positive keep the one of the
+	 * http client. The limits of the derived client count its own calls only, see
+	 * {@link RetrofitService#maxRequestsPerHost()}.
+	 *
+	 * @param maxRequestsPerHost
+	 */
+	public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+		this.maxRequestsPerHost = maxRequestsPerHost;
+	}
+
+	/**
+	 * Sets the application interceptors to add to the http client of this service.
+	 *
+	 * @param interceptors
+	 */
+	public void setInterceptors(List<Interceptor> interceptors) {
+		this.interceptors = interceptors;
+	}
+
+	/**
+	 * Sets the network interceptors to add to the http client of this service.
+	 *
+	 * @param networkInterceptors
+	 */
+	public void setNetworkInterceptors(List<Interceptor> networkInterceptors) {
+		this.networkInterceptors = networkInterceptors;
+	}
+
+	/**
+	 * Sets the directory of the disk cache of this service, replacing the one of the http client.
+	 *
+	 * @param cacheDirectory
+	 */
+	public void setCacheDirectory(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+	/**
+	 * Sets the maximum size in bytes of the disk cache of this service.
+	 *
+	 * @param cacheSize
+	 */
+	public void setCacheSize(long cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * Sets whether this service uses a disk cache, defaults to {@literal true}.
+	 *
+	 * @param cacheEnabled
+	 */
+	public void setCacheEnabled(boolean cacheEnabled) {
+		this.cacheEnabled = cacheEnabled;
+	}
+
+	/**
+	 * Sets the registry the disk cache of this service is obtained from.
+	 *
+	 * @param httpCacheRegistry
+	 */
+	public void setHttpCacheRegistry(HttpCacheRegistry httpCacheRegistry) {
+		this.httpCacheRegistry = httpCacheRegistry;
+	}
+
+	/**
+	 * Sets the HTTP versions of this service, defaults to the ones of the http client.
+	 *
+	 * @param protocol
+	 */
+	public void setProtocol(HttpProtocol protocol) {
+		this.protocol = protocol;
+	}
+
+	/**
+	 * Sets the number of connections opened to each server at startup by {@link RetrofitServiceWarmer}, none by default.
+	 *
+	 * @param prewarmConnections
+	 */
+	public void setPrewarmConnections(int prewarmConnections) {
+		this.prewarmConnections = prewarmConnections;
+	}
+
+	/**
+	 * Sets the interval in milliseconds at which the warm connections are used to keep them open, never by default.
+	 *
+	 * @param keepWarmInterval
+	 */
+	public void setKeepWarmInterval(long keepWarmInterval) {
+		this.keepWarmInterval = keepWarmInterval;
+	}
+
+	/**
+	 * @return whether connections are opened ahead of the calls, at startup or periodically.
+	 */
+	public boolean isWarmingConnections() {
+		return prewarmConnections > 0 || keepWarmInterval > 0;
+	}
+
+	/**
+	 * Sets whether the service methods are validated and warmed up at startup by {@link RetrofitServiceWarmer}.
+	 *
+	 * @param eagerlyValidate
+	 */
+	public void setEagerlyValidate(boolean eagerlyValidate) {
+		this.eagerlyValidate = eagerlyValidate;
+	}
+
+	public boolean isEagerlyValidate() {
+		return eagerlyValidate;
+	}
+
+	/**
+	 * Sets whether the exposed service is a proxy that builds the {@link Retrofit} instance, and the client of this
+	 * service, on its first method invocation.
+	 *
+	 * @param lazy
+	 */
+	public void setLazy(boolean lazy) {
+		this.lazy = lazy;
+	}
+
+	/**
+	 * Sets whether the exposed service is a proxy whose target can be replaced through {@link #rebind(String)} and
+	 * {@link #refresh()}.
+	 *
+	 * @param refreshable
+	 */
+	public void setRefreshable(boolean refreshable) {
+		this.refreshable = refreshable;
+	}
+
+	public boolean isRefreshable() {
+		return refreshable;
+	}
+
+	/**
+	 * Sets the base URL as declared, with its placeholders, resolved again against the environment on
+	 * {@link #refresh()}. Defaults to the {@link #setBaseUrl(String) base URL}.
+	 *
+	 * @param baseUrlExpression
+	 */
+	public void setBaseUrlExpression(String baseUrlExpression) {
+		this.baseUrlExpression = baseUrlExpression;
+	}
+
+	@Override
+	public void setEnvironment(Environment environment) {
+		this.environment = environment;
+	}
+
+	/**
+	 * @return the current base URL, or comma-separated base URLs.
+	 */
+	public synchronized String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * Sets the metrics recording the calls of this service.
+	 *
+	 * @param serviceMetrics
+	 */
+	public void setServiceMetrics(ServiceMetrics serviceMetrics) {
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * Sets the tracer of the calls of this service. It must also be installed on the http client of this service.
+	 *
+	 * @param tracer
+	 */
+	public void setTracer(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * Sets the retries and hedged requests allowed per call, on top of the {@link #setMinRetriesPerSecond(int)
+	 * minimum}.
+	 *
+	 * @param retryBudgetRatio
+	 */
+	public void setRetryBudgetRatio(double retryBudgetRatio) {
+		this.retryBudgetRatio = retryBudgetRatio;
+	}
+
+	/**
+	 * Sets the retries and hedged requests allowed per second regardless of the calls.
+	 *
+	 * @param minRetriesPerSecond
+	 */
+	public void setMinRetriesPerSecond(int minRetriesPerSecond) {
+		this.minRetriesPerSecond = minRetriesPerSecond;
+	}
+
 	@Override
 	public T getObject() throws Exception {
-		Builder builder = new Retrofit.Builder().baseUrl(baseUrl);
+		Map<Method, MethodBatcher> batchers = MethodBatcher.isBatching(serviceInterface)
+				? MethodBatcher.forInterface(serviceInterface, getScheduler())
+				: Collections.<Method, MethodBatcher> emptyMap();
+		if (lazy || refreshable || !batchers.isEmpty()) {
+			ServiceInvocationHandler<T> handler = new ServiceInvocationHandler<T>(serviceInterface, batchers) {
+				@Override
+				protected T createTarget() {
+					return getRetrofit().create(serviceInterface);
+				}
+			};
+			if (!lazy) {
+				handler.getTarget();
+			}
+			this.handler = handler;
+			return handler.newProxy();
+		}
+		return getRetrofit().create(serviceInterface);
+	}
+
+	/**
+	 * Resolves the {@link #setBaseUrlExpression(String) base URL expression} against the environment again, and
+	 * rebinds the service if the base URL changed.
+	 *
+	 * @return whether the service was rebound.
+	 * @throws IllegalStateException if the service is not refreshable.
+	 */
+	public boolean refresh() {
+		String expression = baseUrlExpression != null ? baseUrlExpression : getBaseUrl();
+		String resolved = environment != null ? environment.resolvePlaceholders(expression) : expression;
+		if (resolved.equals(getBaseUrl())) {
+			return false;
+		}
+		rebind(resolved);
+		return true;
+	}
+
+	/**
+	 * Rebinds the service to the given base URL, keeping its client.
+	 *
+	 * @param baseUrl the new base URL, or comma-separated base URLs.
+	 * @see #rebind(String, OkHttpClient)
+	 */
+	public void rebind(String baseUrl) {
+		rebind(baseUrl, null);
+	}
+
+	/**
+	 * Rebinds the service to the given base URL and client. The {@link Retrofit} and the service are built again and
+	 * swapped in atomically: calls created before complete on the previous ones, later calls use the new ones. The
+	 * connection pool of a client given to a previous rebind is drained once replaced: its idle connections are
+	 * closed, the busy ones when their keep-alive expires after the call. A service whose proxy is not created yet only
+	 * records the new base URL and client.
+	 *
+	 * @param baseUrl the new base URL, or comma-separated base URLs.
+	 * @param httpClient the new client, may be {@literal null} to keep the current one.
+	 * @throws IllegalStateException if the service is not refreshable.
+	 * @throws IllegalArgumentException if a base URL is not a valid http(s) URL.
+	 */
+	public void rebind(String baseUrl, OkHttpClient httpClient) {
+		Assert.state(refreshable, "Retrofit service " + serviceInterface.getName() + " is not refreshable");
+		validateBaseUrl(baseUrl);
+		ConnectionPool previousPool = null;
+		ConnectionPool currentPool = null;
+		synchronized (this) {
+			if (reboundHttpClient && resolvedHttpClient != null) {
+				previousPool = resolvedHttpClient.connectionPool();
+			}
+			this.baseUrl = baseUrl;
+			if (httpClient != null) {
+				this.httpClient = httpClient;
+				this.reboundHttpClient = true;
+			}
+			if (retrofit != null) {
+				retrofit = resolveRetrofit();
+				currentPool = resolvedHttpClient != null ? resolvedHttpClient.connectionPool() : null;
+				if (connectionWarmer != null) {
+					connectionWarmer.setClient(getCallFactory());
+				}
+			}
+		}
+		// no handler until the proxy is created, which then uses the new base URL
+		ServiceInvocationHandler<T> handler = this.handler;
+		if (handler != null) {
+			handler.rebind();
+		}
+		if (previousPool != null && previousPool != currentPool) {
+			previousPool.evictAll();
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Rebound Retrofit service " + serviceInterface.getName() + " to " + baseUrl);
+		}
+	}
+
+	/**
+	 * Parses every method of the service interface and resolves its call adapter and converters, filling the service
+	 * method cache of the backing {@link Retrofit}.
+	 *
+	 * @return the elapsed time in nanoseconds.
+	 * @throws IllegalArgumentException if a method of the service interface is malformed.
+	 */
+	public long warmUp() {
+		long start = System.nanoTime();
+		Retrofit retrofit = getRetrofit();
+		if (LOAD_SERVICE_METHOD == null) {
+			// unknown Retrofit version: validate on a copy, which still warms up the shared converters
+			retrofit.newBuilder().validateEagerly(true).build().create(serviceInterface);
+			return System.nanoTime() - start;
+		}
+		loadServiceMethods(retrofit, true);
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Loads every method of the service interface into the service method cache of the given {@link Retrofit}, with
+	 * the method and the decorator factories of this service bound for the shared {@link DecoratingCallAdapterFactory}.
+	 *
+	 * @param failFast whether a malformed method fails, otherwise it is left to fail when invoked.
+	 */
+	private void loadServiceMethods(Retrofit retrofit, boolean failFast) {
+		List<CallDecoratorFactory> decoratorFactories = this.decoratorFactories != null ? this.decoratorFactories
+				: Collections.<CallDecoratorFactory> emptyList();
+		for (Method method : serviceInterface.getMethods()) {
+			if (Modifier.isAbstract(method.getModifiers())) {
+				DecoratingCallAdapterFactory.bind(new ServiceMethodDescriptor(serviceInterface, method), decoratorFactories);
+				try {
+					LOAD_SERVICE_METHOD.invoke(retrofit, method);
+				} catch (InvocationTargetException e) {
+					if (failFast) {
+						ReflectionUtils.rethrowRuntimeException(e.getTargetException());
+					}
+				} catch (IllegalAccessException e) {
+					ReflectionUtils.handleReflectionException(e);
+				} finally {
+					DecoratingCallAdapterFactory.unbind();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Opens the {@link #setPrewarmConnections(int) connections} of this service to each of its servers, then starts
+	 * keeping them warm when an {@link #setKeepWarmInterval(long) interval} is set.
+	 *
+	 * @return the number of warm-up requests that got a response.
+	 * @throws InterruptedException if interrupted while waiting for the responses.
+	 */
+	public int warmConnections() throws InterruptedException {
+		ConnectionWarmer warmer;
+		synchronized (this) {
+			if (connectionWarmer == null) {
+				connectionWarmer = new ConnectionWarmer(getCallFactory(), new ServerListSupplier() {
+					@Override
+					public List<String> getServers() {
+						return serverListSupplier != null ? serverListSupplier.getServers()
+								: RetrofitServiceFactoryBean.this.getServers();
+					}
+				}, Math.max(prewarmConnections, 1), getScheduler());
+			}
+			warmer = connectionWarmer;
+		}
+		int warmed = prewarmConnections > 0 ? warmer.warm() : 0;
+		if (keepWarmInterval > 0) {
+			warmer.keepWarm(keepWarmInterval);
+		}
+		return warmed;
+	}
+
+	private synchronized ScheduledExecutorService getScheduler() {
+		if (scheduler == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("retrofit-scheduler-");
+			threadFactory.setDaemon(true);
+			ownScheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+			ownScheduler.setRemoveOnCancelPolicy(true);
+			scheduler = ownScheduler;
+		}
+		return scheduler;
+	}
+
+	/**
+	 * Returns the client of the current {@link Retrofit}, the Retrofit default one when none is configured.
+	 */
+	private synchronized OkHttpClient getCallFactory() {
+		okhttp3.Call.Factory callFactory = getRetrofit().callFactory();
+		if (callFactory instanceof DeferredCallFactory) {
+			return ((DeferredCallFactory) callFactory).getClient();
+		}
+		return (OkHttpClient) callFactory;
+	}
+
+	private synchronized Retrofit getRetrofit() {
+		if (retrofit == null) {
+			retrofit = resolveRetrofit();
+		}
+		return retrofit;
+	}
+
+	/**
+	 * Resolves the {@link Retrofit} of this service, shared through the registry when one is configured.
+	 */
+	private Retrofit resolveRetrofit() {
+		List<Factory> converterFactories = new ArrayList<Factory>(3);
+		if (tracer != null) {
+			converterFactories.add(tracer.getConverterFactory());
+		}
+		if (streamingConverterFactory != null) {
+			converterFactories.add(streamingConverterFactory);
+		}
 		if (converterFactory != null) {
-			builder.addConverterFactory(converterFactory);
+			converterFactories.add(converterFactory);
+		}
+		List<CallAdapter.Factory> callAdapterFactories = new ArrayList<CallAdapter.Factory>();
+		if (this.decoratorFactories == null) {
+			// kept on rebind, so limits, budgets and cached responses carry over
+			this.decoratorFactories = getCallDecoratorFactories();
+		}
+		boolean loadingMethods = !decoratorFactories.isEmpty() && LOAD_SERVICE_METHOD != null;
+		if (loadingMethods) {
+			// decorators come first and delegate to the adapter of the return type; the shared factory keeps the
+			// Retrofit shareable with other services
+			callAdapterFactories.add(DecoratingCallAdapterFactory.shared());
+		} else if (!decoratorFactories.isEmpty()) {
+			callAdapterFactories.add(new DecoratingCallAdapterFactory(serviceInterface, decoratorFactories));
 		}
-		if (httpClient != null) {
-			builder.client(httpClient);
+		if (this.callAdapterFactories != null) {
+			callAdapterFactories.addAll(this.callAdapterFactories);
 		}
-		Retrofit retrofit = builder.build();
-		return retrofit.create(serviceInterface);
+		OkHttpClient client = resolveHttpClient();
+		resolvedHttpClient = client;
+		RetrofitRegistry registry = retrofitRegistry != null ? retrofitRegistry : new RetrofitRegistry();
+		Retrofit retrofit = registry.obtain(getServers().get(0), client, converterFactories, callAdapterFactories, callbackExecutor);
+		if (loadingMethods) {
+			// the methods must be decorated before any invocation loads them unbound
+			loadServiceMethods(retrofit, false);
+		}
+		return retrofit;
+	}
+
+	/**
+	 * Returns the decorators of the calls of this service, outermost first.
+	 */
+	private List<CallDecoratorFactory> getCallDecoratorFactories() {
+		List<CallDecoratorFactory> decoratorFactories = new ArrayList<CallDecoratorFactory>();
+		if (serviceMetrics != null) {
+			decoratorFactories.add(new MetricsCallDecoratorFactory(serviceMetrics));
+		}
+		if (CachingCallDecoratorFactory.isCaching(serviceInterface)) {
+			decoratorFactories.add(new CachingCallDecoratorFactory(serviceMetrics));
+		}
+		if (CoalescingCallDecoratorFactory.isCoalescing(serviceInterface)) {
+			decoratorFactories.add(new CoalescingCallDecoratorFactory(serviceMetrics));
+		}
+		if (RetryingCallDecoratorFactory.isRetrying(serviceInterface)) {
+			RetryBudget budget = new RetryBudget(retryBudgetRatio, minRetriesPerSecond);
+			decoratorFactories.add(new RetryingCallDecoratorFactory(budget, getScheduler(), serviceMetrics));
+		}
+		if (BulkheadCallDecoratorFactory.isBulkheaded(serviceInterface)) {
+			// innermost: cache hits and shared calls send no request, each retry and hedged request does
+			decoratorFactories.add(new BulkheadCallDecoratorFactory(serviceMetrics));
+		}
+		if (tracer != null) {
+			// after the bulkhead: binds the method of each request actually sent
+			decoratorFactories.add(new TracingCallDecoratorFactory());
+		}
+		return decoratorFactories;
+	}
+
+	/**
+	 * Resolves the client of this service, deriving it from the configured one when per-service settings are present.
+	 */
+	private OkHttpClient resolveHttpClient() {
+		Cache cache = null;
+		if (cacheEnabled && cacheDirectory != null) {
+			HttpCacheRegistry registry = httpCacheRegistry != null ? httpCacheRegistry : new HttpCacheRegistry();
+			cache = registry.obtain(cacheDirectory, cacheSize);
+		}
+		List<String> servers = getServers();
+		List<Interceptor> interceptors = this.interceptors;
+		if (servers.size() > 1 || serverListSupplier != null) {
+			// the last application interceptor, so the others still see the base URL
+			interceptors = new ArrayList<Interceptor>();
+			if (this.interceptors != null) {
+				interceptors.addAll(this.interceptors);
+			}
+			interceptors.add(resolveLoadBalancingInterceptor(servers));
+		}
+		HttpClientSettings settings = new HttpClientSettings(connectTimeout, readTimeout, writeTimeout,
+				maxRequestsPerHost, interceptors, networkInterceptors, cache, !cacheEnabled, protocol.getProtocols());
+		if (settings.isEmpty()) {
+			return httpClient;
+		}
+		OkHttpClient base = httpClient != null ? httpClient : FallbackHttpClientHolder.INSTANCE;
+		String host = HttpUrl.parse(servers.get(0)).host();
+		if (httpClientRegistry == null) {
+			return new OkHttpClientRegistry().obtain(base, host, settings);
+		}
+		return httpClientRegistry.obtain(base, host, settings);
+	}
+
+	/**
+	 * Returns the load balancing interceptor of this service, created once and rebound to the given servers, so that
+	 * the state of the servers and the client derived with it carry over.
+	 */
+	private LoadBalancingInterceptor resolveLoadBalancingInterceptor(List<String> servers) {
+		if (loadBalancingInterceptor != null) {
+			loadBalancingInterceptor.rebind(servers.get(0), servers);
+			return loadBalancingInterceptor;
+		}
+		LoadBalancingInterceptor interceptor = serverListSupplier != null
+				? new LoadBalancingInterceptor(servers.get(0), serverListSupplier, loadBalancingStrategy)
+				: new LoadBalancingInterceptor(servers.get(0), servers, loadBalancingStrategy);
+		interceptor.setMaxFailures(ejectionFailures);
+		interceptor.setEjectionTime(ejectionTime);
+		interceptor.setName(serviceInterface.getName());
+		interceptor.setServiceMetrics(serviceMetrics);
+		loadBalancingInterceptor = interceptor;
+		return interceptor;
+	}
+
+	/**
+	 * Returns the base URLs of the comma-separated {@link #setBaseUrl(String) base URL}, the first one being the base
+	 * URL of the {@link Retrofit} instance.
+	 */
+	private List<String> getServers() {
+		return Arrays.asList(StringUtils.tokenizeToStringArray(baseUrl, ","));
 	}
 
 	@Override
@@ -93,6 +873,39 @@ public class RetrofitServiceFactoryBean<T> implements FactoryBean<T>, Initializi
 	public void afterPropertiesSet() throws Exception {
 		notNull(this.serviceInterface, "Property 'serviceInterface' is required.");
 		notNull(this.baseUrl, "Property 'baseUrl' is required.");
+		validateBaseUrl(this.baseUrl);
+	}
+
+	private void validateBaseUrl(String baseUrl) {
+		String[] servers = StringUtils.tokenizeToStringArray(baseUrl, ",");
+		isTrue(servers.length > 0, "Property 'baseUrl' is required.");
+		for (String server : servers) {
+			HttpUrl url = HttpUrl.parse(server);
+			isTrue(url != null, "Property 'baseUrl' is not a valid http(s) URL: " + server);
+			isTrue(protocol != HttpProtocol.H2C || !url.isHttps(), "Property 'baseUrl' must be an http URL with the H2C protocol: " + server);
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		synchronized (this) {
+			if (connectionWarmer != null) {
+				connectionWarmer.stop();
+			}
+			if (ownScheduler != null) {
+				ownScheduler.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Holds the base client of the services with per-service settings but no {@link #setHttpClient(OkHttpClient) http
+	 * client}, created on first use and shared so that they, and each rebind, derive from one pool and dispatcher.
+	 */
+	private static class FallbackHttpClientHolder {
+
+		static final OkHttpClient INSTANCE = new OkHttpClient();
+
 	}
 
 }
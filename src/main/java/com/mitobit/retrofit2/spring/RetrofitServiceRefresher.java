@@ -0,0 +1,114 @@
+package com.mitobit.retrofit2.spring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.util.Assert;
+
+/**
+ * Rebinds the services flagged with {@link RetrofitService#refreshable()} or
+ * {@link EnableRetrofitServices#refreshable()} without restarting the context. On a Spring Cloud
+ * {@code EnvironmentChangeEvent} the base URL of every refreshable service is resolved again against the environment,
+ * and the services whose base URL changed get a new {@link retrofit2.Retrofit} swapped in. Services can also be
+ * rebound on demand, e.g. to fail over to another endpoint or client.
+ * <p>
+ * Swapping costs one volatile write; the invocations of the services never lock. Calls in progress complete on the
+ * previous {@link retrofit2.Retrofit} and client.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see RetrofitServiceFactoryBean#rebind(String, OkHttpClient)
+ */
+public class RetrofitServiceRefresher implements ApplicationListener<ApplicationEvent>, BeanFactoryAware {
+
+	private static final Log logger = LogFactory.getLog(RetrofitServiceRefresher.class);
+
+	private ListableBeanFactory beanFactory;
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		Assert.isInstanceOf(ListableBeanFactory.class, beanFactory);
+		this.beanFactory = (ListableBeanFactory) beanFactory;
+	}
+
+	@Override
+	public void onApplicationEvent(ApplicationEvent event) {
+		// referenced by name, spring-cloud-context is optional
+		if (RetrofitConstants.ENVIRONMENT_CHANGE_EVENT_CLASS_NAME.equals(event.getClass().getName())) {
+			refresh();
+		}
+	}
+
+	/**
+	 * Resolves the base URL of every refreshable service against the environment again, rebinding the services whose
+	 * base URL changed. A service whose new base URL is invalid, or that cannot be rebound, keeps the current one.
+	 *
+	 * @return the number of rebound services.
+	 */
+	public int refresh() {
+		int rebound = 0;
+		for (RetrofitServiceFactoryBean<?> factoryBean : getRefreshableFactoryBeans()) {
+			try {
+				if (factoryBean.refresh()) {
+					rebound++;
+				}
+			} catch (IllegalArgumentException | IllegalStateException e) {
+				logger.warn("Could not rebind Retrofit service " + factoryBean.getObjectType().getName() + ": "
+						+ e.getMessage());
+			}
+		}
+		return rebound;
+	}
+
+	/**
+	 * Rebinds the given service to the given base URL, keeping its client.
+	 *
+	 * @param serviceInterface the service interface, must not be {@literal null}.
+	 * @param baseUrl the new base URL, or comma-separated base URLs.
+	 * @throws NoSuchBeanDefinitionException if there is no refreshable service for the interface.
+	 */
+	public void rebind(Class<?> serviceInterface, String baseUrl) {
+		rebind(serviceInterface, baseUrl, null);
+	}
+
+	/**
+	 * Rebinds the given service to the given base URL and client.
+	 *
+	 * @param serviceInterface the service interface, must not be {@literal null}.
+	 * @param baseUrl the new base URL, or comma-separated base URLs.
+	 * @param httpClient the new client, may be {@literal null} to keep the current one.
+	 * @throws NoSuchBeanDefinitionException if there is no refreshable service for the interface.
+	 */
+	public void rebind(Class<?> serviceInterface, String baseUrl, OkHttpClient httpClient) {
+		Assert.notNull(serviceInterface, "Service interface must not be null");
+		for (RetrofitServiceFactoryBean<?> factoryBean : getRefreshableFactoryBeans()) {
+			if (serviceInterface.equals(factoryBean.getObjectType())) {
+				factoryBean.rebind(baseUrl, httpClient);
+				return;
+			}
+		}
+		throw new NoSuchBeanDefinitionException(serviceInterface, "No refreshable Retrofit service");
+	}
+
+	@SuppressWarnings("rawtypes")
+	private List<RetrofitServiceFactoryBean<?>> getRefreshableFactoryBeans() {
+		List<RetrofitServiceFactoryBean<?>> factoryBeans = new ArrayList<RetrofitServiceFactoryBean<?>>();
+		for (RetrofitServiceFactoryBean factoryBean : beanFactory.getBeansOfType(RetrofitServiceFactoryBean.class, false, false).values()) {
+			if (factoryBean.isRefreshable()) {
+				factoryBeans.add(factoryBean);
+			}
+		}
+		return factoryBeans;
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.mitobit.retrofit2.spring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Validates and warms up, once all the singletons are instantiated, every {@link RetrofitServiceFactoryBean} flagged
+ * with {@link RetrofitService#eagerlyValidate()} or {@link EnableRetrofitServices#eagerlyValidate()}. Service
+ * interfaces are processed in parallel, one task per interface, so annotation parsing and converter lookups happen
+ * before the first call instead of during it. A malformed interface fails the context startup.
+ * <p>
+ * The connections of the services with {@link RetrofitService#prewarmConnections()} are then opened, in parallel as
+ * well, and kept warm if requested. Servers that cannot be reached are logged and do not fail the startup.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class RetrofitServiceWarmer implements SmartInitializingSingleton, BeanFactoryAware {
+
+	private static final Log logger = LogFactory.getLog(RetrofitServiceWarmer.class);
+
+	private ListableBeanFactory beanFactory;
+
+	private final Map<Class<?>, Long> warmUpTimes = Collections.synchronizedMap(new LinkedHashMap<Class<?>, Long>());
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		Assert.isInstanceOf(ListableBeanFactory.class, beanFactory);
+		this.beanFactory = (ListableBeanFactory) beanFactory;
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void afterSingletonsInstantiated() {
+		final List<RetrofitServiceFactoryBean<?>> factoryBeans = new ArrayList<RetrofitServiceFactoryBean<?>>();
+		final List<RetrofitServiceFactoryBean<?>> connectionFactoryBeans = new ArrayList<RetrofitServiceFactoryBean<?>>();
+		for (RetrofitServiceFactoryBean factoryBean : beanFactory.getBeansOfType(RetrofitServiceFactoryBean.class, false, false).values()) {
+			if (factoryBean.isEagerlyValidate()) {
+				factoryBeans.add(factoryBean);
+			}
+			if (factoryBean.isWarmingConnections()) {
+				connectionFactoryBeans.add(factoryBean);
+			}
+		}
+		if (factoryBeans.isEmpty() && connectionFactoryBeans.isEmpty()) {
+			return;
+		}
+
+		int threads = Math.min(Math.max(factoryBeans.size(), connectionFactoryBeans.size()), Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("retrofit-warmup-"));
+		try {
+			validate(executor, factoryBeans);
+			warmConnections(executor, connectionFactoryBeans);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BeanInitializationException("Interrupted while warming up Retrofit services", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void validate(ExecutorService executor, List<RetrofitServiceFactoryBean<?>> factoryBeans)
+			throws InterruptedException {
+		List<Future<Long>> results = new ArrayList<Future<Long>>(factoryBeans.size());
+		for (final RetrofitServiceFactoryBean<?> factoryBean : factoryBeans) {
+			results.add(executor.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					return factoryBean.warmUp();
+				}
+			}));
+		}
+		List<String> failures = new ArrayList<String>();
+		Throwable firstFailure = null;
+		for (int i = 0; i < factoryBeans.size(); i++) {
+			Class<?> serviceInterface = factoryBeans.get(i).getObjectType();
+			try {
+				long nanos = results.get(i).get();
+				warmUpTimes.put(serviceInterface, nanos);
+				if (logger.isInfoEnabled()) {
+					logger.info("Warmed up Retrofit service " + serviceInterface.getName() + " in "
+							+ TimeUnit.NANOSECONDS.toMillis(nanos) + " ms");
+				}
+			} catch (ExecutionException e) {
+				failures.add(serviceInterface.getName() + ": " + e.getCause().getMessage());
+				if (firstFailure == null) {
+					firstFailure = e.getCause();
+				}
+			}
+		}
+		if (!failures.isEmpty()) {
+			throw new BeanInitializationException("Invalid Retrofit service interfaces " + failures, firstFailure);
+		}
+	}
+
+	private void warmConnections(ExecutorService executor, List<RetrofitServiceFactoryBean<?>> factoryBeans)
+			throws InterruptedException {
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>(factoryBeans.size());
+		for (final RetrofitServiceFactoryBean<?> factoryBean : factoryBeans) {
+			results.add(executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					return factoryBean.warmConnections();
+				}
+			}));
+		}
+		for (int i = 0; i < factoryBeans.size(); i++) {
+			Class<?> serviceInterface = factoryBeans.get(i).getObjectType();
+			try {
+				int connections = results.get(i).get();
+				if (logger.isInfoEnabled() && connections > 0) {
+					logger.info("Warmed up " + connections + " connections of Retrofit service " + serviceInterface.getName());
+				}
+			} catch (ExecutionException e) {
+				logger.warn("Could not warm up the connections of Retrofit service " + serviceInterface.getName(), e.getCause());
+			}
+		}
+	}
+
+	/**
+	 * @return the warm-up time, in nanoseconds, of each service interface processed so far.
+	 */
+	public Map<Class<?>, Long> getWarmUpTimes() {
+		synchronized (warmUpTimes) {
+			return new LinkedHashMap<Class<?>, Long>(warmUpTimes);
+		}
+	}
+
+}
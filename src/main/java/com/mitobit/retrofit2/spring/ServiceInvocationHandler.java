@@ -0,0 +1,111 @@
+package com.mitobit.retrofit2.spring;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.util.ReflectionUtils;
+
+import com.mitobit.retrofit2.spring.batch.MethodBatcher;
+
+/**
+ * {@link InvocationHandler} of the proxies exposed in place of the services created by {@link retrofit2.Retrofit}. The
+ * target service is created on the first method invocation; later invocations only read a volatile field, without
+ * locking. The target can be replaced at any time through {@link #rebind()}. Invocations of the
+ * {@link com.mitobit.retrofit2.spring.batch.Batched} methods are handed to their {@link MethodBatcher}, which
+ * sends each batch to the target current when it is sent.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @param <T> the service interface
+ */
+abstract class ServiceInvocationHandler<T> implements InvocationHandler {
+
+	private final Class<T> serviceInterface;
+
+	private final Map<Method, MethodBatcher> batchers;
+
+	private final ObjectFactory<T> targetFactory = new ObjectFactory<T>() {
+		@Override
+		public T getObject() {
+			return getTarget();
+		}
+	};
+
+	private volatile T target;
+
+	ServiceInvocationHandler(Class<T> serviceInterface) {
+		this(serviceInterface, Collections.<Method, MethodBatcher> emptyMap());
+	}
+
+	ServiceInvocationHandler(Class<T> serviceInterface, Map<Method, MethodBatcher> batchers) {
+		this.serviceInterface = serviceInterface;
+		this.batchers = batchers;
+	}
+
+	/**
+	 * Creates a proxy of the service interface backed by this handler.
+	 */
+	T newProxy() {
+		return serviceInterface.cast(Proxy.newProxyInstance(serviceInterface.getClassLoader(),
+				new Class<?>[] { serviceInterface }, this));
+	}
+
+	/**
+	 * Creates the target service, invoked once under the lock of this handler.
+	 */
+	protected abstract T createTarget();
+
+	/**
+	 * @return the target service, created if necessary.
+	 */
+	protected final T getTarget() {
+		T result = target;
+		if (result == null) {
+			synchronized (this) {
+				result = target;
+				if (result == null) {
+					result = createTarget();
+					target = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Replaces the target service, if created already, with a new one from {@link #createTarget()}. Calls created
+	 * before complete on the previous target; later invocations use the new one.
+	 */
+	final synchronized void rebind() {
+		if (target != null) {
+			target = createTarget();
+		}
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (ReflectionUtils.isEqualsMethod(method)) {
+			return proxy == args[0];
+		}
+		if (ReflectionUtils.isHashCodeMethod(method)) {
+			return System.identityHashCode(proxy);
+		}
+		if (ReflectionUtils.isToStringMethod(method)) {
+			return "Proxy of " + serviceInterface.getName() + (target != null ? "" : " (not initialized)");
+		}
+		MethodBatcher batcher = batchers.get(method);
+		if (batcher != null) {
+			return batcher.invoke(targetFactory, args[0]);
+		}
+		try {
+			return method.invoke(getTarget(), args);
+		} catch (InvocationTargetException e) {
+			throw e.getTargetException();
+		}
+	}
+
+}
@@ -0,0 +1,72 @@
+package com.mitobit.retrofit2.spring.balancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+
+/**
+ * A server of a {@link LoadBalancingInterceptor} and its state, updated without locking: the requests in flight, the
+ * consecutive failures and the ejection deadline.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public final class Endpoint {
+
+	private final HttpUrl url;
+
+	final AtomicInteger inFlight = new AtomicInteger();
+
+	final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	/**
+	 * Consecutive ejections, reset by a success, scaling the ejection time.
+	 */
+	final AtomicInteger consecutiveEjections = new AtomicInteger();
+
+	final AtomicLong ejections = new AtomicLong();
+
+	volatile long ejectedUntil;
+
+	Endpoint(HttpUrl url) {
+		this.url = url;
+	}
+
+	/**
+	 * @return the base URL of the server.
+	 */
+	public HttpUrl getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the number of requests in flight to the server, until their response body is closed.
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return the number of times the server has been ejected.
+	 */
+	public long getEjections() {
+		return ejections.get();
+	}
+
+	/**
+	 * @return whether the server is currently ejected.
+	 */
+	public boolean isEjected() {
+		return !isAvailable(System.currentTimeMillis());
+	}
+
+	boolean isAvailable(long now) {
+		return now >= ejectedUntil;
+	}
+
+	@Override
+	public String toString() {
+		return url.toString();
+	}
+
+}
@@ -0,0 +1,367 @@
+package com.mitobit.retrofit2.spring.balancer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import com.mitobit.retrofit2.spring.RetrofitConstants;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+
+/**
+ * {@link Interceptor} spreading the requests of a service over several servers. Requests to the base URL of the
+ * service are sent to the server chosen by the {@link LoadBalancingStrategy}: the scheme, host, port and base path of
+ * their URL are replaced by the ones of the server. Other requests, e.g. to absolute {@code @Url} values, are left
+ * untouched.
+ * <p>
+ * Servers are checked passively: a server failing {@link #setMaxFailures(int) maxFailures} consecutive requests, with
+ * an {@link IOException} or a {@code 5xx} response, is ejected for {@link #setEjectionTime(long) ejectionTime}
+ * milliseconds, multiplied by its consecutive ejections, and then receives requests again. A success resets its count.
+ * When every server is ejected the requests are spread over all of them.
+ * <p>
+ * When {@link ServiceMetrics} are set, the {@value ServiceMetrics#ENDPOINT_REQUESTS_ACTIVE} gauge and the
+ * {@value ServiceMetrics#ENDPOINT_EJECTIONS} counter of each server are registered, tagged by {@code service} and
+ * {@code endpoint}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class LoadBalancingInterceptor implements Interceptor {
+
+	private static final Log logger = LogFactory.getLog(LoadBalancingInterceptor.class);
+
+	/**
+	 * Upper bound of the multiplier of the ejection time.
+	 */
+	private static final int MAX_EJECTION_MULTIPLIER = 10;
+
+	private volatile HttpUrl baseUrl;
+
+	private volatile ServerListSupplier serverList;
+
+	private final LoadBalancingStrategy strategy;
+
+	private final ConcurrentMap<String, Endpoint> endpointsByServer = new ConcurrentHashMap<String, Endpoint>();
+
+	private final AtomicInteger sequence = new AtomicInteger();
+
+	private volatile Snapshot snapshot;
+
+	private int maxFailures = RetrofitConstants.DEFAULT_EJECTION_FAILURES;
+
+	private long ejectionTime = RetrofitConstants.DEFAULT_EJECTION_TIME;
+
+	private String name;
+
+	private ServiceMetrics serviceMetrics;
+
+	/**
+	 * Creates a new {@link LoadBalancingInterceptor} over a fixed list of servers.
+	 *
+	 * @param baseUrl the base URL of the service, whose requests are balanced, must not be {@literal null}.
+	 * @param servers the base URLs of the servers, each ending in {@code /}, must not be empty.
+	 * @param strategy the strategy choosing the server of each request, must not be {@literal null}.
+	 */
+	public LoadBalancingInterceptor(String baseUrl, List<String> servers, LoadBalancingStrategy strategy) {
+		this(baseUrl, new FixedServerList(servers), strategy);
+		Assert.notEmpty(servers, "Servers must not be empty");
+	}
+
+	/**
+	 * Creates a new {@link LoadBalancingInterceptor} over the servers of the given supplier.
+	 *
+	 * @param baseUrl the base URL of the service, whose requests are balanced, must not be {@literal null}.
+	 * @param serverList the supplier of the servers, must not be {@literal null}.
+	 * @param strategy the strategy choosing the server of each request, must not be {@literal null}.
+	 */
+	public LoadBalancingInterceptor(String baseUrl, ServerListSupplier serverList, LoadBalancingStrategy strategy) {
+		Assert.notNull(baseUrl, "Base URL must not be null");
+		Assert.notNull(serverList, "Server list must not be null");
+		Assert.notNull(strategy, "Strategy must not be null");
+		this.baseUrl = parse(baseUrl);
+		this.serverList = serverList;
+		this.strategy = strategy;
+		this.name = baseUrl;
+	}
+
+	/**
+	 * Rebinds this interceptor to the given base URL and, unless they are supplied by a {@link ServerListSupplier},
+	 * servers. The servers still listed keep their state.
+	 *
+	 * @param baseUrl the base URL of the service, must not be {@literal null}.
+	 * @param servers the base URLs of the servers, ignored when they are supplied, must not be empty.
+	 */
+	public void rebind(String baseUrl, List<String> servers) {
+		Assert.notNull(baseUrl, "Base URL must not be null");
+		HttpUrl url = parse(baseUrl);
+		if (serverList instanceof FixedServerList) {
+			Assert.notEmpty(servers, "Servers must not be empty");
+			serverList = new FixedServerList(servers);
+		}
+		this.baseUrl = url;
+	}
+
+	/**
+	 * Sets the number of consecutive failures ejecting a server, defaults to 3.
+	 *
+	 * @param maxFailures
+	 */
+	public void setMaxFailures(int maxFailures) {
+		Assert.isTrue(maxFailures > 0, "Max failures must be positive");
+		this.maxFailures = maxFailures;
+	}
+
+	/**
+	 * Sets the base time in milliseconds a server is ejected for, defaults to 30 seconds.
+	 *
+	 * @param ejectionTime
+	 */
+	public void setEjectionTime(long ejectionTime) {
+		Assert.isTrue(ejectionTime >= 0, "Ejection time must not be negative");
+		this.ejectionTime = ejectionTime;
+	}
+
+	/**
+	 * Sets the name the metrics of the servers are tagged with, defaults to the base URL.
+	 *
+	 * @param name
+	 */
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Sets the metrics the gauges and counters of the servers are registered with.
+	 *
+	 * @param serviceMetrics
+	 */
+	public void setServiceMetrics(ServiceMetrics serviceMetrics) {
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * @return the current servers with their state.
+	 */
+	public List<Endpoint> getEndpoints() {
+		List<String> servers = serverList.getServers();
+		Snapshot current = snapshot;
+		if (current != null && (current.source == servers || current.servers.equals(servers))) {
+			return current.endpoints;
+		}
+		List<Endpoint> endpoints = new ArrayList<Endpoint>(servers.size());
+		for (String server : servers) {
+			endpoints.add(endpointOf(server));
+		}
+		snapshot = new Snapshot(servers, Collections.unmodifiableList(endpoints));
+		return snapshot.endpoints;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		Request request = chain.request();
+		HttpUrl url = request.url();
+		HttpUrl baseUrl = this.baseUrl;
+		String path = url.encodedPath();
+		String basePath = baseUrl.encodedPath();
+		if (!url.scheme().equals(baseUrl.scheme()) || !url.host().equals(baseUrl.host()) || url.port() != baseUrl.port()
+				|| !path.startsWith(basePath)) {
+			return chain.proceed(request);
+		}
+		Endpoint endpoint = choose();
+		HttpUrl server = endpoint.getUrl();
+		HttpUrl target = url.newBuilder().scheme(server.scheme()).host(server.host()).port(server.port())
+				.encodedPath(server.encodedPath() + path.substring(basePath.length())).build();
+
+		endpoint.inFlight.incrementAndGet();
+		Response response;
+		try {
+			response = chain.proceed(request.newBuilder().url(target).build());
+		} catch (IOException | RuntimeException e) {
+			endpoint.inFlight.decrementAndGet();
+			onFailure(endpoint);
+			throw e;
+		}
+		if (response.code() >= 500) {
+			onFailure(endpoint);
+		} else {
+			onSuccess(endpoint);
+		}
+		if (response.body() == null) {
+			endpoint.inFlight.decrementAndGet();
+			return response;
+		}
+		return response.newBuilder().body(new EndpointResponseBody(response.body(), endpoint)).build();
+	}
+
+	private Endpoint choose() throws IOException {
+		List<Endpoint> endpoints = getEndpoints();
+		if (endpoints.isEmpty()) {
+			throw new IOException("No server available for " + baseUrl);
+		}
+		long now = System.currentTimeMillis();
+		List<Endpoint> available = endpoints;
+		for (int i = 0; i < endpoints.size(); i++) {
+			if (!endpoints.get(i).isAvailable(now)) {
+				available = new ArrayList<Endpoint>(endpoints.size() - 1);
+				for (Endpoint endpoint : endpoints) {
+					if (endpoint.isAvailable(now)) {
+						available.add(endpoint);
+					}
+				}
+				break;
+			}
+		}
+		if (available.isEmpty()) {
+			// fail open: an ejected server may have recovered, no server at all certainly fails
+			available = endpoints;
+		}
+		return strategy.choose(available, sequence);
+	}
+
+	private void onSuccess(Endpoint endpoint) {
+		if (endpoint.consecutiveFailures.get() != 0) {
+			endpoint.consecutiveFailures.set(0);
+		}
+		if (endpoint.consecutiveEjections.get() != 0) {
+			endpoint.consecutiveEjections.set(0);
+		}
+	}
+
+	private void onFailure(Endpoint endpoint) {
+		int failures = endpoint.consecutiveFailures.incrementAndGet();
+		if (failures >= maxFailures && endpoint.consecutiveFailures.compareAndSet(failures, 0)) {
+			int multiplier = Math.min(endpoint.consecutiveEjections.incrementAndGet(), MAX_EJECTION_MULTIPLIER);
+			endpoint.ejectedUntil = System.currentTimeMillis() + ejectionTime * multiplier;
+			endpoint.ejections.incrementAndGet();
+			if (logger.isWarnEnabled()) {
+				logger.warn("Ejected server " + endpoint + " of " + name + " for " + ejectionTime * multiplier
+						+ " ms after " + failures + " consecutive failures");
+			}
+		}
+	}
+
+	private Endpoint endpointOf(String server) {
+		Endpoint endpoint = endpointsByServer.get(server);
+		if (endpoint == null) {
+			HttpUrl url = parse(server.trim());
+			Assert.isTrue(url.encodedPath().endsWith("/"), "Server URL must end in /: " + server);
+			Endpoint created = new Endpoint(url);
+			endpoint = endpointsByServer.putIfAbsent(server, created);
+			if (endpoint == null) {
+				endpoint = created;
+				if (serviceMetrics != null) {
+					serviceMetrics.gauge(ServiceMetrics.ENDPOINT_REQUESTS_ACTIVE, tags(endpoint), endpoint.inFlight);
+					serviceMetrics.counter(ServiceMetrics.ENDPOINT_EJECTIONS, tags(endpoint), endpoint.ejections);
+				}
+			}
+		}
+		return endpoint;
+	}
+
+	private Map<String, String> tags(Endpoint endpoint) {
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("service", name);
+		tags.put("endpoint", endpoint.toString());
+		return tags;
+	}
+
+	private static HttpUrl parse(String url) {
+		HttpUrl result = HttpUrl.parse(url);
+		Assert.isTrue(result != null, "Not a valid http(s) URL: " + url);
+		return result;
+	}
+
+	/**
+	 * The servers of the last list returned by the supplier.
+	 */
+	private static final class Snapshot {
+
+		private final List<String> source;
+
+		private final List<String> servers;
+
+		private final List<Endpoint> endpoints;
+
+		Snapshot(List<String> source, List<Endpoint> endpoints) {
+			this.source = source;
+			this.servers = new ArrayList<String>(source);
+			this.endpoints = endpoints;
+		}
+	}
+
+	private static final class FixedServerList implements ServerListSupplier {
+
+		private final List<String> servers;
+
+		FixedServerList(List<String> servers) {
+			this.servers = Collections.unmodifiableList(new ArrayList<String>(servers));
+		}
+
+		@Override
+		public List<String> getServers() {
+			return servers;
+		}
+	}
+
+	/**
+	 * Response body releasing the in-flight slot of its server when closed.
+	 */
+	private static final class EndpointResponseBody extends ResponseBody {
+
+		private final ResponseBody delegate;
+
+		private final BufferedSource source;
+
+		EndpointResponseBody(ResponseBody delegate, final Endpoint endpoint) {
+			this.delegate = delegate;
+			final AtomicBoolean released = new AtomicBoolean();
+			this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						if (released.compareAndSet(false, true)) {
+							endpoint.inFlight.decrementAndGet();
+						}
+					}
+				}
+			});
+		}
+
+		@Override
+		public MediaType contentType() {
+			return delegate.contentType();
+		}
+
+		@Override
+		public long contentLength() {
+			return delegate.contentLength();
+		}
+
+		@Override
+		public BufferedSource source() {
+			return source;
+		}
+	}
+
+}
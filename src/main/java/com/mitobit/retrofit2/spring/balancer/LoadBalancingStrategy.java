@@ -0,0 +1,80 @@
+package com.mitobit.retrofit2.spring.balancer;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * How a {@link LoadBalancingInterceptor} chooses the server of each request among the available ones.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public enum LoadBalancingStrategy {
+
+	/**
+	 * Each server in turn.
+	 */
+	ROUND_ROBIN {
+		@Override
+		Endpoint choose(List<Endpoint> endpoints, AtomicInteger sequence) {
+			return endpoints.get(index(sequence.getAndIncrement(), endpoints.size()));
+		}
+	},
+
+	/**
+	 * The server with the fewest requests in flight, ties broken in turn. Suited to servers of different capacity or
+	 * requests of uneven cost, at the price of a scan of the servers per request.
+	 */
+	LEAST_IN_FLIGHT {
+		@Override
+		Endpoint choose(List<Endpoint> endpoints, AtomicInteger sequence) {
+			int size = endpoints.size();
+			int start = index(sequence.getAndIncrement(), size);
+			Endpoint chosen = endpoints.get(start);
+			for (int i = 1; i < size && chosen.getInFlight() > 0; i++) {
+				Endpoint endpoint = endpoints.get((start + i) % size);
+				if (endpoint.getInFlight() < chosen.getInFlight()) {
+					chosen = endpoint;
+				}
+			}
+			return chosen;
+		}
+	},
+
+	/**
+	 * The server with fewer requests in flight of two picked at random: close to {@link #LEAST_IN_FLIGHT} in balance,
+	 * in constant time, and without herding all the clients onto the same least loaded server.
+	 */
+	POWER_OF_TWO_CHOICES {
+		@Override
+		Endpoint choose(List<Endpoint> endpoints, AtomicInteger sequence) {
+			int size = endpoints.size();
+			if (size == 1) {
+				return endpoints.get(0);
+			}
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int first = random.nextInt(size);
+			int second = random.nextInt(size - 1);
+			if (second >= first) {
+				second++;
+			}
+			Endpoint left = endpoints.get(first);
+			Endpoint right = endpoints.get(second);
+			return right.getInFlight() < left.getInFlight() ? right : left;
+		}
+	};
+
+	/**
+	 * Chooses the server of a request.
+	 *
+	 * @param endpoints the available servers, never empty.
+	 * @param sequence the request counter of the interceptor.
+	 * @return the chosen server.
+	 */
+	abstract Endpoint choose(List<Endpoint> endpoints, AtomicInteger sequence);
+
+	private static int index(int sequence, int size) {
+		return (sequence & Integer.MAX_VALUE) % size;
+	}
+
+}
@@ -0,0 +1,21 @@
+package com.mitobit.retrofit2.spring.balancer;
+
+import java.util.List;
+
+/**
+ * Supplies the servers a {@link LoadBalancingInterceptor} spreads the requests of a service over, e.g. from a service
+ * registry. Referenced through {@link com.mitobit.retrofit2.spring.RetrofitService#serverListRef()}.
+ * <p>
+ * The list is read on every request: implementations should return a cached list, replaced when the servers change,
+ * rather than look the servers up each time.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public interface ServerListSupplier {
+
+	/**
+	 * @return the base URLs of the servers, each ending in {@code /}, never {@literal null}.
+	 */
+	List<String> getServers();
+
+}
@@ -0,0 +1,51 @@
+package com.mitobit.retrofit2.spring.batch;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a single-item method of a {@code RetrofitService} whose concurrent calls are gathered into calls of a batch
+ * method of the same interface, e.g.:
+ *
+ * <pre class="code">
+ * &#64;Batched("getItems")
+ * &#64;GET("items/{id}")
+ * ListenableFuture&lt;Item&gt; getItem(&#64;Path("id") String id);
+ *
+ * &#64;POST("items/batch")
+ * Call&lt;Map&lt;String, Item&gt;&gt; getItems(&#64;Body List&lt;String&gt; ids);
+ * </pre>
+ *
+ * The single-item method takes the key as its only parameter and returns {@code Call<V>} or
+ * {@code ListenableFuture<V>}. The batch method takes the distinct keys as its only parameter, a {@code List}, and
+ * returns a {@code Call} of either a {@code List<V>} holding the values in the order of the keys, or a
+ * {@code Map<K, V>} of the values by key; the calls of a key missing from the map fail with an {@code IOException}. A
+ * failed batch fails all its single calls, each receiving its own copy of an error body.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see MethodBatcher
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Batched {
+
+	/**
+	 * The name of the batch method.
+	 */
+	String value();
+
+	/**
+	 * Maximum number of distinct keys of a batch: a full batch is sent at once.
+	 */
+	int maxSize() default 100;
+
+	/**
+	 * Time in milliseconds a batch waits for more keys after its first one.
+	 */
+	long window() default 5;
+
+}
@@ -0,0 +1,509 @@
+package com.mitobit.retrofit2.spring.batch;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.ResponseBody;
+
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+
+/**
+ * Gathers the concurrent calls of a {@link Batched} method into calls of its batch method. The first key of a batch
+ * opens a window of {@link Batched#window()} milliseconds; the batch is sent when the window closes or when it holds
+ * {@link Batched#maxSize()} distinct keys, whichever comes first. Calls of the same key within a batch share its value.
+ * <p>
+ * A {@code Call} of the single-item method joins a batch when it is executed or enqueued, a
+ * {@code ListenableFuture} when it is created.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public final class MethodBatcher {
+
+	private final Method method;
+
+	private final Method batchMethod;
+
+	private final boolean future;
+
+	private final boolean byKey;
+
+	private final int maxSize;
+
+	private final long window;
+
+	private final ScheduledExecutorService scheduler;
+
+	// guarded by this
+	private Batch pending;
+
+	private MethodBatcher(Method method, Method batchMethod, Batched batched, ScheduledExecutorService scheduler) {
+		this.method = method;
+		this.batchMethod = batchMethod;
+		this.future = method.getReturnType() == ListenableFuture.class;
+		this.byKey = Map.class.isAssignableFrom(getRawType(getParameterUpperBound(batchMethod.getGenericReturnType())));
+		this.maxSize = Math.max(1, batched.maxSize());
+		this.window = Math.max(0, batched.window());
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * @param serviceInterface the service interface.
+	 * @return whether any method of the given interface is annotated with {@link Batched}.
+	 */
+	public static boolean isBatching(Class<?> serviceInterface) {
+		for (Method method : serviceInterface.getMethods()) {
+			if (method.isAnnotationPresent(Batched.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates the batchers of the {@link Batched} methods of the given interface.
+	 *
+	 * @param serviceInterface the service interface, must not be {@literal null}.
+	 * @param scheduler the scheduler closing the batch windows, must not be {@literal null}.
+	 * @return the batchers by single-item method, empty if the interface has no {@link Batched} method.
+	 * @throws IllegalArgumentException if a {@link Batched} method or its batch method is malformed.
+	 */
+	public static Map<Method, MethodBatcher> forInterface(Class<?> serviceInterface,
+			ScheduledExecutorService scheduler) {
+		Assert.notNull(scheduler, "Scheduler must not be null");
+		Map<Method, MethodBatcher> batchers = new LinkedHashMap<Method, MethodBatcher>();
+		for (Method method : serviceInterface.getMethods()) {
+			Batched batched = method.getAnnotation(Batched.class);
+			if (batched != null) {
+				batchers.put(method, new MethodBatcher(method, findBatchMethod(serviceInterface, method, batched),
+						batched, scheduler));
+			}
+		}
+		return batchers;
+	}
+
+	private static Method findBatchMethod(Class<?> serviceInterface, Method method, Batched batched) {
+		String name = serviceInterface.getSimpleName() + "." + method.getName();
+		if (method.getParameterTypes().length != 1) {
+			throw new IllegalArgumentException("@Batched method " + name + " must take the key as its only parameter");
+		}
+		Class<?> returnType = method.getReturnType();
+		if ((returnType != Call.class && returnType != ListenableFuture.class)
+				|| !(method.getGenericReturnType() instanceof ParameterizedType)) {
+			throw new IllegalArgumentException("@Batched method " + name
+					+ " must return Call<V> or ListenableFuture<V>");
+		}
+		Method batchMethod = null;
+		for (Method candidate : serviceInterface.getMethods()) {
+			if (candidate.getName().equals(batched.value())) {
+				if (batchMethod != null) {
+					throw new IllegalArgumentException("Batch method " + batched.value() + " of " + name
+							+ " is overloaded");
+				}
+				batchMethod = candidate;
+			}
+		}
+		if (batchMethod == null) {
+			throw new IllegalArgumentException("Batch method " + batched.value() + " of " + name + " not found");
+		}
+		Class<?>[] parameterTypes = batchMethod.getParameterTypes();
+		if (parameterTypes.length != 1 || !parameterTypes[0].isAssignableFrom(ArrayList.class)) {
+			throw new IllegalArgumentException("Batch method " + batched.value() + " of " + name
+					+ " must take a List of keys as its only parameter");
+		}
+		Type batchType = batchMethod.getGenericReturnType();
+		Class<?> bodyType = batchMethod.getReturnType() == Call.class && batchType instanceof ParameterizedType
+				? getRawType(getParameterUpperBound(batchType)) : Object.class;
+		if (!Map.class.isAssignableFrom(bodyType) && !List.class.isAssignableFrom(bodyType)) {
+			throw new IllegalArgumentException("Batch method " + batched.value() + " of " + name
+					+ " must return Call<List<V>> or Call<Map<K, V>>");
+		}
+		return batchMethod;
+	}
+
+	/**
+	 * Returns the result of an invocation of the single-item method: a {@code Call} joining a batch when executed, or
+	 * a {@code ListenableFuture} that has joined one.
+	 *
+	 * @param target the factory of the service the batch method is invoked on, asked for its current service when a
+	 * batch is sent.
+	 * @param key the key, the argument of the invocation.
+	 * @return the result of the invocation.
+	 */
+	public Object invoke(ObjectFactory<?> target, Object key) {
+		if (future) {
+			FutureCompletion<Object> completion = new FutureCompletion<Object>();
+			submit(target, key, completion);
+			return completion.future;
+		}
+		return new BatchedCall<Object>(this, target, key);
+	}
+
+	@Override
+	public String toString() {
+		return method.getDeclaringClass().getSimpleName() + "." + method.getName() + " batched by "
+				+ batchMethod.getName();
+	}
+
+	void submit(ObjectFactory<?> target, Object key, Completion<?> completion) {
+		Batch full = null;
+		synchronized (this) {
+			if (pending == null) {
+				final Batch batch = new Batch(target);
+				batch.timer = scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						synchronized (MethodBatcher.this) {
+							if (pending != batch) {
+								return;
+							}
+							pending = null;
+						}
+						send(batch);
+					}
+				}, window, TimeUnit.MILLISECONDS);
+				pending = batch;
+			}
+			pending.add(key, completion);
+			if (pending.waiters.size() >= maxSize) {
+				full = pending;
+				pending = null;
+				full.timer.cancel(false);
+			}
+		}
+		if (full != null) {
+			send(full);
+		}
+	}
+
+	private void send(final Batch batch) {
+		final List<Object> keys = new ArrayList<Object>(batch.waiters.keySet());
+		Call<?> call;
+		try {
+			call = (Call<?>) batchMethod.invoke(batch.target.getObject(), keys);
+		} catch (InvocationTargetException e) {
+			batch.fail(e.getTargetException());
+			return;
+		} catch (IllegalAccessException e) {
+			batch.fail(e);
+			return;
+		} catch (RuntimeException e) {
+			batch.fail(e);
+			return;
+		}
+		enqueue(call, batch, keys);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <B> void enqueue(Call<B> call, final Batch batch, final List<Object> keys) {
+		call.enqueue(new Callback<B>() {
+			@Override
+			public void onResponse(Call<B> call, Response<B> response) {
+				if (!response.isSuccessful()) {
+					batch.error(response);
+					return;
+				}
+				Object body = response.body();
+				if (byKey) {
+					Map<Object, Object> values = body != null ? (Map<Object, Object>) body
+							: Collections.<Object, Object> emptyMap();
+					for (Object key : keys) {
+						if (values.containsKey(key)) {
+							batch.complete(key, values.get(key), response.raw());
+						} else {
+							batch.fail(key, new IOException("Batch response of " + MethodBatcher.this
+									+ " has no value for key " + key));
+						}
+					}
+					return;
+				}
+				Collection<Object> values = body != null ? (Collection<Object>) body
+						: Collections.<Object> emptyList();
+				if (values.size() != keys.size()) {
+					batch.fail(new IOException("Batch response of " + MethodBatcher.this + " has " + values.size()
+							+ " elements for " + keys.size() + " keys"));
+					return;
+				}
+				int i = 0;
+				for (Object value : values) {
+					batch.complete(keys.get(i++), value, response.raw());
+				}
+			}
+
+			@Override
+			public void onFailure(Call<B> call, Throwable t) {
+				batch.fail(t);
+			}
+		});
+	}
+
+	private static Type getParameterUpperBound(Type type) {
+		Type parameter = ((ParameterizedType) type).getActualTypeArguments()[0];
+		if (parameter instanceof WildcardType) {
+			return ((WildcardType) parameter).getUpperBounds()[0];
+		}
+		return parameter;
+	}
+
+	private static Class<?> getRawType(Type type) {
+		if (type instanceof Class<?>) {
+			return (Class<?>) type;
+		}
+		if (type instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) type).getRawType();
+		}
+		return Object.class;
+	}
+
+	/**
+	 * The keys of one batch and the calls waiting for them.
+	 */
+	private static final class Batch {
+
+		private final ObjectFactory<?> target;
+
+		private final Map<Object, List<Completion<?>>> waiters = new LinkedHashMap<Object, List<Completion<?>>>();
+
+		private ScheduledFuture<?> timer;
+
+		Batch(ObjectFactory<?> target) {
+			this.target = target;
+		}
+
+		void add(Object key, Completion<?> completion) {
+			List<Completion<?>> completions = waiters.get(key);
+			if (completions == null) {
+				completions = new ArrayList<Completion<?>>(1);
+				waiters.put(key, completions);
+			}
+			completions.add(completion);
+		}
+
+		@SuppressWarnings("unchecked")
+		void complete(Object key, Object value, okhttp3.Response raw) {
+			for (Completion<?> completion : waiters.get(key)) {
+				((Completion<Object>) completion).complete(Response.success(value, raw));
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		void error(Response<?> response) {
+			MediaType errorType = null;
+			byte[] errorBody = null;
+			ResponseBody body = response.errorBody();
+			if (body != null) {
+				try {
+					errorType = body.contentType();
+					errorBody = body.bytes();
+				} catch (IOException e) {
+					fail(e);
+					return;
+				}
+			}
+			for (List<Completion<?>> completions : waiters.values()) {
+				for (Completion<?> completion : completions) {
+					((Completion<Object>) completion).complete(Response.error(
+							ResponseBody.create(errorType, errorBody != null ? errorBody : new byte[0]), response.raw()));
+				}
+			}
+		}
+
+		void fail(Object key, Throwable t) {
+			for (Completion<?> completion : waiters.get(key)) {
+				completion.fail(t);
+			}
+		}
+
+		void fail(Throwable t) {
+			for (List<Completion<?>> completions : waiters.values()) {
+				for (Completion<?> completion : completions) {
+					completion.fail(t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Receives the outcome of a single call.
+	 */
+	interface Completion<V> {
+
+		void complete(Response<V> response);
+
+		void fail(Throwable t);
+
+	}
+
+	private static final class FutureCompletion<V> implements Completion<V> {
+
+		private final SettableListenableFuture<V> future = new SettableListenableFuture<V>();
+
+		@Override
+		public void complete(Response<V> response) {
+			if (response.isSuccessful()) {
+				future.set(response.body());
+			} else {
+				future.setException(new HttpException(response));
+			}
+		}
+
+		@Override
+		public void fail(Throwable t) {
+			future.setException(t);
+		}
+	}
+
+	/**
+	 * {@link Call} of the single-item method, joining a batch when executed or enqueued.
+	 */
+	private static final class BatchedCall<V> implements Call<V>, Completion<V> {
+
+		private final MethodBatcher batcher;
+
+		private final ObjectFactory<?> target;
+
+		private final Object key;
+
+		private final AtomicBoolean executed = new AtomicBoolean();
+
+		private final SettableListenableFuture<Response<V>> outcome = new SettableListenableFuture<Response<V>>();
+
+		private volatile boolean canceled;
+
+		private volatile Request request;
+
+		BatchedCall(MethodBatcher batcher, ObjectFactory<?> target, Object key) {
+			this.batcher = batcher;
+			this.target = target;
+			this.key = key;
+		}
+
+		@Override
+		public Response<V> execute() throws IOException {
+			submit();
+			try {
+				return outcome.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a batched call");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+
+		@Override
+		public void enqueue(final Callback<V> callback) {
+			submit();
+			outcome.addCallback(new ListenableFutureCallback<Response<V>>() {
+				@Override
+				public void onSuccess(Response<V> response) {
+					callback.onResponse(BatchedCall.this, response);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					callback.onFailure(BatchedCall.this, t);
+				}
+			});
+		}
+
+		private void submit() {
+			if (!executed.compareAndSet(false, true)) {
+				throw new IllegalStateException("Already executed.");
+			}
+			if (!outcome.isDone()) {
+				batcher.submit(target, key, this);
+			}
+		}
+
+		@Override
+		public void complete(Response<V> response) {
+			outcome.set(response);
+		}
+
+		@Override
+		public void fail(Throwable t) {
+			outcome.setException(t);
+		}
+
+		@Override
+		public boolean isExecuted() {
+			return executed.get();
+		}
+
+		/**
+		 * Detaches this call: the batch it has joined is still sent.
+		 */
+		@Override
+		public void cancel() {
+			canceled = true;
+			outcome.setException(new IOException("Canceled"));
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return canceled;
+		}
+
+		/**
+		 * Returns the request the single-item method would send on its own.
+		 */
+		@Override
+		public Request request() {
+			Request result = request;
+			if (result == null) {
+				try {
+					result = ((Call<?>) batcher.method.invoke(target.getObject(), key)).request();
+				} catch (InvocationTargetException e) {
+					throw new IllegalStateException("Unable to create the request of " + batcher, e.getTargetException());
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException("Unable to create the request of " + batcher, e);
+				}
+				request = result;
+			}
+			return result;
+		}
+
+		@Override
+		public Call<V> clone() {
+			return new BatchedCall<V>(batcher, target, key);
+		}
+	}
+
+}
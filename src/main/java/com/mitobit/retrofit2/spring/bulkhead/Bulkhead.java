@@ -0,0 +1,44 @@
+package com.mitobit.retrofit2.spring.bulkhead;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Caps the concurrent calls of a {@code RetrofitService}, so that a slow upstream cannot take all the threads and
+ * dispatcher slots shared with the other services. A call started while the limit is reached fails at once with a
+ * {@link BulkheadFullException}. The limit is either fixed or adapted to the latency of the upstream by a
+ * {@link LimitAlgorithm}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see BulkheadCallDecoratorFactory
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Bulkhead {
+
+	/**
+	 * The maximum number of concurrent calls of the service: the limit of the {@link LimitAlgorithm#FIXED FIXED}
+	 * algorithm, the upper bound of the adaptive ones.
+	 */
+	int maxConcurrentCalls() default 64;
+
+	/**
+	 * How the limit is computed.
+	 */
+	LimitAlgorithm limitAlgorithm() default LimitAlgorithm.FIXED;
+
+	/**
+	 * The limit of an adaptive algorithm before any call completes.
+	 */
+	int initialLimit() default 10;
+
+	/**
+	 * The lower bound of the limit of an adaptive algorithm.
+	 */
+	int minLimit() default 1;
+
+}
@@ -0,0 +1,210 @@
+package com.mitobit.retrofit2.spring.bulkhead;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.mitobit.retrofit2.spring.call.CallDecorator;
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.ForwardingCall;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+import com.mitobit.retrofit2.spring.metrics.SampledValue;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * {@link CallDecoratorFactory} enforcing the concurrency limit of the services annotated with {@link Bulkhead}. All
+ * the methods of a service share one limit; a call is admitted when it is executed or enqueued and released when its
+ * response, or failure, is received. A call over the limit fails with a {@link BulkheadFullException} without sending
+ * a request.
+ * <p>
+ * When {@link ServiceMetrics} are given, the {@value ServiceMetrics#BULKHEAD_LIMIT} and
+ * {@value ServiceMetrics#BULKHEAD_CALLS_ACTIVE} gauges and the {@value ServiceMetrics#BULKHEAD_REJECTIONS} counter of
+ * each service are registered, tagged by {@code service}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class BulkheadCallDecoratorFactory implements CallDecoratorFactory {
+
+	private final ServiceMetrics serviceMetrics;
+
+	private final ConcurrentMap<Class<?>, ConcurrencyLimiter> limiters = new ConcurrentHashMap<Class<?>, ConcurrencyLimiter>();
+
+	public BulkheadCallDecoratorFactory() {
+		this(null);
+	}
+
+	/**
+	 * Creates a new {@link BulkheadCallDecoratorFactory}.
+	 *
+	 * @param serviceMetrics the metrics to publish the limits to, may be {@literal null}.
+	 */
+	public BulkheadCallDecoratorFactory(ServiceMetrics serviceMetrics) {
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * @param serviceInterface the service interface.
+	 * @return whether the given interface is annotated with {@link Bulkhead}.
+	 */
+	public static boolean isBulkheaded(Class<?> serviceInterface) {
+		return serviceInterface.isAnnotationPresent(Bulkhead.class);
+	}
+
+	@Override
+	public CallDecorator create(ServiceMethodDescriptor method) {
+		Class<?> serviceInterface = method.getServiceInterface();
+		Bulkhead bulkhead = serviceInterface.getAnnotation(Bulkhead.class);
+		if (bulkhead == null) {
+			return null;
+		}
+		return new Limit(serviceInterface, limiterOf(serviceInterface, bulkhead));
+	}
+
+	private ConcurrencyLimiter limiterOf(Class<?> serviceInterface, Bulkhead bulkhead) {
+		ConcurrencyLimiter limiter = limiters.get(serviceInterface);
+		if (limiter == null) {
+			ConcurrencyLimiter created = new ConcurrencyLimiter(bulkhead);
+			limiter = limiters.putIfAbsent(serviceInterface, created);
+			if (limiter == null) {
+				limiter = created;
+				if (serviceMetrics != null) {
+					registerMetrics(serviceInterface, limiter);
+				}
+			}
+		}
+		return limiter;
+	}
+
+	private void registerMetrics(Class<?> serviceInterface, final ConcurrencyLimiter limiter) {
+		Map<String, String> tags = Collections.singletonMap("service", serviceInterface.getName());
+		serviceMetrics.gauge(ServiceMetrics.BULKHEAD_LIMIT, tags, new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return limiter.getLimit();
+			}
+		});
+		serviceMetrics.gauge(ServiceMetrics.BULKHEAD_CALLS_ACTIVE, tags, limiter.inFlight);
+		serviceMetrics.counter(ServiceMetrics.BULKHEAD_REJECTIONS, tags, limiter.rejections);
+	}
+
+	/**
+	 * Whether the given response tells that the upstream dropped the call.
+	 */
+	private static boolean isDropped(Response<?> response) {
+		return response.code() == 429 || response.code() == 503;
+	}
+
+	/**
+	 * Whether the given failure tells that the upstream dropped the call, i.e. it is a timeout.
+	 */
+	private static boolean isDropped(Throwable t) {
+		return t instanceof InterruptedIOException;
+	}
+
+	private static final class Limit implements CallDecorator {
+
+		private final Class<?> serviceInterface;
+
+		private final ConcurrencyLimiter limiter;
+
+		Limit(Class<?> serviceInterface, ConcurrencyLimiter limiter) {
+			this.serviceInterface = serviceInterface;
+			this.limiter = limiter;
+		}
+
+		@Override
+		public <R> Call<R> decorate(Call<R> call) {
+			return new LimitedCall<R>(call, this);
+		}
+	}
+
+	private static final class LimitedCall<T> extends ForwardingCall<T> {
+
+		private final Limit limit;
+
+		private final AtomicBoolean executed = new AtomicBoolean();
+
+		LimitedCall(Call<T> delegate, Limit limit) {
+			super(delegate);
+			this.limit = limit;
+		}
+
+		@Override
+		public Response<T> execute() throws IOException {
+			acquire();
+			long start = System.nanoTime();
+			Response<T> response;
+			try {
+				response = delegate.execute();
+			} catch (IOException e) {
+				release(start, e);
+				throw e;
+			} catch (RuntimeException e) {
+				release(start, e);
+				throw e;
+			}
+			limit.limiter.release(System.nanoTime() - start, isDropped(response));
+			return response;
+		}
+
+		@Override
+		public void enqueue(final Callback<T> callback) {
+			try {
+				acquire();
+			} catch (BulkheadFullException e) {
+				callback.onFailure(this, e);
+				return;
+			}
+			final long start = System.nanoTime();
+			delegate.enqueue(new Callback<T>() {
+				@Override
+				public void onResponse(Call<T> call, Response<T> response) {
+					limit.limiter.release(System.nanoTime() - start, isDropped(response));
+					callback.onResponse(LimitedCall.this, response);
+				}
+
+				@Override
+				public void onFailure(Call<T> call, Throwable t) {
+					release(start, t);
+					callback.onFailure(LimitedCall.this, t);
+				}
+			});
+		}
+
+		private void acquire() throws BulkheadFullException {
+			if (!executed.compareAndSet(false, true)) {
+				throw new IllegalStateException("Already executed.");
+			}
+			if (!limit.limiter.tryAcquire()) {
+				throw new BulkheadFullException(limit.serviceInterface, limit.limiter.getLimit());
+			}
+		}
+
+		private void release(long start, Throwable t) {
+			// only timeouts measure the upstream, other failures may not have reached it
+			boolean dropped = isDropped(t) && !delegate.isCanceled();
+			limit.limiter.release(dropped ? System.nanoTime() - start : -1, dropped);
+		}
+
+		@Override
+		public boolean isExecuted() {
+			return executed.get();
+		}
+
+		@Override
+		public Call<T> clone() {
+			return new LimitedCall<T>(delegate.clone(), limit);
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+package com.mitobit.retrofit2.spring.bulkhead;
+
+import java.io.IOException;
+
+/**
+ * Thrown by, or passed to the callback of, a call of a {@link Bulkhead} service started while the concurrency limit
+ * of the service is reached. No request has been sent.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class BulkheadFullException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int limit;
+
+	/**
+	 * Creates a new {@link BulkheadFullException}.
+	 *
+	 * @param serviceInterface the service interface.
+	 * @param limit the limit in force when the call was rejected.
+	 */
+	public BulkheadFullException(Class<?> serviceInterface, int limit) {
+		super("Concurrency limit of " + serviceInterface.getName() + " reached: " + limit + " calls in flight");
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the limit in force when the call was rejected.
+	 */
+	public int getLimit() {
+		return limit;
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.mitobit.retrofit2.spring.bulkhead;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The concurrency limit of one {@link Bulkhead} service. Calls are admitted with a compare-and-set on the in-flight
+ * counter; the limit is updated under the lock of the limiter, once per completed call.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+final class ConcurrencyLimiter {
+
+	/**
+	 * Number of samples over which the round-trip time without load catches up with a slower upstream.
+	 */
+	private static final int NO_LOAD_RTT_WINDOW = 1000;
+
+	private final LimitAlgorithm algorithm;
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	final AtomicInteger inFlight = new AtomicInteger();
+
+	final AtomicLong rejections = new AtomicLong();
+
+	private volatile int limit;
+
+	// guarded by this
+	private double estimatedLimit;
+
+	private double noLoadRtt;
+
+	ConcurrencyLimiter(Bulkhead bulkhead) {
+		this.algorithm = bulkhead.limitAlgorithm();
+		this.maxLimit = Math.max(1, bulkhead.maxConcurrentCalls());
+		this.minLimit = Math.max(1, Math.min(bulkhead.minLimit(), maxLimit));
+		this.estimatedLimit = algorithm == LimitAlgorithm.FIXED ? maxLimit
+				: Math.max(minLimit, Math.min(bulkhead.initialLimit(), maxLimit));
+		this.limit = (int) estimatedLimit;
+	}
+
+	int getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Admits a call if the limit allows it.
+	 *
+	 * @return whether the call is admitted and must be {@link #release(long, boolean) released}.
+	 */
+	boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= limit) {
+				rejections.incrementAndGet();
+				return false;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases an admitted call.
+	 *
+	 * @param rtt the round-trip time of the call in nanoseconds, negative when the call gives no sample, e.g. when
+	 *            it failed before reaching the upstream.
+	 * @param dropped whether the upstream dropped the call.
+	 */
+	void release(long rtt, boolean dropped) {
+		int current = inFlight.getAndDecrement();
+		if (algorithm == LimitAlgorithm.FIXED || (rtt < 0 && !dropped)) {
+			return;
+		}
+		synchronized (this) {
+			double updated = algorithm.update(this, estimatedLimit, Math.max(rtt, 1), current, dropped);
+			estimatedLimit = Math.max(minLimit, Math.min(updated, maxLimit));
+			limit = (int) estimatedLimit;
+		}
+	}
+
+	/**
+	 * Updates the round-trip time without load, invoked under the lock of this limiter. It follows a faster round trip
+	 * at once and a slower one slowly, so that an upstream permanently slower does not keep the limit at its minimum.
+	 *
+	 * @return the updated round-trip time without load in nanoseconds.
+	 */
+	double updateNoLoadRtt(long rtt) {
+		if (noLoadRtt == 0 || rtt < noLoadRtt) {
+			noLoadRtt = rtt;
+		} else {
+			noLoadRtt += (rtt - noLoadRtt) / NO_LOAD_RTT_WINDOW;
+		}
+		return noLoadRtt;
+	}
+
+}
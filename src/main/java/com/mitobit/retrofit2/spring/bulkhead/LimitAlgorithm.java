@@ -0,0 +1,79 @@
+package com.mitobit.retrofit2.spring.bulkhead;
+
+/**
+ * How the concurrency limit of a {@link Bulkhead} service is computed. The adaptive algorithms update the limit on
+ * every completed call from its round-trip time, and decrease it when the upstream drops the call: on a read timeout,
+ * or a {@code 429} or {@code 503} response. They leave the limit alone while fewer than half of the calls it allows
+ * are in flight, since the upstream is then not the bottleneck.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public enum LimitAlgorithm {
+
+	/**
+	 * {@link Bulkhead#maxConcurrentCalls()} calls.
+	 */
+	FIXED {
+		@Override
+		double update(ConcurrencyLimiter limiter, double limit, long rtt, int inFlight, boolean dropped) {
+			return limit;
+		}
+	},
+
+	/**
+	 * Additive increase, multiplicative decrease: the limit grows by one per successful call and shrinks by a tenth
+	 * per dropped call.
+	 */
+	AIMD {
+		@Override
+		double update(ConcurrencyLimiter limiter, double limit, long rtt, int inFlight, boolean dropped) {
+			if (dropped) {
+				return limit * BACKOFF_RATIO;
+			}
+			if (inFlight * 2 < limit) {
+				return limit;
+			}
+			return limit + 1;
+		}
+	},
+
+	/**
+	 * Latency gradient, in the manner of TCP Vegas: the ratio between the round-trip time without load, the minimum
+	 * observed, and the one of the last call scales the limit down as the upstream starts queueing, while a headroom
+	 * of the square root of the limit lets it grow as long as the latency stays within a tolerance of the minimum.
+	 */
+	GRADIENT {
+		@Override
+		double update(ConcurrencyLimiter limiter, double limit, long rtt, int inFlight, boolean dropped) {
+			double noLoadRtt = limiter.updateNoLoadRtt(rtt);
+			if (dropped) {
+				return limit * BACKOFF_RATIO;
+			}
+			if (inFlight * 2 < limit) {
+				return limit;
+			}
+			double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * noLoadRtt / rtt));
+			double target = limit * gradient + Math.sqrt(limit);
+			return limit * (1 - SMOOTHING) + target * SMOOTHING;
+		}
+	};
+
+	static final double BACKOFF_RATIO = 0.9;
+
+	static final double RTT_TOLERANCE = 1.5;
+
+	static final double SMOOTHING = 0.2;
+
+	/**
+	 * Computes the limit after a completed call.
+	 *
+	 * @param limiter the limiter, holding the state of the algorithm.
+	 * @param limit the current limit, before bounding.
+	 * @param rtt the round-trip time of the call in nanoseconds.
+	 * @param inFlight the calls in flight when the call completed, itself included.
+	 * @param dropped whether the upstream dropped the call.
+	 * @return the new limit, before bounding.
+	 */
+	abstract double update(ConcurrencyLimiter limiter, double limit, long rtt, int inFlight, boolean dropped);
+
+}
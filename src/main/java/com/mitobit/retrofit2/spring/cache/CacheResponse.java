@@ -0,0 +1,39 @@
+package com.mitobit.retrofit2.spring.cache;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code GET} or {@code HEAD} method of a {@code RetrofitService} whose successful responses are kept in
+ * memory, deserialized body included, and returned to the later identical calls without any request. Calls are
+ * identical when their HTTP method, URL and headers are equal. Cached bodies are shared and must therefore be treated
+ * as immutable, and cannot be streamed: a {@code ResponseBody} or {@code Iterator} response type is rejected.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see CachingCallDecoratorFactory
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CacheResponse {
+
+	/**
+	 * Time to live in milliseconds of a cached response.
+	 */
+	long ttl();
+
+	/**
+	 * Maximum number of responses cached for the method, the least recently used one is evicted first.
+	 */
+	int maxEntries() default 1000;
+
+	/**
+	 * Time in milliseconds after the expiration during which the expired response is still returned while it is
+	 * refreshed in the background. Zero disables the revalidation: expired responses are fetched again by the caller.
+	 */
+	long staleWhileRevalidate() default 0;
+
+}
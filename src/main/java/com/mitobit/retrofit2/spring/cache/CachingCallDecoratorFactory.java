@@ -0,0 +1,315 @@
+package com.mitobit.retrofit2.spring.cache;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+import com.mitobit.retrofit2.spring.call.CallDecorator;
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.ForwardingCall;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+import com.mitobit.retrofit2.spring.metrics.SampledValue;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * {@link CallDecoratorFactory} caching in memory the successful responses of the methods annotated with
+ * {@link CacheResponse}. Each method has its own LRU cache; expired entries are dropped when read or evicted. Methods
+ * whose response body is streamed, a {@code ResponseBody} or an {@code Iterator}, cannot be cached.
+ * <p>
+ * When {@link ServiceMetrics} are given, the {@value ServiceMetrics#CACHE_REQUESTS} counters of each method, tagged by
+ * {@code result} ({@code hit}, {@code stale} or {@code miss}), the {@value ServiceMetrics#CACHE_EVICTIONS} counter and
+ * the {@value ServiceMetrics#CACHE_SIZE} gauge are published.
+ * <p>
+ * The cache of a method is kept when the method is loaded again, e.g. when a refreshable service is rebound.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class CachingCallDecoratorFactory implements CallDecoratorFactory {
+
+	private final ServiceMetrics serviceMetrics;
+
+	private final ConcurrentMap<ServiceMethodDescriptor, ResponseCache> caches = new ConcurrentHashMap<ServiceMethodDescriptor, ResponseCache>();
+
+	public CachingCallDecoratorFactory() {
+		this(null);
+	}
+
+	/**
+	 * Creates a new {@link CachingCallDecoratorFactory}.
+	 *
+	 * @param serviceMetrics the metrics to publish the cache statistics to, may be {@literal null}.
+	 */
+	public CachingCallDecoratorFactory(ServiceMetrics serviceMetrics) {
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * @param serviceInterface the service interface.
+	 * @return whether any method of the given interface is annotated with {@link CacheResponse}.
+	 */
+	public static boolean isCaching(Class<?> serviceInterface) {
+		for (Method method : serviceInterface.getMethods()) {
+			if (method.isAnnotationPresent(CacheResponse.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public CallDecorator create(ServiceMethodDescriptor method) {
+		CacheResponse annotation = method.getAnnotation(CacheResponse.class);
+		if (annotation == null) {
+			return null;
+		}
+		if (!"GET".equals(method.getHttpMethod()) && !"HEAD".equals(method.getHttpMethod())) {
+			throw new IllegalArgumentException("@CacheResponse requires a GET or HEAD method: " + method);
+		}
+		if (method.isStreamingResponse()) {
+			// a streamed body can be read once only
+			throw new IllegalArgumentException("@CacheResponse requires a buffered response type: " + method);
+		}
+		Assert.isTrue(annotation.ttl() > 0, "@CacheResponse ttl must be positive: " + method);
+		Assert.isTrue(annotation.maxEntries() > 0, "@CacheResponse maxEntries must be positive: " + method);
+		Assert.isTrue(annotation.staleWhileRevalidate() >= 0, "@CacheResponse staleWhileRevalidate must not be negative: " + method);
+		ResponseCache cache = caches.get(method);
+		if (cache == null) {
+			ResponseCache created = new ResponseCache(annotation);
+			cache = caches.putIfAbsent(method, created);
+			if (cache == null) {
+				cache = created;
+				if (serviceMetrics != null) {
+					registerMetrics(method, cache);
+				}
+			}
+		}
+		return cache;
+	}
+
+	private void registerMetrics(ServiceMethodDescriptor method, final ResponseCache cache) {
+		serviceMetrics.counter(ServiceMetrics.CACHE_REQUESTS, tags(method, "result", "hit"), cache.hits);
+		serviceMetrics.counter(ServiceMetrics.CACHE_REQUESTS, tags(method, "result", "stale"), cache.staleHits);
+		serviceMetrics.counter(ServiceMetrics.CACHE_REQUESTS, tags(method, "result", "miss"), cache.misses);
+		serviceMetrics.counter(ServiceMetrics.CACHE_EVICTIONS, tags(method, null, null), cache.evictions);
+		serviceMetrics.gauge(ServiceMetrics.CACHE_SIZE, tags(method, null, null), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return cache.size();
+			}
+		});
+	}
+
+	private static Map<String, String> tags(ServiceMethodDescriptor method, String key, String value) {
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("service", method.getServiceInterface().getName());
+		tags.put("method", method.getMethod().getName());
+		if (key != null) {
+			tags.put(key, value);
+		}
+		return tags;
+	}
+
+	/**
+	 * The cached responses of one service method.
+	 */
+	private static final class ResponseCache implements CallDecorator {
+
+		private final long ttlNanos;
+
+		private final long staleNanos;
+
+		private final int maxEntries;
+
+		private final Map<String, Entry> entries;
+
+		private final AtomicLong hits = new AtomicLong();
+
+		private final AtomicLong staleHits = new AtomicLong();
+
+		private final AtomicLong misses = new AtomicLong();
+
+		private final AtomicLong evictions = new AtomicLong();
+
+		@SuppressWarnings("serial")
+		ResponseCache(CacheResponse annotation) {
+			this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(annotation.ttl());
+			this.staleNanos = TimeUnit.MILLISECONDS.toNanos(annotation.staleWhileRevalidate());
+			this.maxEntries = annotation.maxEntries();
+			this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+					if (size() > ResponseCache.this.maxEntries) {
+						evictions.incrementAndGet();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		@Override
+		public <R> Call<R> decorate(Call<R> call) {
+			return new CachingCall<R>(call, this);
+		}
+
+		/**
+		 * Returns the entry of the given key, unless it is past its stale period.
+		 */
+		synchronized Entry get(String key, long now) {
+			Entry entry = entries.get(key);
+			if (entry != null && now - entry.storedAt >= ttlNanos + staleNanos) {
+				entries.remove(key);
+				return null;
+			}
+			return entry;
+		}
+
+		synchronized void put(String key, Response<?> response) {
+			entries.put(key, new Entry(response, System.nanoTime()));
+		}
+
+		synchronized int size() {
+			return entries.size();
+		}
+
+		boolean isFresh(Entry entry, long now) {
+			return now - entry.storedAt < ttlNanos;
+		}
+	}
+
+	private static final class Entry {
+
+		private final Response<?> response;
+
+		private final long storedAt;
+
+		private final AtomicBoolean revalidating = new AtomicBoolean();
+
+		Entry(Response<?> response, long storedAt) {
+			this.response = response;
+			this.storedAt = storedAt;
+		}
+	}
+
+	private static final class CachingCall<T> extends ForwardingCall<T> {
+
+		private final ResponseCache cache;
+
+		private final AtomicBoolean executed = new AtomicBoolean();
+
+		CachingCall(Call<T> delegate, ResponseCache cache) {
+			super(delegate);
+			this.cache = cache;
+		}
+
+		@Override
+		public Response<T> execute() throws IOException {
+			String key = requestKey();
+			Response<T> cached = lookup(key);
+			if (cached != null) {
+				return cached;
+			}
+			Response<T> response = delegate.execute();
+			if (response.isSuccessful()) {
+				cache.put(key, response);
+			}
+			return response;
+		}
+
+		@Override
+		public void enqueue(final Callback<T> callback) {
+			final String key = requestKey();
+			Response<T> cached = lookup(key);
+			if (cached != null) {
+				callback.onResponse(this, cached);
+				return;
+			}
+			delegate.enqueue(new Callback<T>() {
+				@Override
+				public void onResponse(Call<T> call, Response<T> response) {
+					if (response.isSuccessful()) {
+						cache.put(key, response);
+					}
+					callback.onResponse(CachingCall.this, response);
+				}
+
+				@Override
+				public void onFailure(Call<T> call, Throwable t) {
+					callback.onFailure(CachingCall.this, t);
+				}
+			});
+		}
+
+		/**
+		 * Returns the cached response of the given key, starting its revalidation when stale.
+		 *
+		 * @return the response, or {@literal null} on a miss.
+		 */
+		@SuppressWarnings("unchecked")
+		private Response<T> lookup(String key) {
+			if (!executed.compareAndSet(false, true)) {
+				throw new IllegalStateException("Already executed.");
+			}
+			long now = System.nanoTime();
+			Entry entry = cache.get(key, now);
+			if (entry == null) {
+				cache.misses.incrementAndGet();
+				return null;
+			}
+			if (cache.isFresh(entry, now)) {
+				cache.hits.incrementAndGet();
+			} else {
+				cache.staleHits.incrementAndGet();
+				revalidate(key, entry);
+			}
+			return (Response<T>) entry.response;
+		}
+
+		private void revalidate(final String key, final Entry entry) {
+			if (!entry.revalidating.compareAndSet(false, true)) {
+				return;
+			}
+			// a clone, so that canceling this call does not cancel the revalidation
+			delegate.clone().enqueue(new Callback<T>() {
+				@Override
+				public void onResponse(Call<T> call, Response<T> response) {
+					if (response.isSuccessful()) {
+						cache.put(key, response);
+					} else {
+						entry.revalidating.set(false);
+					}
+				}
+
+				@Override
+				public void onFailure(Call<T> call, Throwable t) {
+					entry.revalidating.set(false);
+				}
+			});
+		}
+
+		@Override
+		public boolean isExecuted() {
+			return executed.get();
+		}
+
+		@Override
+		public Call<T> clone() {
+			return new CachingCall<T>(delegate.clone(), cache);
+		}
+	}
+
+}
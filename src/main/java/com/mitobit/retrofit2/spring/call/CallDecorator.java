@@ -0,0 +1,21 @@
+package com.mitobit.retrofit2.spring.call;
+
+import retrofit2.Call;
+
+/**
+ * Decorates the {@link Call}s of one service method before they are handed to the call adapter. Instances are created
+ * once per method by a {@link CallDecoratorFactory} and may keep per-method state.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public interface CallDecorator {
+
+	/**
+	 * Decorates the given call.
+	 *
+	 * @param call the call to decorate, never {@literal null}.
+	 * @return the decorated call, or the given one.
+	 */
+	<R> Call<R> decorate(Call<R> call);
+
+}
@@ -0,0 +1,19 @@
+package com.mitobit.retrofit2.spring.call;
+
+/**
+ * Creates the {@link CallDecorator} of a service method, when it applies to it.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see DecoratingCallAdapterFactory
+ */
+public interface CallDecoratorFactory {
+
+	/**
+	 * Creates the decorator of the given method.
+	 *
+	 * @param method the service method, never {@literal null}.
+	 * @return the decorator, or {@literal null} if the method must not be decorated.
+	 */
+	CallDecorator create(ServiceMethodDescriptor method);
+
+}
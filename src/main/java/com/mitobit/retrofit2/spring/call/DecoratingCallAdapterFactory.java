@@ -0,0 +1,157 @@
+package com.mitobit.retrofit2.spring.call;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+
+/**
+ * {@link CallAdapter.Factory} applying the {@link CallDecorator}s of a service interface to each {@link Call} before
+ * delegating to the next call adapter able to handle the method return type. Working on {@link Call}s, decorators
+ * apply to every return type, including the ones of asynchronous call adapters.
+ * <p>
+ * Decorators are applied in the order of their factories: the first one wraps all the others.
+ * <p>
+ * Retrofit only hands the return type and the annotations of a method to its call adapter factories. The
+ * {@link #shared() shared} factory, which the services sharing a {@link Retrofit} have in common, decorates the method
+ * {@link #bind(ServiceMethodDescriptor, List) bound} to the current thread while the service loads it; a factory
+ * created for a service interface looks the method up instead, see {@link ServiceMethodDescriptor#find}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class DecoratingCallAdapterFactory extends CallAdapter.Factory {
+
+	private static final DecoratingCallAdapterFactory SHARED = new DecoratingCallAdapterFactory();
+
+	private static final ThreadLocal<Binding> BINDING = new ThreadLocal<Binding>();
+
+	private final Class<?> serviceInterface;
+
+	private final List<CallDecoratorFactory> decoratorFactories;
+
+	private DecoratingCallAdapterFactory() {
+		this.serviceInterface = null;
+		this.decoratorFactories = null;
+	}
+
+	/**
+	 * Creates a new {@link DecoratingCallAdapterFactory}.
+	 *
+	 * @param serviceInterface the service interface whose methods are decorated, must not be {@literal null}.
+	 * @param decoratorFactories the decorator factories, outermost first, must not be {@literal null}.
+	 */
+	public DecoratingCallAdapterFactory(Class<?> serviceInterface, List<? extends CallDecoratorFactory> decoratorFactories) {
+		Assert.notNull(serviceInterface, "Service interface must not be null");
+		Assert.notNull(decoratorFactories, "Decorator factories must not be null");
+		this.serviceInterface = serviceInterface;
+		this.decoratorFactories = Collections.unmodifiableList(new ArrayList<CallDecoratorFactory>(decoratorFactories));
+	}
+
+	/**
+	 * @return the factory decorating the {@link #bind(ServiceMethodDescriptor, List) bound} methods.
+	 */
+	public static DecoratingCallAdapterFactory shared() {
+		return SHARED;
+	}
+
+	/**
+	 * Binds the method being loaded by Retrofit on the current thread, with the decorator factories of its service,
+	 * until {@link #unbind()}.
+	 *
+	 * @param method the method, must not be {@literal null}.
+	 * @param decoratorFactories the decorator factories, outermost first, must not be {@literal null}.
+	 */
+	public static void bind(ServiceMethodDescriptor method, List<? extends CallDecoratorFactory> decoratorFactories) {
+		Assert.notNull(method, "Method must not be null");
+		Assert.notNull(decoratorFactories, "Decorator factories must not be null");
+		BINDING.set(new Binding(method, decoratorFactories));
+	}
+
+	/**
+	 * Unbinds the method bound to the current thread.
+	 */
+	public static void unbind() {
+		BINDING.remove();
+	}
+
+	@Override
+	public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+		ServiceMethodDescriptor method;
+		List<? extends CallDecoratorFactory> decoratorFactories;
+		if (serviceInterface != null) {
+			method = ServiceMethodDescriptor.find(serviceInterface, returnType, annotations);
+			decoratorFactories = this.decoratorFactories;
+		} else {
+			Binding binding = BINDING.get();
+			// other call adapters may ask for the adapter of a nested type
+			if (binding == null || !binding.method.getMethod().getGenericReturnType().equals(returnType)) {
+				return null;
+			}
+			method = binding.method;
+			decoratorFactories = binding.decoratorFactories;
+		}
+		if (method == null) {
+			return null;
+		}
+		List<CallDecorator> decorators = new ArrayList<CallDecorator>(decoratorFactories.size());
+		for (CallDecoratorFactory decoratorFactory : decoratorFactories) {
+			CallDecorator decorator = decoratorFactory.create(method);
+			if (decorator != null) {
+				decorators.add(decorator);
+			}
+		}
+		if (decorators.isEmpty()) {
+			return null;
+		}
+		Collections.reverse(decorators);
+		return new DecoratingCallAdapter<Object, Object>(retrofit.nextCallAdapter(this, returnType, annotations),
+				decorators.toArray(new CallDecorator[decorators.size()]));
+	}
+
+	private static final class Binding {
+
+		private final ServiceMethodDescriptor method;
+
+		private final List<? extends CallDecoratorFactory> decoratorFactories;
+
+		Binding(ServiceMethodDescriptor method, List<? extends CallDecoratorFactory> decoratorFactories) {
+			this.method = method;
+			this.decoratorFactories = decoratorFactories;
+		}
+	}
+
+	private static final class DecoratingCallAdapter<R, T> implements CallAdapter<R, T> {
+
+		private final CallAdapter<R, T> delegate;
+
+		private final CallDecorator[] decorators;
+
+		@SuppressWarnings("unchecked")
+		DecoratingCallAdapter(CallAdapter<?, ?> delegate, CallDecorator[] decorators) {
+			this.delegate = (CallAdapter<R, T>) delegate;
+			this.decorators = decorators;
+		}
+
+		@Override
+		public Type responseType() {
+			return delegate.responseType();
+		}
+
+		@Override
+		public T adapt(Call<R> call) {
+			Call<R> decorated = call;
+			for (CallDecorator decorator : decorators) {
+				decorated = decorator.decorate(decorated);
+			}
+			return delegate.adapt(decorated);
+		}
+	}
+
+}
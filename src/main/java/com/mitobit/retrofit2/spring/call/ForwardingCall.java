@@ -0,0 +1,73 @@
+package com.mitobit.retrofit2.spring.call;
+
+import java.io.IOException;
+
+import okhttp3.Request;
+
+import org.springframework.util.Assert;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * {@link Call} forwarding all its methods to a delegate, base class of the calls created by {@link CallDecorator}s.
+ * Subclasses must override {@link #clone()} to return a decorated clone.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @param <T> the response body type
+ */
+public abstract class ForwardingCall<T> implements Call<T> {
+
+	protected final Call<T> delegate;
+
+	protected ForwardingCall(Call<T> delegate) {
+		Assert.notNull(delegate, "Delegate must not be null");
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Response<T> execute() throws IOException {
+		return delegate.execute();
+	}
+
+	@Override
+	public void enqueue(Callback<T> callback) {
+		delegate.enqueue(callback);
+	}
+
+	@Override
+	public boolean isExecuted() {
+		return delegate.isExecuted();
+	}
+
+	@Override
+	public void cancel() {
+		delegate.cancel();
+	}
+
+	@Override
+	public boolean isCanceled() {
+		return delegate.isCanceled();
+	}
+
+	@Override
+	public Request request() {
+		return delegate.request();
+	}
+
+	@Override
+	public abstract Call<T> clone();
+
+	/**
+	 * Returns the key of the request of this call, its HTTP method, URL and headers, under which the decorators
+	 * answering identical calls alike keep their state.
+	 *
+	 * @return the key of the request.
+	 */
+	protected String requestKey() {
+		Request request = delegate.request();
+		return request.method() + ' ' + request.url() + '\n' + request.headers();
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.mitobit.retrofit2.spring.call;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+
+/**
+ * {@link CallAdapter.Factory} for service methods returning a Spring {@link ListenableFuture}. Calls are enqueued on
+ * the dispatcher of the http client, so no thread waits for the response:
+ * <ul>
+ * <li>{@code ListenableFuture<T>} completes with the response body, or with an {@link HttpException} when the
+ * response is not successful;</li>
+ * <li>{@code ListenableFuture<Response<T>>} completes with the response, whatever its status.</li>
+ * </ul>
+ * Cancelling the future cancels the call.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class ListenableFutureCallAdapterFactory extends CallAdapter.Factory {
+
+	@Override
+	public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+		if (getRawType(returnType) != ListenableFuture.class) {
+			return null;
+		}
+		if (!(returnType instanceof ParameterizedType)) {
+			throw new IllegalStateException(
+					"ListenableFuture return type must be parameterized as ListenableFuture<Foo> or ListenableFuture<? extends Foo>");
+		}
+		Type innerType = getParameterUpperBound(0, (ParameterizedType) returnType);
+		if (getRawType(innerType) != Response.class) {
+			return new BodyCallAdapter<Object>(innerType);
+		}
+		if (!(innerType instanceof ParameterizedType)) {
+			throw new IllegalStateException("Response must be parameterized as Response<Foo> or Response<? extends Foo>");
+		}
+		return new ResponseCallAdapter<Object>(getParameterUpperBound(0, (ParameterizedType) innerType));
+	}
+
+	private static final class BodyCallAdapter<R> implements CallAdapter<R, ListenableFuture<R>> {
+
+		private final Type responseType;
+
+		BodyCallAdapter(Type responseType) {
+			this.responseType = responseType;
+		}
+
+		@Override
+		public Type responseType() {
+			return responseType;
+		}
+
+		@Override
+		public ListenableFuture<R> adapt(Call<R> call) {
+			final CallFuture<R> future = new CallFuture<R>(call);
+			call.enqueue(new Callback<R>() {
+				@Override
+				public void onResponse(Call<R> call, Response<R> response) {
+					if (response.isSuccessful()) {
+						future.set(response.body());
+					} else {
+						future.setException(new HttpException(response));
+					}
+				}
+
+				@Override
+				public void onFailure(Call<R> call, Throwable t) {
+					future.setException(t);
+				}
+			});
+			return future;
+		}
+	}
+
+	private static final class ResponseCallAdapter<R> implements CallAdapter<R, ListenableFuture<Response<R>>> {
+
+		private final Type responseType;
+
+		ResponseCallAdapter(Type responseType) {
+			this.responseType = responseType;
+		}
+
+		@Override
+		public Type responseType() {
+			return responseType;
+		}
+
+		@Override
+		public ListenableFuture<Response<R>> adapt(Call<R> call) {
+			final CallFuture<Response<R>> future = new CallFuture<Response<R>>(call);
+			call.enqueue(new Callback<R>() {
+				@Override
+				public void onResponse(Call<R> call, Response<R> response) {
+					future.set(response);
+				}
+
+				@Override
+				public void onFailure(Call<R> call, Throwable t) {
+					future.setException(t);
+				}
+			});
+			return future;
+		}
+	}
+
+	private static final class CallFuture<T> extends SettableListenableFuture<T> {
+
+		private final Call<?> call;
+
+		CallFuture(Call<?> call) {
+			this.call = call;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled) {
+				call.cancel();
+			}
+			return cancelled;
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.mitobit.retrofit2.spring.call;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+
+import okhttp3.ResponseBody;
+
+import org.springframework.core.ResolvableType;
+import org.springframework.util.Assert;
+
+import retrofit2.Response;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.HTTP;
+import retrofit2.http.OPTIONS;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+/**
+ * Describes a method of a {@code RetrofitService} interface: the interface, the method and the HTTP method and path
+ * template declared by its Retrofit annotation.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public final class ServiceMethodDescriptor {
+
+	private final Class<?> serviceInterface;
+
+	private final Method method;
+
+	private final String httpMethod;
+
+	private final String pathTemplate;
+
+	/**
+	 * Creates a new {@link ServiceMethodDescriptor}.
+	 *
+	 * @param serviceInterface the service interface, must not be {@literal null}.
+	 * @param method the method of the service interface, must not be {@literal null}.
+	 */
+	public ServiceMethodDescriptor(Class<?> serviceInterface, Method method) {
+		Assert.notNull(serviceInterface, "Service interface must not be null");
+		Assert.notNull(method, "Method must not be null");
+		this.serviceInterface = serviceInterface;
+		this.method = method;
+		String httpMethod = null;
+		String pathTemplate = "";
+		for (Annotation annotation : method.getAnnotations()) {
+			if (annotation instanceof GET) {
+				httpMethod = "GET";
+				pathTemplate = ((GET) annotation).value();
+			} else if (annotation instanceof POST) {
+				httpMethod = "POST";
+				pathTemplate = ((POST) annotation).value();
+			} else if (annotation instanceof PUT) {
+				httpMethod = "PUT";
+				pathTemplate = ((PUT) annotation).value();
+			} else if (annotation instanceof DELETE) {
+				httpMethod = "DELETE";
+				pathTemplate = ((DELETE) annotation).value();
+			} else if (annotation instanceof PATCH) {
+				httpMethod = "PATCH";
+				pathTemplate = ((PATCH) annotation).value();
+			} else if (annotation instanceof HEAD) {
+				httpMethod = "HEAD";
+				pathTemplate = ((HEAD) annotation).value();
+			} else if (annotation instanceof OPTIONS) {
+				httpMethod = "OPTIONS";
+				pathTemplate = ((OPTIONS) annotation).value();
+			} else if (annotation instanceof HTTP) {
+				httpMethod = ((HTTP) annotation).method();
+				pathTemplate = ((HTTP) annotation).path();
+			}
+		}
+		this.httpMethod = httpMethod != null ? httpMethod : "UNKNOWN";
+		this.pathTemplate = pathTemplate;
+	}
+
+	/**
+	 * Finds the method of the service interface matching the given return type and annotations, as handed to a
+	 * {@link retrofit2.CallAdapter.Factory} or a {@link retrofit2.Converter.Factory} by Retrofit.
+	 *
+	 * @param serviceInterface the service interface, must not be {@literal null}.
+	 * @param returnType the generic return type of the method, may be {@literal null} to match annotations only.
+	 * @param annotations the annotations of the method.
+	 * @return the descriptor of the matching method, or {@literal null} if none matches.
+	 * @throws IllegalStateException if several methods match, e.g. overloads with the same annotations, which only
+	 *           differ by their parameters.
+	 */
+	public static ServiceMethodDescriptor find(Class<?> serviceInterface, Type returnType, Annotation[] annotations) {
+		Method found = null;
+		for (Method method : serviceInterface.getMethods()) {
+			if ((returnType == null || method.getGenericReturnType().equals(returnType))
+					&& sameAnnotations(method.getAnnotations(), annotations)) {
+				if (found != null) {
+					throw new IllegalStateException("Ambiguous methods " + found + " and " + method
+							+ ": same return type and annotations");
+				}
+				found = method;
+			}
+		}
+		return found != null ? new ServiceMethodDescriptor(serviceInterface, found) : null;
+	}
+
+	public Class<?> getServiceInterface() {
+		return serviceInterface;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	/**
+	 * @return the HTTP method, e.g. {@code GET}, or {@code UNKNOWN} if the method is not annotated.
+	 */
+	public String getHttpMethod() {
+		return httpMethod;
+	}
+
+	/**
+	 * @return the relative path template, e.g. {@code users/{id}}, empty when the URL is a method parameter.
+	 */
+	public String getPathTemplate() {
+		return pathTemplate;
+	}
+
+	/**
+	 * Returns whether the caller reads the response body of the method as a stream, which can be consumed once only: a
+	 * {@link ResponseBody}, or an {@link Iterator} such as a {@code CloseableIterator}. The body type is the type
+	 * argument of the return type, e.g. {@code Call<ResponseBody>} or {@code CompletableFuture<Response<ResponseBody>>}.
+	 *
+	 * @return whether the response body is streamed.
+	 */
+	public boolean isStreamingResponse() {
+		ResolvableType bodyType = ResolvableType.forMethodReturnType(method).getGeneric(0);
+		if (Response.class == bodyType.resolve()) {
+			bodyType = bodyType.getGeneric(0);
+		}
+		Class<?> bodyClass = bodyType.resolve();
+		return bodyClass != null
+				&& (ResponseBody.class.isAssignableFrom(bodyClass) || Iterator.class.isAssignableFrom(bodyClass));
+	}
+
+	/**
+	 * Returns the annotation of the given type declared on the method.
+	 *
+	 * @param annotationType the annotation type.
+	 * @return the annotation, or {@literal null} if not present.
+	 */
+	public <A extends Annotation> A getAnnotation(Class<A> annotationType) {
+		return method.getAnnotation(annotationType);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ServiceMethodDescriptor)) {
+			return false;
+		}
+		ServiceMethodDescriptor other = (ServiceMethodDescriptor) obj;
+		return serviceInterface.equals(other.serviceInterface) && method.equals(other.method);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * serviceInterface.hashCode() + method.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return serviceInterface.getSimpleName() + "." + method.getName() + " (" + httpMethod + " " + pathTemplate + ")";
+	}
+
+	private static boolean sameAnnotations(Annotation[] left, Annotation[] right) {
+		if (left.length != right.length) {
+			return false;
+		}
+		for (int i = 0; i < left.length; i++) {
+			if (!left[i].equals(right[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
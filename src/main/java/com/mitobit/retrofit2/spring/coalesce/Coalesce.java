@@ -0,0 +1,24 @@
+package com.mitobit.retrofit2.spring.coalesce;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code GET} or {@code HEAD} method of a {@code RetrofitService} whose concurrent identical calls share one
+ * upstream request. Calls are identical when their HTTP method, URL and headers are equal; a call started while an
+ * identical one is in flight receives the response of the latter, deserialized body included, instead of sending its
+ * own request. Shared bodies must therefore be treated as immutable, and cannot be streamed: a {@code ResponseBody} or
+ * {@code Iterator} response type is rejected.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see CoalescingCallDecoratorFactory
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Coalesce {
+
+}
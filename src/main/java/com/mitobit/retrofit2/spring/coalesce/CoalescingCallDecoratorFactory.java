@@ -0,0 +1,357 @@
+package com.mitobit.retrofit2.spring.coalesce;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import com.mitobit.retrofit2.spring.call.CallDecorator;
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.ForwardingCall;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * {@link CallDecoratorFactory} coalescing the concurrent identical calls of the methods annotated with
+ * {@link Coalesce}. The first call of a key, the leader, sends the upstream request; the calls started while it is in
+ * flight wait for its outcome. Each waiting call receives its own copy of an error body. Methods whose response body
+ * is streamed, a {@code ResponseBody} or an {@code Iterator}, cannot be coalesced.
+ * <p>
+ * Canceling a call only detaches it: the upstream request is canceled once every call waiting for it is canceled. When
+ * {@link ServiceMetrics} are given, the {@value ServiceMetrics#COALESCED_CALLS} counters of each method, tagged by
+ * {@code call} ({@code upstream} or {@code shared}), measure the deduplication ratio.
+ * <p>
+ * The calls in flight of a method are kept when the method is loaded again, e.g. when a refreshable service is
+ * rebound.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class CoalescingCallDecoratorFactory implements CallDecoratorFactory {
+
+	private final ServiceMetrics serviceMetrics;
+
+	private final ConcurrentMap<ServiceMethodDescriptor, Coalescer> coalescers = new ConcurrentHashMap<ServiceMethodDescriptor, Coalescer>();
+
+	public CoalescingCallDecoratorFactory() {
+		this(null);
+	}
+
+	/**
+	 * Creates a new {@link CoalescingCallDecoratorFactory}.
+	 *
+	 * @param serviceMetrics the metrics to publish the coalescing counters to, may be {@literal null}.
+	 */
+	public CoalescingCallDecoratorFactory(ServiceMetrics serviceMetrics) {
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * @param serviceInterface the service interface.
+	 * @return whether any method of the given interface is annotated with {@link Coalesce}.
+	 */
+	public static boolean isCoalescing(Class<?> serviceInterface) {
+		for (Method method : serviceInterface.getMethods()) {
+			if (method.isAnnotationPresent(Coalesce.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public CallDecorator create(ServiceMethodDescriptor method) {
+		if (method.getAnnotation(Coalesce.class) == null) {
+			return null;
+		}
+		if (!"GET".equals(method.getHttpMethod()) && !"HEAD".equals(method.getHttpMethod())) {
+			throw new IllegalArgumentException("@Coalesce requires a GET or HEAD method: " + method);
+		}
+		if (method.isStreamingResponse()) {
+			// a streamed body can be read by one caller only
+			throw new IllegalArgumentException("@Coalesce requires a buffered response type: " + method);
+		}
+		Coalescer coalescer = coalescers.get(method);
+		if (coalescer == null) {
+			Coalescer created = new Coalescer();
+			coalescer = coalescers.putIfAbsent(method, created);
+			if (coalescer == null) {
+				coalescer = created;
+				if (serviceMetrics != null) {
+					serviceMetrics.counter(ServiceMetrics.COALESCED_CALLS, tags(method, "upstream"), coalescer.upstreamCalls);
+					serviceMetrics.counter(ServiceMetrics.COALESCED_CALLS, tags(method, "shared"), coalescer.sharedCalls);
+				}
+			}
+		}
+		return coalescer;
+	}
+
+	private static Map<String, String> tags(ServiceMethodDescriptor method, String call) {
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("service", method.getServiceInterface().getName());
+		tags.put("method", method.getMethod().getName());
+		tags.put("call", call);
+		return tags;
+	}
+
+	/**
+	 * The flights in progress of one service method.
+	 */
+	private static final class Coalescer implements CallDecorator {
+
+		private final ConcurrentMap<String, Flight<?>> flights = new ConcurrentHashMap<String, Flight<?>>();
+
+		private final AtomicLong upstreamCalls = new AtomicLong();
+
+		private final AtomicLong sharedCalls = new AtomicLong();
+
+		@Override
+		public <R> Call<R> decorate(Call<R> call) {
+			return new CoalescingCall<R>(call, this);
+		}
+
+		/**
+		 * Joins the flight in progress for the given key, or registers the given one.
+		 *
+		 * @return the joined flight, or {@literal null} if the given one was registered.
+		 */
+		@SuppressWarnings("unchecked")
+		<T> Flight<T> join(String key, Flight<T> candidate) {
+			while (true) {
+				Flight<T> existing = (Flight<T>) flights.putIfAbsent(key, candidate);
+				if (existing == null) {
+					upstreamCalls.incrementAndGet();
+					return null;
+				}
+				if (existing.join()) {
+					sharedCalls.incrementAndGet();
+					return existing;
+				}
+				// abandoned by all its callers
+				flights.remove(key, existing);
+			}
+		}
+
+		void land(String key, Flight<?> flight) {
+			flights.remove(key, flight);
+		}
+	}
+
+	/**
+	 * One upstream request and the calls waiting for it.
+	 */
+	private static final class Flight<T> {
+
+		private final Call<T> upstream;
+
+		private final AtomicInteger callers = new AtomicInteger(1);
+
+		private final SettableListenableFuture<Response<T>> result = new SettableListenableFuture<Response<T>>();
+
+		// written before the result is set
+		private MediaType errorType;
+
+		private byte[] errorBody;
+
+		Flight(Call<T> upstream) {
+			this.upstream = upstream;
+		}
+
+		boolean join() {
+			while (true) {
+				int count = callers.get();
+				if (count == 0) {
+					return false;
+				}
+				if (callers.compareAndSet(count, count + 1)) {
+					return true;
+				}
+			}
+		}
+
+		void leave() {
+			if (callers.decrementAndGet() == 0 && !result.isDone()) {
+				upstream.cancel();
+			}
+		}
+
+		void complete(Response<T> response) {
+			ResponseBody body = response.errorBody();
+			if (body != null) {
+				try {
+					errorType = body.contentType();
+					errorBody = body.bytes();
+				} catch (IOException e) {
+					result.setException(e);
+					return;
+				}
+			}
+			result.set(response);
+		}
+
+		void fail(Throwable t) {
+			result.setException(t);
+		}
+
+		void subscribe(final SettableListenableFuture<Response<T>> target) {
+			result.addCallback(new ListenableFutureCallback<Response<T>>() {
+				@Override
+				public void onSuccess(Response<T> response) {
+					target.set(errorBody == null ? response
+							: Response.<T> error(ResponseBody.create(errorType, errorBody), response.raw()));
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					target.setException(t);
+				}
+			});
+		}
+	}
+
+	private static final class CoalescingCall<T> extends ForwardingCall<T> {
+
+		private final Coalescer coalescer;
+
+		private final AtomicBoolean executed = new AtomicBoolean();
+
+		private final SettableListenableFuture<Response<T>> outcome = new SettableListenableFuture<Response<T>>();
+
+		private volatile boolean canceled;
+
+		private volatile Flight<T> flight;
+
+		CoalescingCall(Call<T> delegate, Coalescer coalescer) {
+			super(delegate);
+			this.coalescer = coalescer;
+		}
+
+		@Override
+		public Response<T> execute() throws IOException {
+			String key = requestKey();
+			Flight<T> candidate = new Flight<T>(delegate);
+			if (takeOff(key, candidate)) {
+				try {
+					Response<T> response = delegate.execute();
+					coalescer.land(key, candidate);
+					candidate.complete(response);
+				} catch (IOException e) {
+					coalescer.land(key, candidate);
+					candidate.fail(e);
+				} catch (RuntimeException e) {
+					coalescer.land(key, candidate);
+					candidate.fail(e);
+				}
+			}
+			try {
+				return outcome.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for a coalesced call", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+
+		@Override
+		public void enqueue(final Callback<T> callback) {
+			final String key = requestKey();
+			final Flight<T> candidate = new Flight<T>(delegate);
+			if (takeOff(key, candidate)) {
+				delegate.enqueue(new Callback<T>() {
+					@Override
+					public void onResponse(Call<T> call, Response<T> response) {
+						coalescer.land(key, candidate);
+						candidate.complete(response);
+					}
+
+					@Override
+					public void onFailure(Call<T> call, Throwable t) {
+						coalescer.land(key, candidate);
+						candidate.fail(t);
+					}
+				});
+			}
+			outcome.addCallback(new ListenableFutureCallback<Response<T>>() {
+				@Override
+				public void onSuccess(Response<T> response) {
+					callback.onResponse(CoalescingCall.this, response);
+				}
+
+				@Override
+				public void onFailure(Throwable t) {
+					callback.onFailure(CoalescingCall.this, t);
+				}
+			});
+		}
+
+		/**
+		 * Joins the flight of the given key, or registers the given one.
+		 *
+		 * @return whether this call is the leader and must send the upstream request.
+		 */
+		private boolean takeOff(String key, Flight<T> candidate) {
+			if (!executed.compareAndSet(false, true)) {
+				throw new IllegalStateException("Already executed.");
+			}
+			Flight<T> joined = coalescer.join(key, candidate);
+			Flight<T> current = joined != null ? joined : candidate;
+			current.subscribe(outcome);
+			flight = current;
+			if (canceled) {
+				cancel();
+			}
+			return joined == null;
+		}
+
+		@Override
+		public boolean isExecuted() {
+			return executed.get();
+		}
+
+		@Override
+		public void cancel() {
+			canceled = true;
+			Flight<T> current = flight;
+			if (current != null && outcome.setException(new IOException("Canceled"))) {
+				current.leave();
+			}
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return canceled;
+		}
+
+		@Override
+		public Call<T> clone() {
+			return new CoalescingCall<T>(delegate.clone(), coalescer);
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.mitobit.retrofit2.spring.converter;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * {@link Converter.Factory} reading and writing bodies with an {@link ObjectMapper} of any Jackson data format, e.g.
+ * Smile or CBOR, labelling request bodies with the media type of the format.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class JacksonFormatConverterFactory extends Converter.Factory {
+
+	private final ObjectMapper mapper;
+
+	private final MediaType mediaType;
+
+	/**
+	 * Creates a new {@link JacksonFormatConverterFactory}.
+	 *
+	 * @param mapper the mapper of the format, must not be {@literal null}.
+	 * @param mediaType the media type of the format, must not be {@literal null}.
+	 */
+	public JacksonFormatConverterFactory(ObjectMapper mapper, MediaType mediaType) {
+		Assert.notNull(mapper, "ObjectMapper must not be null");
+		Assert.notNull(mediaType, "Media type must not be null");
+		this.mapper = mapper;
+		this.mediaType = mediaType;
+	}
+
+	@Override
+	public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+		JavaType javaType = mapper.getTypeFactory().constructType(type);
+		return new ResponseBodyConverter<Object>(mapper.readerFor(javaType));
+	}
+
+	@Override
+	public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+			Annotation[] methodAnnotations, Retrofit retrofit) {
+		JavaType javaType = mapper.getTypeFactory().constructType(type);
+		return new RequestBodyConverter<Object>(mapper.writerFor(javaType), mediaType);
+	}
+
+	private static final class ResponseBodyConverter<T> implements Converter<ResponseBody, T> {
+
+		private final ObjectReader reader;
+
+		ResponseBodyConverter(ObjectReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public T convert(ResponseBody value) throws IOException {
+			try {
+				return reader.readValue(value.byteStream());
+			} finally {
+				value.close();
+			}
+		}
+	}
+
+	private static final class RequestBodyConverter<T> implements Converter<T, RequestBody> {
+
+		private final ObjectWriter writer;
+
+		private final MediaType mediaType;
+
+		RequestBodyConverter(ObjectWriter writer, MediaType mediaType) {
+			this.writer = writer;
+			this.mediaType = mediaType;
+		}
+
+		@Override
+		public RequestBody convert(T value) throws IOException {
+			return RequestBody.create(mediaType, writer.writeValueAsBytes(value));
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package com.mitobit.retrofit2.spring.converter;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+
+import org.springframework.util.Assert;
+
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * {@link Converter.Factory} reading each response body with the converter of its {@code Content-Type}, among the
+ * converter factories of several formats. Responses without a known {@code Content-Type} are read with the first format
+ * able to handle the type; request bodies are always written with it.
+ * <p>
+ * A format whose factory does not handle a type, e.g. Protocol Buffers for a plain Java bean, is skipped for that type.
+ * The {@code Accept} header, telling the server which formats are preferred, is left to the service methods.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class NegotiatingConverterFactory extends Converter.Factory {
+
+	private final Map<MediaType, Converter.Factory> factories;
+
+	/**
+	 * Creates a new {@link NegotiatingConverterFactory}.
+	 *
+	 * @param factories the converter factory of each media type, in order of preference, must not be empty.
+	 */
+	public NegotiatingConverterFactory(Map<MediaType, ? extends Converter.Factory> factories) {
+		Assert.notEmpty(factories, "Converter factories must not be empty");
+		this.factories = new LinkedHashMap<MediaType, Converter.Factory>(factories);
+	}
+
+	@Override
+	public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+		Map<String, Converter<ResponseBody, ?>> converters = new HashMap<String, Converter<ResponseBody, ?>>();
+		Converter<ResponseBody, ?> defaultConverter = null;
+		for (Map.Entry<MediaType, Converter.Factory> entry : factories.entrySet()) {
+			Converter<ResponseBody, ?> converter = entry.getValue().responseBodyConverter(type, annotations, retrofit);
+			if (converter != null) {
+				converters.put(keyOf(entry.getKey()), converter);
+				if (defaultConverter == null) {
+					defaultConverter = converter;
+				}
+			}
+		}
+		if (defaultConverter == null) {
+			return null;
+		}
+		return converters.size() == 1 ? defaultConverter
+				: new NegotiatingResponseBodyConverter<Object>(converters, defaultConverter);
+	}
+
+	@Override
+	public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+			Annotation[] methodAnnotations, Retrofit retrofit) {
+		for (Converter.Factory factory : factories.values()) {
+			Converter<?, RequestBody> converter = factory.requestBodyConverter(type, parameterAnnotations,
+					methodAnnotations, retrofit);
+			if (converter != null) {
+				return converter;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the media types of the formats, in order of preference.
+	 */
+	public List<MediaType> getMediaTypes() {
+		return new ArrayList<MediaType>(factories.keySet());
+	}
+
+	private static String keyOf(MediaType mediaType) {
+		return mediaType.type() + '/' + mediaType.subtype();
+	}
+
+	private static final class NegotiatingResponseBodyConverter<T> implements Converter<ResponseBody, T> {
+
+		private final Map<String, Converter<ResponseBody, ?>> converters;
+
+		private final Converter<ResponseBody, ?> defaultConverter;
+
+		NegotiatingResponseBodyConverter(Map<String, Converter<ResponseBody, ?>> converters,
+				Converter<ResponseBody, ?> defaultConverter) {
+			this.converters = converters;
+			this.defaultConverter = defaultConverter;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public T convert(ResponseBody value) throws IOException {
+			MediaType contentType = value.contentType();
+			Converter<ResponseBody, ?> converter = contentType != null ? converters.get(keyOf(contentType)) : null;
+			return (T) (converter != null ? converter : defaultConverter).convert(value);
+		}
+	}
+
+}
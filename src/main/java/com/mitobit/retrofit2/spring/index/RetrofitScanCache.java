@@ -0,0 +1,247 @@
+package com.mitobit.retrofit2.spring.index;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ResourceUtils;
+
+/**
+ * Persistent cache of the {@code RetrofitService} interfaces found by classpath scanning, reused across restarts of
+ * the same artifact. The result of scanning a package is stored in the cache directory, in the format of the
+ * {@link RetrofitServiceIndex}, under a key computed from the checksums of the classes of the package in each jar it
+ * is found in: the CRC-32 recorded by the jar for each entry, so that no class file is read.
+ * <p>
+ * Only packages found in jars only are cached, as the classes of a directory may change at any time. Reading or
+ * writing the cache never fails the scan, which falls back to reading the class files.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public final class RetrofitScanCache {
+
+	/**
+	 * The property naming the directory of the cache, unset by default to disable it.
+	 */
+	public static final String CACHE_DIRECTORY = "retrofit.scan.cache-directory";
+
+	private static final String FORMAT_VERSION = "1";
+
+	private static final String CACHE_FILE_SUFFIX = ".idx";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private static final Log logger = LogFactory.getLog(RetrofitScanCache.class);
+
+	private final File directory;
+
+	/**
+	 * Creates a new {@link RetrofitScanCache} stored in the given directory, created if necessary.
+	 *
+	 * @param directory the directory of the cache, must not be {@literal null}.
+	 */
+	public RetrofitScanCache(File directory) {
+		Assert.notNull(directory, "Directory must not be null");
+		this.directory = directory;
+	}
+
+	/**
+	 * Computes the key of the scan of the given package.
+	 *
+	 * @param basePackage the resolved base package, must not be {@literal null}.
+	 * @param resourcePatternResolver the resolver scanning the classpath.
+	 * @param filters the description of the filters applied by the scan, including their settings.
+	 * @return the key, or {@literal null} if the package is not only found in jars or cannot be read.
+	 */
+	public String keyOf(String basePackage, ResourcePatternResolver resourcePatternResolver, Collection<String> filters) {
+		String packagePath = ClassUtils.convertClassNameToResourcePath(basePackage);
+		try {
+			Resource[] roots = resourcePatternResolver.getResources(ResourcePatternResolver.CLASSPATH_ALL_URL_PREFIX
+					+ packagePath + "/");
+			List<String> checksums = new ArrayList<String>(roots.length);
+			for (Resource root : roots) {
+				String checksum = checksumOf(root.getURL());
+				if (checksum == null) {
+					return null;
+				}
+				checksums.add(checksum);
+			}
+			// the same artifact may be found in a different location
+			Collections.sort(checksums);
+			MessageDigest digest = newDigest();
+			update(digest, FORMAT_VERSION);
+			update(digest, basePackage);
+			for (String filter : filters) {
+				update(digest, filter);
+			}
+			for (String checksum : checksums) {
+				update(digest, checksum);
+			}
+			return toHex(digest.digest());
+		} catch (IOException e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Could not compute the scan cache key of package " + basePackage, e);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the types found by a previous scan.
+	 *
+	 * @param key the key of the scan.
+	 * @return the binary names of the types, or {@literal null} on a cache miss.
+	 */
+	public Set<String> get(String key) {
+		File file = new File(directory, key + CACHE_FILE_SUFFIX);
+		if (!file.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				properties.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.warn("Could not read scan cache file " + file, e);
+			return null;
+		}
+		Set<String> types = new TreeSet<String>();
+		for (String type : properties.stringPropertyNames()) {
+			if (RetrofitServiceIndex.RETROFIT_SERVICE_ANNOTATION.equals(properties.getProperty(type))) {
+				types.add(type);
+			}
+		}
+		return types;
+	}
+
+	/**
+	 * Stores the types found by a scan. The file is written aside and then renamed, so that concurrent readers never
+	 * see a partial result.
+	 *
+	 * @param key the key of the scan.
+	 * @param types the binary names of the types found.
+	 */
+	public void put(String key, Collection<String> types) {
+		Properties properties = new Properties();
+		for (String type : types) {
+			properties.setProperty(type, RetrofitServiceIndex.RETROFIT_SERVICE_ANNOTATION);
+		}
+		File file = new File(directory, key + CACHE_FILE_SUFFIX);
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+				throw new IOException("Could not create directory " + directory);
+			}
+			File temp = File.createTempFile(key, ".tmp", directory);
+			try {
+				OutputStream out = new FileOutputStream(temp);
+				try {
+					properties.store(out, null);
+				} finally {
+					out.close();
+				}
+				if (!temp.renameTo(file) && !file.isFile()) {
+					throw new IOException("Could not rename " + temp + " to " + file);
+				}
+			} finally {
+				if (temp.exists()) {
+					temp.delete();
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Could not write scan cache file " + file, e);
+		}
+	}
+
+	/**
+	 * @return the directory of the cache.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Computes the checksum of the entries under the given root, if it is in a jar.
+	 */
+	private static String checksumOf(URL root) throws IOException {
+		if (!ResourceUtils.isJarURL(root)) {
+			return null;
+		}
+		URLConnection connection = root.openConnection();
+		if (!(connection instanceof JarURLConnection)) {
+			return null;
+		}
+		JarURLConnection jarConnection = (JarURLConnection) connection;
+		ResourceUtils.useCachesIfNecessary(jarConnection);
+		JarFile jarFile = jarConnection.getJarFile();
+		try {
+			String prefix = jarConnection.getEntryName();
+			MessageDigest digest = newDigest();
+			for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements();) {
+				JarEntry entry = entries.nextElement();
+				if (prefix == null || entry.getName().startsWith(prefix)) {
+					update(digest, entry.getName());
+					update(digest, Long.toHexString(entry.getCrc()));
+					update(digest, Long.toHexString(entry.getSize()));
+				}
+			}
+			return toHex(digest.digest());
+		} finally {
+			if (!jarConnection.getUseCaches()) {
+				jarFile.close();
+			}
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(value.getBytes(UTF_8));
+		digest.update((byte) 0);
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+}
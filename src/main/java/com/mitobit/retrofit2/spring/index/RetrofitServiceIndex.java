@@ -0,0 +1,128 @@
+package com.mitobit.retrofit2.spring.index;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.core.SpringProperties;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Index of the {@code RetrofitService} interfaces available on the classpath, written at compile time by
+ * {@link RetrofitServiceIndexProcessor} into {@value #INDEX_LOCATION}. The index of every jar is merged; each entry maps
+ * the binary name of an interface to the annotation it was indexed for.
+ * <p>
+ * Only the classpath roots, jars or directories, holding an index are known to it: a package also found in a root
+ * without an index, e.g. one compiled without annotation processing, must be scanned, see {@link #covers(String, String)}.
+ * <p>
+ * The index can be ignored, forcing classpath scanning, by setting the {@value #IGNORE_INDEX} system or
+ * {@link SpringProperties} property to {@code true}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public final class RetrofitServiceIndex {
+
+	/**
+	 * The location of the index in each jar.
+	 */
+	public static final String INDEX_LOCATION = "META-INF/retrofit-services.idx";
+
+	/**
+	 * The property that, when {@code true}, makes {@link #load(ClassLoader)} ignore the index.
+	 */
+	public static final String IGNORE_INDEX = "retrofit.index.ignore";
+
+	static final String RETROFIT_SERVICE_ANNOTATION = "com.mitobit.retrofit2.spring.RetrofitService";
+
+	private final Set<String> types;
+
+	private final Set<String> roots;
+
+	RetrofitServiceIndex(Set<String> types, Set<String> roots) {
+		this.types = Collections.unmodifiableSet(new TreeSet<String>(types));
+		this.roots = Collections.unmodifiableSet(new TreeSet<String>(roots));
+	}
+
+	/**
+	 * Loads the index of all the jars visible to the given class loader.
+	 *
+	 * @param classLoader the class loader to use, may be {@literal null} to use the default one.
+	 * @return the merged index, or {@literal null} if no index is available or the index is ignored.
+	 * @throws IllegalStateException if an index cannot be read.
+	 */
+	public static RetrofitServiceIndex load(ClassLoader classLoader) {
+		if (SpringProperties.getFlag(IGNORE_INDEX)) {
+			return null;
+		}
+		ClassLoader loader = (classLoader != null ? classLoader : ClassUtils.getDefaultClassLoader());
+		try {
+			Enumeration<URL> urls = loader.getResources(INDEX_LOCATION);
+			if (!urls.hasMoreElements()) {
+				return null;
+			}
+			Set<String> types = new LinkedHashSet<String>();
+			Set<String> roots = new LinkedHashSet<String>();
+			while (urls.hasMoreElements()) {
+				URL url = urls.nextElement();
+				String location = url.toExternalForm();
+				roots.add(location.substring(0, location.length() - INDEX_LOCATION.length()));
+				Properties properties = PropertiesLoaderUtils.loadProperties(new UrlResource(url));
+				for (String type : properties.stringPropertyNames()) {
+					if (RETROFIT_SERVICE_ANNOTATION.equals(properties.getProperty(type))) {
+						types.add(type);
+					}
+				}
+			}
+			return new RetrofitServiceIndex(types, roots);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to load indexes from location [" + INDEX_LOCATION + "]", e);
+		}
+	}
+
+	/**
+	 * Returns the indexed types in the given package or in one of its sub-packages.
+	 *
+	 * @param basePackage the base package, must not be {@literal null}.
+	 * @return the binary names of the matching types.
+	 */
+	public Set<String> getCandidateTypes(String basePackage) {
+		String prefix = basePackage.endsWith(".") ? basePackage : basePackage + ".";
+		Set<String> candidates = new LinkedHashSet<String>();
+		for (String type : types) {
+			if (basePackage.isEmpty() || type.startsWith(prefix)) {
+				candidates.add(type);
+			}
+		}
+		return candidates;
+	}
+
+	/**
+	 * Returns whether the given location of a package is in a classpath root holding an index.
+	 *
+	 * @param packageLocation the URL of the package directory, e.g. {@code jar:file:/app.jar!/com/example/}.
+	 * @param basePackage the package, must not be {@literal null}.
+	 * @return {@literal true} if the types of the package in that root are indexed.
+	 */
+	public boolean covers(String packageLocation, String basePackage) {
+		String packagePath = basePackage.isEmpty() ? "" : basePackage.replace('.', '/') + "/";
+		if (!packageLocation.endsWith(packagePath)) {
+			return false;
+		}
+		return roots.contains(packageLocation.substring(0, packageLocation.length() - packagePath.length()));
+	}
+
+	/**
+	 * @return all the indexed types.
+	 */
+	public Set<String> getTypes() {
+		return types;
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.mitobit.retrofit2.spring.index;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor writing the {@link RetrofitServiceIndex} of the {@code RetrofitService} interfaces compiled in
+ * the current module, so that the registrar can skip classpath scanning at startup. Entries of a previous incremental
+ * compilation are kept.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see RetrofitServiceIndex
+ */
+@SupportedAnnotationTypes(RetrofitServiceIndex.RETROFIT_SERVICE_ANNOTATION)
+public class RetrofitServiceIndexProcessor extends AbstractProcessor {
+
+	private final Properties index = new Properties();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() == ElementKind.INTERFACE) {
+					String typeName = processingEnv.getElementUtils().getBinaryName((TypeElement) element).toString();
+					index.setProperty(typeName, RetrofitServiceIndex.RETROFIT_SERVICE_ANNOTATION);
+				}
+			}
+		}
+		if (roundEnv.processingOver() && !index.isEmpty()) {
+			writeIndex();
+		}
+		return false;
+	}
+
+	private void writeIndex() {
+		try {
+			Properties merged = readPreviousIndex();
+			merged.putAll(index);
+			FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+					RetrofitServiceIndex.INDEX_LOCATION);
+			OutputStream out = file.openOutputStream();
+			try {
+				merged.store(out, null);
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Kind.ERROR,
+					"Unable to write " + RetrofitServiceIndex.INDEX_LOCATION + ": " + e.getMessage());
+		}
+	}
+
+	private Properties readPreviousIndex() {
+		Properties previous = new Properties();
+		try {
+			FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+					RetrofitServiceIndex.INDEX_LOCATION);
+			InputStream in = file.openInputStream();
+			try {
+				previous.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (FileNotFoundException e) {
+			// first compilation
+		} catch (IOException e) {
+			// no previous index available for this location
+		} catch (IllegalArgumentException e) {
+			// some tools do not support reading resources from the class output
+		}
+		return previous;
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.mitobit.retrofit2.spring.metrics;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+/**
+ * {@link EventListener.Factory} recording how the calls of an {@link okhttp3.OkHttpClient} obtain their connections:
+ * the {@value ServiceMetrics#CONNECTIONS_ACQUIRED} counters and the {@value ServiceMetrics#CONNECTION_REUSE_RATIO}
+ * gauge tell pooled connections from new ones, the {@value ServiceMetrics#CONNECTION_HANDSHAKES} and
+ * {@value ServiceMetrics#CONNECTION_HANDSHAKE_TIME} counters give the cost of the TCP and TLS handshakes of the new
+ * ones. All are tagged with {@code client}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class ConnectionMetrics implements EventListener.Factory {
+
+	private final AtomicLong reused = new AtomicLong();
+
+	private final AtomicLong created = new AtomicLong();
+
+	private final AtomicLong tcpHandshakes = new AtomicLong();
+
+	private final AtomicLong tcpHandshakeNanos = new AtomicLong();
+
+	private final AtomicLong tlsHandshakes = new AtomicLong();
+
+	private final AtomicLong tlsHandshakeNanos = new AtomicLong();
+
+	/**
+	 * Creates a new {@link ConnectionMetrics}, registering its meters.
+	 *
+	 * @param serviceMetrics the metrics to register the meters with.
+	 * @param clientName the name of the client, usually its bean name.
+	 */
+	public ConnectionMetrics(ServiceMetrics serviceMetrics, String clientName) {
+		serviceMetrics.counter(ServiceMetrics.CONNECTIONS_ACQUIRED, tags(clientName, "reused", "true"), reused);
+		serviceMetrics.counter(ServiceMetrics.CONNECTIONS_ACQUIRED, tags(clientName, "reused", "false"), created);
+		serviceMetrics.gauge(ServiceMetrics.CONNECTION_REUSE_RATIO, tags(clientName, null, null), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				double reusedCount = reused.get();
+				double total = reusedCount + created.get();
+				return total > 0 ? reusedCount / total : 0;
+			}
+		});
+		serviceMetrics.counter(ServiceMetrics.CONNECTION_HANDSHAKES, tags(clientName, "phase", "tcp"), tcpHandshakes);
+		serviceMetrics.counter(ServiceMetrics.CONNECTION_HANDSHAKE_TIME, tags(clientName, "phase", "tcp"), seconds(tcpHandshakeNanos));
+		serviceMetrics.counter(ServiceMetrics.CONNECTION_HANDSHAKES, tags(clientName, "phase", "tls"), tlsHandshakes);
+		serviceMetrics.counter(ServiceMetrics.CONNECTION_HANDSHAKE_TIME, tags(clientName, "phase", "tls"), seconds(tlsHandshakeNanos));
+	}
+
+	@Override
+	public EventListener create(Call call) {
+		return new Listener();
+	}
+
+	/**
+	 * @return the number of connections acquired from the pool so far.
+	 */
+	public long getReusedConnections() {
+		return reused.get();
+	}
+
+	/**
+	 * @return the number of connections established so far.
+	 */
+	public long getNewConnections() {
+		return created.get();
+	}
+
+	private static Map<String, String> tags(String clientName, String key, String value) {
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("client", clientName);
+		if (key != null) {
+			tags.put(key, value);
+		}
+		return tags;
+	}
+
+	private static Number seconds(final AtomicLong nanos) {
+		return new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return nanos.get() / (double) TimeUnit.SECONDS.toNanos(1);
+			}
+		};
+	}
+
+	/**
+	 * Listener of one call, which may establish several connections through retries and redirects. Its events are
+	 * delivered sequentially.
+	 */
+	private final class Listener extends EventListener {
+
+		private boolean connecting;
+
+		private long connectStart;
+
+		private long secureConnectStart;
+
+		@Override
+		public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+			connecting = true;
+			connectStart = System.nanoTime();
+			secureConnectStart = 0;
+		}
+
+		@Override
+		public void secureConnectStart(Call call) {
+			secureConnectStart = System.nanoTime();
+			recordTcpHandshake(secureConnectStart);
+		}
+
+		@Override
+		public void secureConnectEnd(Call call, Handshake handshake) {
+			tlsHandshakes.incrementAndGet();
+			tlsHandshakeNanos.addAndGet(System.nanoTime() - secureConnectStart);
+		}
+
+		@Override
+		public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+			if (secureConnectStart == 0) {
+				recordTcpHandshake(System.nanoTime());
+			}
+		}
+
+		@Override
+		public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+				IOException ioe) {
+			connecting = false;
+		}
+
+		@Override
+		public void connectionAcquired(Call call, Connection connection) {
+			if (connecting) {
+				created.incrementAndGet();
+				connecting = false;
+			} else {
+				reused.incrementAndGet();
+			}
+		}
+
+		private void recordTcpHandshake(long end) {
+			tcpHandshakes.incrementAndGet();
+			tcpHandshakeNanos.addAndGet(end - connectStart);
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package com.mitobit.retrofit2.spring.metrics;
+
+import java.io.IOException;
+
+import org.springframework.util.Assert;
+
+import com.mitobit.retrofit2.spring.call.CallDecorator;
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.ForwardingCall;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * {@link CallDecoratorFactory} recording the latency, outcome and concurrency of every service method call in the
+ * {@link ServiceMetrics}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class MetricsCallDecoratorFactory implements CallDecoratorFactory {
+
+	private final ServiceMetrics serviceMetrics;
+
+	public MetricsCallDecoratorFactory(ServiceMetrics serviceMetrics) {
+		Assert.notNull(serviceMetrics, "Service metrics must not be null");
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	@Override
+	public CallDecorator create(ServiceMethodDescriptor method) {
+		final ServiceMethodMetrics metrics = serviceMetrics.forMethod(method);
+		return new CallDecorator() {
+			@Override
+			public <R> Call<R> decorate(Call<R> call) {
+				return new MetricsCall<R>(call, metrics);
+			}
+		};
+	}
+
+	private static final class MetricsCall<T> extends ForwardingCall<T> {
+
+		private final ServiceMethodMetrics metrics;
+
+		MetricsCall(Call<T> delegate, ServiceMethodMetrics metrics) {
+			super(delegate);
+			this.metrics = metrics;
+		}
+
+		@Override
+		public Response<T> execute() throws IOException {
+			metrics.callStarted();
+			long start = System.nanoTime();
+			Response<T> response;
+			try {
+				response = delegate.execute();
+			} catch (IOException e) {
+				metrics.callCompleted(System.nanoTime() - start, -1, e);
+				throw e;
+			} catch (RuntimeException e) {
+				metrics.callCompleted(System.nanoTime() - start, -1, e);
+				throw e;
+			}
+			metrics.callCompleted(System.nanoTime() - start, response.code(), null);
+			return response;
+		}
+
+		@Override
+		public void enqueue(final Callback<T> callback) {
+			metrics.callStarted();
+			final long start = System.nanoTime();
+			try {
+				enqueueDelegate(callback, start);
+			} catch (RuntimeException e) {
+				metrics.callCompleted(System.nanoTime() - start, -1, e);
+				throw e;
+			}
+		}
+
+		private void enqueueDelegate(final Callback<T> callback, final long start) {
+			delegate.enqueue(new Callback<T>() {
+				@Override
+				public void onResponse(Call<T> call, Response<T> response) {
+					metrics.callCompleted(System.nanoTime() - start, response.code(), null);
+					callback.onResponse(MetricsCall.this, response);
+				}
+
+				@Override
+				public void onFailure(Call<T> call, Throwable t) {
+					metrics.callCompleted(System.nanoTime() - start, -1, t);
+					callback.onFailure(MetricsCall.this, t);
+				}
+			});
+		}
+
+		@Override
+		public Call<T> clone() {
+			return new MetricsCall<T>(delegate.clone(), metrics);
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+package com.mitobit.retrofit2.spring.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.ImmutableTag;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import org.springframework.util.Assert;
+
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+
+/**
+ * {@link ServiceMetrics} publishing to a Micrometer {@link MeterRegistry}. Service method calls are recorded by the
+ * {@value ServiceMetrics#CALLS} timer, tagged by {@code service}, {@code method}, {@code http.method}, {@code uri},
+ * {@code status} and {@code exception}.
+ * <p>
+ * The recorder of a service method and each gauge or counter are created once: a method loaded again, e.g. when a
+ * refreshable service is rebound, gets the same recorder, and a value registered again under the same name and tags is
+ * ignored, as Micrometer keeps sampling the first one.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class MicrometerServiceMetrics implements ServiceMetrics {
+
+	private static final String[] STATUS_CLASSES = { "NONE", "1xx", "2xx", "3xx", "4xx", "5xx" };
+
+	private final MeterRegistry registry;
+
+	private final ConcurrentMap<ServiceMethodDescriptor, ServiceMethodMetrics> methodMetrics = new ConcurrentHashMap<ServiceMethodDescriptor, ServiceMethodMetrics>();
+
+	// gauges and function counters are weakly referenced by Micrometer
+	private final ConcurrentMap<List<Object>, Number> sampledValues = new ConcurrentHashMap<List<Object>, Number>();
+
+	/**
+	 * Creates a new {@link MicrometerServiceMetrics}.
+	 *
+	 * @param registry the registry to publish to, must not be {@literal null}.
+	 */
+	public MicrometerServiceMetrics(MeterRegistry registry) {
+		Assert.notNull(registry, "MeterRegistry must not be null");
+		this.registry = registry;
+	}
+
+	@Override
+	public ServiceMethodMetrics forMethod(ServiceMethodDescriptor method) {
+		ServiceMethodMetrics metrics = methodMetrics.get(method);
+		if (metrics == null) {
+			synchronized (methodMetrics) {
+				metrics = methodMetrics.get(method);
+				if (metrics == null) {
+					// registers the gauge of the active calls, which must sample a single value
+					metrics = new MicrometerServiceMethodMetrics(method);
+					methodMetrics.put(method, metrics);
+				}
+			}
+		}
+		return metrics;
+	}
+
+	@Override
+	public void gauge(String name, Map<String, String> tags, Number value) {
+		Tags meterTags = toTags(tags);
+		if (sampledValues.putIfAbsent(Arrays.<Object> asList(name, meterTags), value) == null) {
+			registry.gauge(name, meterTags, value);
+		}
+	}
+
+	@Override
+	public void counter(String name, Map<String, String> tags, Number value) {
+		Tags meterTags = toTags(tags);
+		if (sampledValues.putIfAbsent(Arrays.<Object> asList(name, meterTags), value) == null) {
+			registry.more().counter(name, meterTags, value);
+		}
+	}
+
+	private static Tags toTags(Map<String, String> tags) {
+		List<Tag> result = new ArrayList<Tag>(tags.size());
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			result.add(new ImmutableTag(tag.getKey(), tag.getValue()));
+		}
+		return Tags.of(result);
+	}
+
+	private final class MicrometerServiceMethodMetrics implements ServiceMethodMetrics {
+
+		private final Tags tags;
+
+		private final AtomicInteger active = new AtomicInteger();
+
+		private final Timer[] statusTimers = new Timer[STATUS_CLASSES.length];
+
+		private final ConcurrentMap<Class<?>, Timer> exceptionTimers = new ConcurrentHashMap<Class<?>, Timer>();
+
+		MicrometerServiceMethodMetrics(ServiceMethodDescriptor method) {
+			this.tags = Tags.of("service", method.getServiceInterface().getName(), "method", method.getMethod().getName(),
+					"http.method", method.getHttpMethod(), "uri", method.getPathTemplate());
+			for (int i = 1; i < STATUS_CLASSES.length; i++) {
+				statusTimers[i] = registry.timer(CALLS, tags.and("status", STATUS_CLASSES[i], "exception", "None"));
+			}
+			registry.gauge(CALLS_ACTIVE, tags, active);
+		}
+
+		@Override
+		public void callStarted() {
+			active.incrementAndGet();
+		}
+
+		@Override
+		public void callCompleted(long durationNanos, int status, Throwable exception) {
+			active.decrementAndGet();
+			timerFor(status, exception).record(durationNanos, TimeUnit.NANOSECONDS);
+		}
+
+		private Timer timerFor(int status, Throwable exception) {
+			if (exception == null && status >= 100 && status < 600) {
+				return statusTimers[status / 100];
+			}
+			Class<?> exceptionType = exception != null ? exception.getClass() : Void.class;
+			Timer timer = exceptionTimers.get(exceptionType);
+			if (timer == null) {
+				String exceptionName = exception != null ? exceptionType.getSimpleName() : "None";
+				timer = registry.timer(CALLS, tags.and("status", STATUS_CLASSES[0], "exception", exceptionName));
+				exceptionTimers.putIfAbsent(exceptionType, timer);
+			}
+			return timer;
+		}
+	}
+
+}
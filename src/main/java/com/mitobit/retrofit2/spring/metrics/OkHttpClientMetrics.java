@@ -0,0 +1,72 @@
+package com.mitobit.retrofit2.spring.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Registers the gauges of the {@link ConnectionPool} and {@link Dispatcher} of an {@link OkHttpClient}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public abstract class OkHttpClientMetrics {
+
+	private OkHttpClientMetrics() {
+		// hide default constructor
+	}
+
+	/**
+	 * Binds the gauges of the given client, tagged with {@code client} set to the given name.
+	 *
+	 * @param serviceMetrics the metrics to register the gauges with.
+	 * @param clientName the name of the client, usually its bean name.
+	 * @param client the client.
+	 */
+	public static void bind(ServiceMetrics serviceMetrics, String clientName, OkHttpClient client) {
+		final ConnectionPool pool = client.connectionPool();
+		final Dispatcher dispatcher = client.dispatcher();
+		serviceMetrics.gauge(ServiceMetrics.CONNECTIONS, tags(clientName, "total"), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return pool.connectionCount();
+			}
+		});
+		serviceMetrics.gauge(ServiceMetrics.CONNECTIONS, tags(clientName, "idle"), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return pool.idleConnectionCount();
+			}
+		});
+		serviceMetrics.gauge(ServiceMetrics.DISPATCHER_CALLS, tags(clientName, "running"), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return dispatcher.runningCallsCount();
+			}
+		});
+		serviceMetrics.gauge(ServiceMetrics.DISPATCHER_CALLS, tags(clientName, "queued"), new SampledValue() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public double doubleValue() {
+				return dispatcher.queuedCallsCount();
+			}
+		});
+	}
+
+	private static Map<String, String> tags(String clientName, String state) {
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("client", clientName);
+		tags.put("state", state);
+		return tags;
+	}
+
+}
@@ -0,0 +1,28 @@
+package com.mitobit.retrofit2.spring.metrics;
+
+/**
+ * {@link Number} computing its value each time it is sampled, to register with
+ * {@link ServiceMetrics#gauge(String, java.util.Map, Number)} values that are not held in an atomic number.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public abstract class SampledValue extends Number {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public int intValue() {
+		return (int) doubleValue();
+	}
+
+	@Override
+	public long longValue() {
+		return (long) doubleValue();
+	}
+
+	@Override
+	public float floatValue() {
+		return (float) doubleValue();
+	}
+
+}
@@ -0,0 +1,25 @@
+package com.mitobit.retrofit2.spring.metrics;
+
+/**
+ * Records the calls of one service method. Implementations resolve their meters up front so that recording a call
+ * does not allocate.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public interface ServiceMethodMetrics {
+
+	/**
+	 * Invoked when a call is executed or enqueued.
+	 */
+	void callStarted();
+
+	/**
+	 * Invoked when a call completes.
+	 *
+	 * @param durationNanos the call duration in nanoseconds.
+	 * @param status the HTTP status code, or {@code -1} if the call failed with an exception.
+	 * @param exception the exception the call failed with, or {@literal null}.
+	 */
+	void callCompleted(long durationNanos, int status, Throwable exception);
+
+}
@@ -0,0 +1,168 @@
+package com.mitobit.retrofit2.spring.metrics;
+
+import java.util.Map;
+
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+
+/**
+ * Metrics SPI of the Retrofit services, free of any metrics library dependency. Enabled through
+ * {@link com.mitobit.retrofit2.spring.EnableRetrofitServices#metrics()}: the default implementation is
+ * {@link MicrometerServiceMetrics}, a bean named {@code retrofitServiceMetrics} replaces it.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public interface ServiceMetrics {
+
+	/**
+	 * Name of the timer of the service method calls.
+	 */
+	String CALLS = "retrofit.client.calls";
+
+	/**
+	 * Name of the gauge of the in-flight service method calls.
+	 */
+	String CALLS_ACTIVE = "retrofit.client.calls.active";
+
+	/**
+	 * Name of the gauges of the connection pool of the shared client, tagged by {@code state}.
+	 */
+	String CONNECTIONS = "retrofit.client.connections";
+
+	/**
+	 * Name of the counters of the connections acquired by the calls of the shared client, tagged by {@code reused}:
+	 * {@code true} for pooled connections, {@code false} for new ones.
+	 */
+	String CONNECTIONS_ACQUIRED = "retrofit.client.connections.acquired";
+
+	/**
+	 * Name of the gauge of the ratio of the connections acquired by the calls of the shared client that were pooled.
+	 */
+	String CONNECTION_REUSE_RATIO = "retrofit.client.connections.reuse.ratio";
+
+	/**
+	 * Name of the counters of the handshakes of the new connections of the shared client, tagged by {@code phase}:
+	 * {@code tcp} or {@code tls}.
+	 */
+	String CONNECTION_HANDSHAKES = "retrofit.client.connections.handshakes";
+
+	/**
+	 * Name of the counters of the total time, in seconds, spent in the handshakes of the new connections of the shared
+	 * client, tagged by {@code phase}: divided by {@value #CONNECTION_HANDSHAKES} it gives the mean handshake time.
+	 */
+	String CONNECTION_HANDSHAKE_TIME = "retrofit.client.connections.handshake.time";
+
+	/**
+	 * Name of the gauges of the dispatcher of the shared client, tagged by {@code state}.
+	 */
+	String DISPATCHER_CALLS = "retrofit.client.dispatcher.calls";
+
+	/**
+	 * Name of the counters of the calls of the {@code @Coalesce} methods, tagged by {@code call}: {@code upstream} for
+	 * the calls that sent a request, {@code shared} for the ones served by an identical call in flight.
+	 */
+	String COALESCED_CALLS = "retrofit.client.calls.coalesced";
+
+	/**
+	 * Name of the counters of the lookups in the response cache of the {@code @CacheResponse} methods, tagged by
+	 * {@code result}: {@code hit}, {@code stale} or {@code miss}.
+	 */
+	String CACHE_REQUESTS = "retrofit.client.cache.requests";
+
+	/**
+	 * Name of the counter of the responses evicted from the response cache of a {@code @CacheResponse} method.
+	 */
+	String CACHE_EVICTIONS = "retrofit.client.cache.evictions";
+
+	/**
+	 * Name of the gauge of the number of responses in the response cache of a {@code @CacheResponse} method.
+	 */
+	String CACHE_SIZE = "retrofit.client.cache.size";
+
+	/**
+	 * Name of the counters of the requests through an OkHttp disk cache, tagged by {@code cache} and {@code result}:
+	 * {@code hit}, {@code conditional} or {@code network}.
+	 */
+	String HTTP_CACHE_REQUESTS = "retrofit.client.http.cache.requests";
+
+	/**
+	 * Name of the gauge of the requests in flight to a server of a load balanced service, tagged by {@code service}
+	 * and {@code endpoint}.
+	 */
+	String ENDPOINT_REQUESTS_ACTIVE = "retrofit.client.endpoint.requests.active";
+
+	/**
+	 * Name of the counter of the ejections of a server of a load balanced service after consecutive failures, tagged
+	 * by {@code service} and {@code endpoint}.
+	 */
+	String ENDPOINT_EJECTIONS = "retrofit.client.endpoint.ejections";
+
+	/**
+	 * Name of the gauge of the concurrency limit of a {@code @Bulkhead} service.
+	 */
+	String BULKHEAD_LIMIT = "retrofit.client.bulkhead.limit";
+
+	/**
+	 * Name of the gauge of the calls in flight of a {@code @Bulkhead} service, counted against its limit.
+	 */
+	String BULKHEAD_CALLS_ACTIVE = "retrofit.client.bulkhead.calls.active";
+
+	/**
+	 * Name of the counter of the calls of a {@code @Bulkhead} service rejected because its limit was reached.
+	 */
+	String BULKHEAD_REJECTIONS = "retrofit.client.bulkhead.rejections";
+
+	/**
+	 * Name of the counter of the retries of the calls of a {@code @Retry} method.
+	 */
+	String RETRIES = "retrofit.client.calls.retries";
+
+	/**
+	 * Name of the counters of the hedged requests of a {@code @Hedge} method, tagged by {@code result}: {@code sent}
+	 * for the hedged requests sent, {@code won} for the ones whose response arrived first.
+	 */
+	String HEDGES = "retrofit.client.calls.hedges";
+
+	/**
+	 * Name of the counter of the retries and hedged requests of a service refused by its retry budget.
+	 */
+	String RETRY_BUDGET_EXHAUSTED = "retrofit.client.retry.budget.exhausted";
+
+	/**
+	 * Name of the counter of the traced calls of a service method.
+	 */
+	String TRACED_CALLS = "retrofit.client.calls.traced";
+
+	/**
+	 * Name of the counters of the total time, in seconds, the traced calls of a service method spent in each phase,
+	 * tagged by {@code phase}: divided by {@value #TRACED_CALLS} it gives the mean time of the phase.
+	 */
+	String CALL_PHASE_TIME = "retrofit.client.calls.phase.time";
+
+	/**
+	 * Returns the recorder of the given service method, invoked when the method is parsed: again for the same method
+	 * when a refreshable service is rebound, which must get the same recorder.
+	 *
+	 * @param method the service method, never {@literal null}.
+	 * @return the recorder, never {@literal null}.
+	 */
+	ServiceMethodMetrics forMethod(ServiceMethodDescriptor method);
+
+	/**
+	 * Registers a gauge sampling the given value.
+	 *
+	 * @param name the gauge name.
+	 * @param tags the gauge tags, never {@literal null}.
+	 * @param value the sampled value, strongly referenced by the implementation.
+	 */
+	void gauge(String name, Map<String, String> tags, Number value);
+
+	/**
+	 * Registers a monotonic counter sampling the given value.
+	 *
+	 * @param name the counter name.
+	 * @param tags the counter tags, never {@literal null}.
+	 * @param value the sampled value, strongly referenced by the implementation.
+	 */
+	void counter(String name, Map<String, String> tags, Number value);
+
+}
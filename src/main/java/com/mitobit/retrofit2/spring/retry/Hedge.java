@@ -0,0 +1,39 @@
+package com.mitobit.retrofit2.spring.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Hedges the calls of an idempotent method of a {@code RetrofitService}: a {@code GET}, {@code HEAD}, {@code PUT},
+ * {@code DELETE} or {@code OPTIONS} method. When a call has not received its response after a delay, the
+ * {@link #percentile()} of the recent latencies of the method, a second identical request is sent and the first
+ * response wins; the other request is canceled. Hedged requests are taken from the {@link RetryBudget} of the service,
+ * which bounds the extra load.
+ * <p>
+ * Hedged calls always run on the dispatcher of the client, {@code execute()} included. On the service interface,
+ * applies to all its idempotent methods; on a method, replaces the one of the interface.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see RetryingCallDecoratorFactory
+ */
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Hedge {
+
+	/**
+	 * Percentile of the recent latencies of the method after which the second request is sent, between 0 and 100.
+	 * Zero always waits for {@link #delay()}.
+	 */
+	double percentile() default 95;
+
+	/**
+	 * Delay in milliseconds after which the second request is sent while too few latencies have been recorded, or
+	 * always when {@link #percentile()} is zero.
+	 */
+	long delay() default 100;
+
+}
@@ -0,0 +1,61 @@
+package com.mitobit.retrofit2.spring.retry;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The latencies of the last calls of a method in a ring buffer, written without locking. Percentiles are recomputed
+ * every {@value #REFRESH_INTERVAL} samples rather than on every read.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+final class LatencyWindow {
+
+	static final int SIZE = 512;
+
+	/**
+	 * Number of samples below which no percentile is computed.
+	 */
+	static final int MIN_SAMPLES = 64;
+
+	static final int REFRESH_INTERVAL = 64;
+
+	private final double percentile;
+
+	private final AtomicLongArray samples = new AtomicLongArray(SIZE);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private volatile long value = -1;
+
+	LatencyWindow(double percentile) {
+		this.percentile = percentile;
+	}
+
+	void record(long nanos) {
+		long n = count.getAndIncrement();
+		samples.set((int) (n % SIZE), nanos);
+		if (n + 1 >= MIN_SAMPLES && (n + 1) % REFRESH_INTERVAL == 0) {
+			value = compute((int) Math.min(n + 1, SIZE));
+		}
+	}
+
+	/**
+	 * @return the percentile in nanoseconds, or {@code -1} while too few latencies have been recorded.
+	 */
+	long getValue() {
+		return value;
+	}
+
+	private long compute(int size) {
+		long[] sorted = new long[size];
+		for (int i = 0; i < size; i++) {
+			sorted[i] = samples.get(i);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(percentile / 100 * size) - 1;
+		return sorted[Math.max(0, Math.min(index, size - 1))];
+	}
+
+}
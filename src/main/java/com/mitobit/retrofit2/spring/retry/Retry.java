@@ -0,0 +1,56 @@
+package com.mitobit.retrofit2.spring.retry;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Retries the failed calls of an idempotent method of a {@code RetrofitService}: a {@code GET}, {@code HEAD},
+ * {@code PUT}, {@code DELETE} or {@code OPTIONS} method. A call is retried when it fails with an {@link java.io.IOException}
+ * or receives one of the {@link #retryOn()} status codes, after an exponential backoff with jitter, as long as the
+ * {@link RetryBudget} of the service allows it.
+ * <p>
+ * On the service interface, applies to all its idempotent methods; on a method, replaces the one of the interface.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see RetryingCallDecoratorFactory
+ */
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Retry {
+
+	/**
+	 * Maximum number of attempts of a call, the first one included.
+	 */
+	int maxAttempts() default 3;
+
+	/**
+	 * Backoff in milliseconds before the first retry.
+	 */
+	long backoff() default 100;
+
+	/**
+	 * Factor the backoff is multiplied by at each retry.
+	 */
+	double multiplier() default 2.0;
+
+	/**
+	 * Upper bound in milliseconds of the backoff.
+	 */
+	long maxBackoff() default 2000;
+
+	/**
+	 * Fraction of the backoff randomly taken off each wait, between 0 and 1, so that the calls failed together are
+	 * not retried together.
+	 */
+	double jitter() default 0.5;
+
+	/**
+	 * Status codes of the responses to retry.
+	 */
+	int[] retryOn() default { 502, 503, 504 };
+
+}
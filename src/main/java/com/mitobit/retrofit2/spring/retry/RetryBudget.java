@@ -0,0 +1,131 @@
+package com.mitobit.retrofit2.spring.retry;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * Bounds the retries and hedged requests of a service relative to its calls, so that an upstream already failing is
+ * not overwhelmed by them. Within a sliding window of {@value #WINDOW} milliseconds, the service may send
+ * {@code minRetriesPerSecond} retries per second plus {@code ratio} retries per call.
+ * <p>
+ * The window is made of one-second buckets, each swapped atomically for a new one when its second is over, so that
+ * the calls and retries of a second are always counted together and no burst of retries follows the end of a window.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public final class RetryBudget {
+
+	/**
+	 * Length in milliseconds of the window the retries are counted in.
+	 */
+	public static final long WINDOW = 10 * 1000L;
+
+	private static final int BUCKETS = 10;
+
+	private static final long BUCKET_LENGTH = WINDOW / BUCKETS;
+
+	private final double ratio;
+
+	private final long minRetries;
+
+	private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<Bucket>(BUCKETS);
+
+	final AtomicLong exhausted = new AtomicLong();
+
+	/**
+	 * Creates a new {@link RetryBudget}.
+	 *
+	 * @param ratio the retries allowed per call, e.g. {@code 0.2} for one retry every five calls.
+	 * @param minRetriesPerSecond the retries allowed per second regardless of the calls, so that a service seldom called
+	 *            can still retry.
+	 */
+	public RetryBudget(double ratio, int minRetriesPerSecond) {
+		Assert.isTrue(ratio >= 0, "Ratio must not be negative");
+		Assert.isTrue(minRetriesPerSecond >= 0, "Min retries per second must not be negative");
+		this.ratio = ratio;
+		this.minRetries = minRetriesPerSecond * WINDOW / 1000;
+	}
+
+	/**
+	 * Records a call, increasing the budget.
+	 */
+	public void onCall() {
+		bucket(System.currentTimeMillis() / BUCKET_LENGTH).calls.incrementAndGet();
+	}
+
+	/**
+	 * Withdraws a retry from the budget.
+	 *
+	 * @return whether the budget allows the retry.
+	 */
+	public boolean tryRetry() {
+		long second = System.currentTimeMillis() / BUCKET_LENGTH;
+		Bucket current = bucket(second);
+		long calls = 0;
+		long earlierRetries = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			Bucket bucket = buckets.get(i);
+			if (bucket != null && second - bucket.second < BUCKETS) {
+				calls += bucket.calls.get();
+				if (bucket != current) {
+					earlierRetries += bucket.retries.get();
+				}
+			}
+		}
+		long allowed = minRetries + (long) (ratio * calls) - earlierRetries;
+		while (true) {
+			long retries = current.retries.get();
+			if (retries >= allowed) {
+				exhausted.incrementAndGet();
+				return false;
+			}
+			if (current.retries.compareAndSet(retries, retries + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of retries refused so far.
+	 */
+	public long getExhausted() {
+		return exhausted.get();
+	}
+
+	/**
+	 * Returns the bucket of the given second, replacing the one of an earlier second in its slot.
+	 */
+	private Bucket bucket(long second) {
+		int index = (int) (second % BUCKETS);
+		while (true) {
+			Bucket bucket = buckets.get(index);
+			if (bucket != null && bucket.second >= second) {
+				// a later one when this thread read the clock just before the second changed
+				return bucket;
+			}
+			Bucket created = new Bucket(second);
+			if (buckets.compareAndSet(index, bucket, created)) {
+				return created;
+			}
+		}
+	}
+
+	/**
+	 * The calls and retries of one second.
+	 */
+	private static final class Bucket {
+
+		private final long second;
+
+		private final AtomicLong calls = new AtomicLong();
+
+		private final AtomicLong retries = new AtomicLong();
+
+		Bucket(long second) {
+			this.second = second;
+		}
+	}
+
+}
@@ -0,0 +1,601 @@
+package com.mitobit.retrofit2.spring.retry;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.ResponseBody;
+
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import com.mitobit.retrofit2.spring.bulkhead.BulkheadFullException;
+import com.mitobit.retrofit2.spring.call.CallDecorator;
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.ForwardingCall;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * {@link CallDecoratorFactory} retrying the calls of the methods annotated with {@link Retry} and hedging the ones of
+ * the methods annotated with {@link Hedge}, directly or through their service interface. A method with both retries
+ * its hedged calls. Retries and hedged requests of all the methods of a service are drawn from one
+ * {@link RetryBudget}; backoffs and hedging delays are timed by the given scheduler.
+ * <p>
+ * Calls failed with a {@link BulkheadFullException}, or canceled, are not retried. When {@link ServiceMetrics} are
+ * given, the {@value ServiceMetrics#RETRIES} counter and the {@value ServiceMetrics#HEDGES} counters, tagged by
+ * {@code result} ({@code sent} or {@code won}), of each method are registered, as well as the
+ * {@value ServiceMetrics#RETRY_BUDGET_EXHAUSTED} counter of the service.
+ * <p>
+ * The latencies and counters of a method are kept when the method is loaded again, e.g. when a refreshable service is
+ * rebound.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class RetryingCallDecoratorFactory implements CallDecoratorFactory {
+
+	private static final Set<String> IDEMPOTENT_METHODS = Collections.unmodifiableSet(new HashSet<String>(
+			Arrays.asList("GET", "HEAD", "PUT", "DELETE", "OPTIONS")));
+
+	private final RetryBudget budget;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final ServiceMetrics serviceMetrics;
+
+	private final AtomicBoolean budgetRegistered = new AtomicBoolean();
+
+	private final ConcurrentMap<ServiceMethodDescriptor, Policy> policies = new ConcurrentHashMap<ServiceMethodDescriptor, Policy>();
+
+	/**
+	 * Creates a new {@link RetryingCallDecoratorFactory}.
+	 *
+	 * @param budget the retry budget of the service, must not be {@literal null}.
+	 * @param scheduler the scheduler timing the backoffs and the hedging delays, must not be {@literal null}.
+	 * @param serviceMetrics the metrics to publish the retry counters to, may be {@literal null}.
+	 */
+	public RetryingCallDecoratorFactory(RetryBudget budget, ScheduledExecutorService scheduler,
+			ServiceMetrics serviceMetrics) {
+		Assert.notNull(budget, "Retry budget must not be null");
+		Assert.notNull(scheduler, "Scheduler must not be null");
+		this.budget = budget;
+		this.scheduler = scheduler;
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * @param serviceInterface the service interface.
+	 * @return whether the given interface, or any of its methods, is annotated with {@link Retry} or {@link Hedge}.
+	 */
+	public static boolean isRetrying(Class<?> serviceInterface) {
+		if (serviceInterface.isAnnotationPresent(Retry.class) || serviceInterface.isAnnotationPresent(Hedge.class)) {
+			return true;
+		}
+		for (Method method : serviceInterface.getMethods()) {
+			if (method.isAnnotationPresent(Retry.class) || method.isAnnotationPresent(Hedge.class)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public CallDecorator create(ServiceMethodDescriptor method) {
+		Retry retry = method.getAnnotation(Retry.class);
+		Hedge hedge = method.getAnnotation(Hedge.class);
+		boolean idempotent = IDEMPOTENT_METHODS.contains(method.getHttpMethod());
+		if (!idempotent && (retry != null || hedge != null)) {
+			throw new IllegalArgumentException("@Retry and @Hedge require an idempotent method: " + method);
+		}
+		if (idempotent && retry == null) {
+			retry = method.getServiceInterface().getAnnotation(Retry.class);
+		}
+		if (idempotent && hedge == null) {
+			hedge = method.getServiceInterface().getAnnotation(Hedge.class);
+		}
+		if (retry == null && hedge == null) {
+			return null;
+		}
+		Policy policy = policies.get(method);
+		if (policy == null) {
+			Policy created = new Policy(retry, hedge, budget, scheduler);
+			policy = policies.putIfAbsent(method, created);
+			if (policy == null) {
+				policy = created;
+				if (serviceMetrics != null) {
+					registerMetrics(method, policy);
+				}
+			}
+		}
+		return policy;
+	}
+
+	private void registerMetrics(ServiceMethodDescriptor method, Policy policy) {
+		if (budgetRegistered.compareAndSet(false, true)) {
+			serviceMetrics.counter(ServiceMetrics.RETRY_BUDGET_EXHAUSTED,
+					Collections.singletonMap("service", method.getServiceInterface().getName()), budget.exhausted);
+		}
+		if (policy.retry != null) {
+			serviceMetrics.counter(ServiceMetrics.RETRIES, tags(method, null), policy.retries);
+		}
+		if (policy.hedge != null) {
+			serviceMetrics.counter(ServiceMetrics.HEDGES, tags(method, "sent"), policy.hedgesSent);
+			serviceMetrics.counter(ServiceMetrics.HEDGES, tags(method, "won"), policy.hedgesWon);
+		}
+	}
+
+	private static Map<String, String> tags(ServiceMethodDescriptor method, String result) {
+		Map<String, String> tags = new LinkedHashMap<String, String>();
+		tags.put("service", method.getServiceInterface().getName());
+		tags.put("method", method.getMethod().getName());
+		if (result != null) {
+			tags.put("result", result);
+		}
+		return tags;
+	}
+
+	private static void closeQuietly(Response<?> response) {
+		ResponseBody body = response.errorBody();
+		if (body != null) {
+			body.close();
+		}
+	}
+
+	/**
+	 * The retry and hedging settings and state of one service method.
+	 */
+	private static final class Policy implements CallDecorator {
+
+		private final Retry retry;
+
+		private final Hedge hedge;
+
+		private final RetryBudget budget;
+
+		private final ScheduledExecutorService scheduler;
+
+		private final LatencyWindow latencies;
+
+		private final AtomicLong retries = new AtomicLong();
+
+		private final AtomicLong hedgesSent = new AtomicLong();
+
+		private final AtomicLong hedgesWon = new AtomicLong();
+
+		Policy(Retry retry, Hedge hedge, RetryBudget budget, ScheduledExecutorService scheduler) {
+			this.retry = retry;
+			this.hedge = hedge;
+			this.budget = budget;
+			this.scheduler = scheduler;
+			this.latencies = hedge != null && hedge.percentile() > 0 ? new LatencyWindow(hedge.percentile()) : null;
+		}
+
+		@Override
+		public <R> Call<R> decorate(Call<R> call) {
+			Call<R> result = hedge != null ? new HedgingCall<R>(call, this) : call;
+			return retry != null ? new RetryingCall<R>(result, this) : result;
+		}
+
+		ScheduledFuture<?> schedule(Runnable task, long delay) {
+			return scheduler.schedule(task, delay, TimeUnit.MILLISECONDS);
+		}
+
+		boolean shouldRetry(Response<?> response, int attempt) {
+			if (attempt >= retry.maxAttempts()) {
+				return false;
+			}
+			for (int code : retry.retryOn()) {
+				if (code == response.code()) {
+					return takeRetry();
+				}
+			}
+			return false;
+		}
+
+		boolean shouldRetry(Throwable t, int attempt) {
+			return t instanceof IOException && !(t instanceof BulkheadFullException) && attempt < retry.maxAttempts()
+					&& takeRetry();
+		}
+
+		private boolean takeRetry() {
+			if (budget.tryRetry()) {
+				retries.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * @return the backoff in milliseconds after the given attempt.
+		 */
+		long backoff(int attempt) {
+			double backoff = Math.min(retry.backoff() * Math.pow(retry.multiplier(), attempt - 1), retry.maxBackoff());
+			double jitter = Math.max(0, Math.min(retry.jitter(), 1));
+			return (long) (backoff * (1 - jitter * ThreadLocalRandom.current().nextDouble()));
+		}
+
+		/**
+		 * @return the hedging delay in milliseconds.
+		 */
+		long hedgeDelay() {
+			long percentile = latencies != null ? latencies.getValue() : -1;
+			return percentile >= 0 ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(percentile)) : hedge.delay();
+		}
+
+		void recordLatency(long nanos) {
+			if (latencies != null) {
+				latencies.record(nanos);
+			}
+		}
+	}
+
+	private static final class RetryingCall<T> extends ForwardingCall<T> {
+
+		private final Policy policy;
+
+		private final AtomicBoolean executed = new AtomicBoolean();
+
+		private volatile boolean canceled;
+
+		private volatile Call<T> current;
+
+		private volatile ScheduledFuture<?> pendingRetry;
+
+		private volatile Callback<T> callback;
+
+		RetryingCall(Call<T> delegate, Policy policy) {
+			super(delegate);
+			this.policy = policy;
+		}
+
+		@Override
+		public Response<T> execute() throws IOException {
+			start();
+			Call<T> call = delegate;
+			for (int attempt = 1;; attempt++) {
+				current = call;
+				if (canceled) {
+					call.cancel();
+				}
+				try {
+					Response<T> response = call.execute();
+					if (canceled || !policy.shouldRetry(response, attempt)) {
+						return response;
+					}
+					closeQuietly(response);
+				} catch (IOException e) {
+					if (canceled || !policy.shouldRetry(e, attempt)) {
+						throw e;
+					}
+				}
+				try {
+					Thread.sleep(policy.backoff(attempt));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting to retry");
+				}
+				if (canceled) {
+					throw new IOException("Canceled");
+				}
+				call = call.clone();
+			}
+		}
+
+		@Override
+		public void enqueue(Callback<T> callback) {
+			start();
+			this.callback = callback;
+			attempt(delegate, 1);
+		}
+
+		private void start() {
+			if (!executed.compareAndSet(false, true)) {
+				throw new IllegalStateException("Already executed.");
+			}
+			policy.budget.onCall();
+		}
+
+		private void attempt(final Call<T> call, final int attempt) {
+			current = call;
+			if (canceled) {
+				call.cancel();
+			}
+			call.enqueue(new Callback<T>() {
+				@Override
+				public void onResponse(Call<T> c, Response<T> response) {
+					if (!canceled && policy.shouldRetry(response, attempt)) {
+						closeQuietly(response);
+						retryLater(call, attempt);
+					} else {
+						callback.onResponse(RetryingCall.this, response);
+					}
+				}
+
+				@Override
+				public void onFailure(Call<T> c, Throwable t) {
+					if (!canceled && policy.shouldRetry(t, attempt)) {
+						retryLater(call, attempt);
+					} else {
+						callback.onFailure(RetryingCall.this, t);
+					}
+				}
+			});
+		}
+
+		private void retryLater(final Call<T> call, final int attempt) {
+			pendingRetry = policy.schedule(new Runnable() {
+				@Override
+				public void run() {
+					attempt(call.clone(), attempt + 1);
+				}
+			}, policy.backoff(attempt));
+			if (canceled) {
+				cancelPendingRetry();
+			}
+		}
+
+		private void cancelPendingRetry() {
+			ScheduledFuture<?> retry = pendingRetry;
+			if (retry != null && retry.cancel(false)) {
+				callback.onFailure(this, new IOException("Canceled"));
+			}
+		}
+
+		@Override
+		public boolean isExecuted() {
+			return executed.get();
+		}
+
+		@Override
+		public void cancel() {
+			canceled = true;
+			Call<T> call = current;
+			if (call != null) {
+				call.cancel();
+			} else {
+				delegate.cancel();
+			}
+			cancelPendingRetry();
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return canceled;
+		}
+
+		@Override
+		public Call<T> clone() {
+			return new RetryingCall<T>(delegate.clone(), policy);
+		}
+	}
+
+	private static final class HedgingCall<T> extends ForwardingCall<T> {
+
+		private final Policy policy;
+
+		private final AtomicBoolean executed = new AtomicBoolean();
+
+		private final List<Call<T>> attempts = new CopyOnWriteArrayList<Call<T>>();
+
+		private volatile boolean canceled;
+
+		private Callback<T> callback;
+
+		// guarded by this
+		private boolean done;
+
+		private int inFlight;
+
+		private ScheduledFuture<?> timer;
+
+		HedgingCall(Call<T> delegate, Policy policy) {
+			super(delegate);
+			this.policy = policy;
+		}
+
+		/**
+		 * Sends the first request on the calling thread, so that it is not queued behind the asynchronous calls of the
+		 * dispatcher, and only the hedged one through it. Once the first request fails, the call waits for the hedged
+		 * one, if sent.
+		 */
+		@Override
+		public Response<T> execute() throws IOException {
+			final SettableListenableFuture<Response<T>> result = new SettableListenableFuture<Response<T>>();
+			start(new Callback<T>() {
+				@Override
+				public void onResponse(Call<T> call, Response<T> response) {
+					result.set(response);
+				}
+
+				@Override
+				public void onFailure(Call<T> call, Throwable t) {
+					result.setException(t);
+				}
+			});
+			attempts.add(delegate);
+			if (canceled) {
+				delegate.cancel();
+			}
+			long start = System.nanoTime();
+			try {
+				complete(delegate, delegate.execute(), false, start);
+			} catch (IOException e) {
+				fail(e);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+			try {
+				return result.get();
+			} catch (InterruptedException e) {
+				cancel();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a hedged call");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new IOException(cause);
+			}
+		}
+
+		@Override
+		public void enqueue(Callback<T> callback) {
+			start(callback);
+			launch(delegate, false);
+		}
+
+		private void start(Callback<T> callback) {
+			if (!executed.compareAndSet(false, true)) {
+				throw new IllegalStateException("Already executed.");
+			}
+			if (policy.retry == null) {
+				// otherwise the retrying call records the call once, not each of its attempts
+				policy.budget.onCall();
+			}
+			this.callback = callback;
+			synchronized (this) {
+				inFlight = 1;
+				timer = policy.schedule(new Runnable() {
+					@Override
+					public void run() {
+						hedge();
+					}
+				}, policy.hedgeDelay());
+			}
+		}
+
+		private void hedge() {
+			Call<T> hedged;
+			synchronized (this) {
+				if (done || canceled || !policy.budget.tryRetry()) {
+					return;
+				}
+				inFlight++;
+				hedged = delegate.clone();
+			}
+			policy.hedgesSent.incrementAndGet();
+			launch(hedged, true);
+		}
+
+		private void launch(Call<T> call, final boolean hedged) {
+			attempts.add(call);
+			if (canceled) {
+				call.cancel();
+			}
+			final long start = System.nanoTime();
+			call.enqueue(new Callback<T>() {
+				@Override
+				public void onResponse(Call<T> c, Response<T> response) {
+					complete(c, response, hedged, start);
+				}
+
+				@Override
+				public void onFailure(Call<T> c, Throwable t) {
+					fail(t);
+				}
+			});
+		}
+
+		/**
+		 * Completes this call with the response of the given request if first, canceling the other one.
+		 */
+		private void complete(Call<T> call, Response<T> response, boolean hedged, long start) {
+			policy.recordLatency(System.nanoTime() - start);
+			synchronized (this) {
+				inFlight--;
+				if (done) {
+					closeQuietly(response);
+					return;
+				}
+				done = true;
+				timer.cancel(false);
+			}
+			if (hedged) {
+				policy.hedgesWon.incrementAndGet();
+			}
+			for (Call<T> attempt : attempts) {
+				if (attempt != call) {
+					attempt.cancel();
+				}
+			}
+			callback.onResponse(this, response);
+		}
+
+		/**
+		 * Fails this call with the failure of the last request in flight.
+		 */
+		private void fail(Throwable t) {
+			synchronized (this) {
+				inFlight--;
+				if (done || inFlight > 0) {
+					// the other request may still succeed
+					return;
+				}
+				done = true;
+				timer.cancel(false);
+			}
+			callback.onFailure(this, t);
+		}
+
+		@Override
+		public boolean isExecuted() {
+			return executed.get();
+		}
+
+		@Override
+		public void cancel() {
+			canceled = true;
+			synchronized (this) {
+				if (timer != null) {
+					timer.cancel(false);
+				}
+			}
+			if (attempts.isEmpty()) {
+				delegate.cancel();
+			}
+			for (Call<T> attempt : attempts) {
+				attempt.cancel();
+			}
+		}
+
+		@Override
+		public boolean isCanceled() {
+			return canceled;
+		}
+
+		@Override
+		public Call<T> clone() {
+			return new HedgingCall<T>(delegate.clone(), policy);
+		}
+	}
+
+}
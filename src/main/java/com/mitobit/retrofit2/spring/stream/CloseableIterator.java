@@ -0,0 +1,17 @@
+package com.mitobit.retrofit2.spring.stream;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * {@link Iterator} over the elements of a response body parsed one at a time, returned by the service methods of a
+ * streaming service. The underlying response is released once the last element is read; callers that stop earlier
+ * must {@link #close()} the iterator.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @param <T> the element type
+ * @see StreamingJacksonConverterFactory
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+}
@@ -0,0 +1,215 @@
+package com.mitobit.retrofit2.spring.stream;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+
+import org.springframework.util.Assert;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * {@link Converter.Factory} streaming JSON arrays with the Jackson streaming parser, so that memory use does not depend
+ * on the payload size. Response bodies declared as {@link CloseableIterator CloseableIterator&lt;T&gt;} or
+ * {@link Iterator Iterator&lt;T&gt;} are parsed one element at a time while iterating; request bodies declared as
+ * {@link Iterator Iterator&lt;T&gt;} are written one element at a time, in chunked transfer encoding. All the other
+ * types are left to the next converter factory.
+ * <p>
+ * A streamed request body can only be written once: a request that OkHttp needs to resend fails.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class StreamingJacksonConverterFactory extends Converter.Factory {
+
+	private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8");
+
+	private final ObjectMapper mapper;
+
+	private StreamingJacksonConverterFactory(ObjectMapper mapper) {
+		Assert.notNull(mapper, "ObjectMapper must not be null");
+		this.mapper = mapper;
+	}
+
+	/**
+	 * Creates an instance using a default {@link ObjectMapper}.
+	 */
+	public static StreamingJacksonConverterFactory create() {
+		return create(new ObjectMapper());
+	}
+
+	/**
+	 * Creates an instance using the given {@link ObjectMapper}.
+	 */
+	public static StreamingJacksonConverterFactory create(ObjectMapper mapper) {
+		return new StreamingJacksonConverterFactory(mapper);
+	}
+
+	@Override
+	public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+		Type elementType = elementType(type, CloseableIterator.class);
+		if (elementType == null) {
+			elementType = elementType(type, Iterator.class);
+		}
+		if (elementType == null) {
+			return null;
+		}
+		return new IteratorResponseBodyConverter<Object>(mapper.readerFor(mapper.constructType(elementType)));
+	}
+
+	@Override
+	public Converter<?, RequestBody> requestBodyConverter(Type type, Annotation[] parameterAnnotations,
+			Annotation[] methodAnnotations, Retrofit retrofit) {
+		Type elementType = elementType(type, Iterator.class);
+		if (elementType == null) {
+			return null;
+		}
+		// the sink is flushed by OkHttp as its buffer fills, not after each element
+		ObjectWriter writer = mapper.writerFor(mapper.constructType(elementType))
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		return new IteratorRequestBodyConverter<Object>(writer);
+	}
+
+	private static Type elementType(Type type, Class<?> rawType) {
+		if (!(type instanceof ParameterizedType) || ((ParameterizedType) type).getRawType() != rawType) {
+			return null;
+		}
+		return ((ParameterizedType) type).getActualTypeArguments()[0];
+	}
+
+	private static final class IteratorResponseBodyConverter<T> implements Converter<ResponseBody, CloseableIterator<T>> {
+
+		private final ObjectReader reader;
+
+		IteratorResponseBodyConverter(ObjectReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public CloseableIterator<T> convert(ResponseBody value) throws IOException {
+			try {
+				// a root array is unwrapped, its elements are read on demand
+				MappingIterator<T> elements = reader.readValues(value.byteStream());
+				return new ResponseBodyIterator<T>(elements, value);
+			} catch (IOException e) {
+				value.close();
+				throw e;
+			} catch (RuntimeException e) {
+				value.close();
+				throw e;
+			}
+		}
+	}
+
+	private static final class ResponseBodyIterator<T> implements CloseableIterator<T> {
+
+		private final MappingIterator<T> elements;
+
+		private final ResponseBody body;
+
+		ResponseBodyIterator(MappingIterator<T> elements, ResponseBody body) {
+			this.elements = elements;
+			this.body = body;
+		}
+
+		@Override
+		public boolean hasNext() {
+			// closes the parser, and the body stream with it, at the end of the array
+			return elements.hasNext();
+		}
+
+		@Override
+		public T next() {
+			return elements.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove");
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				elements.close();
+			} finally {
+				body.close();
+			}
+		}
+	}
+
+	private static final class IteratorRequestBodyConverter<T> implements Converter<Iterator<T>, RequestBody> {
+
+		private final ObjectWriter writer;
+
+		IteratorRequestBodyConverter(ObjectWriter writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public RequestBody convert(Iterator<T> value) throws IOException {
+			return new IteratorRequestBody<T>(writer, value);
+		}
+	}
+
+	private static final class IteratorRequestBody<T> extends RequestBody {
+
+		private final ObjectWriter writer;
+
+		private final Iterator<T> elements;
+
+		private final AtomicBoolean written = new AtomicBoolean();
+
+		IteratorRequestBody(ObjectWriter writer, Iterator<T> elements) {
+			this.writer = writer;
+			this.elements = elements;
+		}
+
+		@Override
+		public MediaType contentType() {
+			return MEDIA_TYPE;
+		}
+
+		@Override
+		public long contentLength() throws IOException {
+			return -1;
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException {
+			if (!written.compareAndSet(false, true)) {
+				throw new IOException("A streamed request body can only be written once");
+			}
+			JsonGenerator generator = writer.getFactory().createGenerator(sink.outputStream());
+			// the sink belongs to OkHttp
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			try {
+				SequenceWriter sequence = writer.writeValuesAsArray(generator);
+				while (elements.hasNext()) {
+					sequence.write(elements.next());
+				}
+				sequence.close();
+			} finally {
+				// flushes the buffered tail, the sequence does not close a generator it was given
+				generator.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * {@link SpanExporter} keeping the latest spans in memory, for tests and diagnostics endpoints.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class InMemorySpanExporter implements SpanExporter {
+
+	private final int capacity;
+
+	private final Deque<Span> spans = new ArrayDeque<Span>();
+
+	/**
+	 * Creates a new {@link InMemorySpanExporter} keeping the latest 1000 spans.
+	 */
+	public InMemorySpanExporter() {
+		this(1000);
+	}
+
+	/**
+	 * Creates a new {@link InMemorySpanExporter}.
+	 *
+	 * @param capacity the number of spans kept, the oldest being dropped, must be positive.
+	 */
+	public InMemorySpanExporter(int capacity) {
+		Assert.isTrue(capacity > 0, "Capacity must be positive");
+		this.capacity = capacity;
+	}
+
+	@Override
+	public synchronized void export(Span span) {
+		if (spans.size() == capacity) {
+			spans.removeFirst();
+		}
+		spans.addLast(span);
+	}
+
+	/**
+	 * @return the spans kept, oldest first.
+	 */
+	public synchronized List<Span> getSpans() {
+		return new ArrayList<Span>(spans);
+	}
+
+	/**
+	 * Returns the spans kept of the given service interface.
+	 *
+	 * @param serviceInterface the service interface.
+	 * @return the spans, oldest first.
+	 */
+	public synchronized List<Span> getSpans(Class<?> serviceInterface) {
+		List<Span> result = new ArrayList<Span>();
+		for (Span span : spans) {
+			if (span.getMethod().getServiceInterface().equals(serviceInterface)) {
+				result.add(span);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the spans kept.
+	 */
+	public synchronized void clear() {
+		spans.clear();
+	}
+
+}
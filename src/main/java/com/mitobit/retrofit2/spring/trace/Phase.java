@@ -0,0 +1,61 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import java.util.Locale;
+
+/**
+ * The phases the duration of a traced call is broken down into. They do not overlap: their sum is the duration of the
+ * call, but for the time spent between the phases by the caller.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see Span#getPhaseNanos(Phase)
+ */
+public enum Phase {
+
+	/**
+	 * Waiting for the dispatcher, for asynchronous calls, and looking up a pooled connection.
+	 */
+	QUEUE,
+
+	/**
+	 * Resolving the host name of a new connection.
+	 */
+	DNS,
+
+	/**
+	 * Establishing the TCP connection, and the proxy tunnel, of a new connection.
+	 */
+	CONNECT,
+
+	/**
+	 * The TLS handshake of a new connection.
+	 */
+	TLS,
+
+	/**
+	 * Writing the request headers and body.
+	 */
+	SEND,
+
+	/**
+	 * Waiting for the response headers once the request is sent: the server time plus a round trip.
+	 */
+	WAIT,
+
+	/**
+	 * Reading the response, but for the body read while deserializing it.
+	 */
+	RECEIVE,
+
+	/**
+	 * Converting the response body, including reading the body streamed to the converter.
+	 */
+	DESERIALIZE;
+
+	/**
+	 * @return the name of the phase in metric tags, e.g. {@code dns}.
+	 */
+	public String getTagValue() {
+		return name().toLowerCase(Locale.ENGLISH);
+	}
+
+}
@@ -0,0 +1,159 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+
+/**
+ * The record of one traced call of a service method: one HTTP exchange, with its redirects and connection retries.
+ * Each retry and hedged request of a call gets its own span. Spans are handed to the {@link SpanExporter}s once
+ * complete and are not modified afterwards.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public final class Span {
+
+	private final ServiceMethodDescriptor method;
+
+	private final TraceContext context;
+
+	private final String parentSpanId;
+
+	private final long startTime = System.currentTimeMillis();
+
+	private final long[] phaseNanos = new long[Phase.values().length];
+
+	private long durationNanos = -1;
+
+	private String url;
+
+	private int statusCode = -1;
+
+	private boolean connectionReused;
+
+	private Throwable error;
+
+	Span(ServiceMethodDescriptor method, TraceContext context, String parentSpanId) {
+		this.method = method;
+		this.context = context;
+		this.parentSpanId = parentSpanId;
+	}
+
+	public ServiceMethodDescriptor getMethod() {
+		return method;
+	}
+
+	public TraceContext getContext() {
+		return context;
+	}
+
+	/**
+	 * @return the span id of the parent span, or {@literal null} if this span started its trace.
+	 */
+	public String getParentSpanId() {
+		return parentSpanId;
+	}
+
+	/**
+	 * @return the start time, in milliseconds since the epoch.
+	 */
+	public long getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @return the duration in nanoseconds.
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+
+	/**
+	 * Returns the time spent in the given phase.
+	 *
+	 * @param phase the phase.
+	 * @return the time in nanoseconds, {@code 0} if the call did not go through the phase.
+	 */
+	public long getPhaseNanos(Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+	/**
+	 * @return the time spent in each phase the call went through, in nanoseconds.
+	 */
+	public Map<Phase, Long> getPhases() {
+		Map<Phase, Long> phases = new EnumMap<Phase, Long>(Phase.class);
+		for (Phase phase : Phase.values()) {
+			if (phaseNanos[phase.ordinal()] > 0) {
+				phases.put(phase, phaseNanos[phase.ordinal()]);
+			}
+		}
+		return phases;
+	}
+
+	/**
+	 * @return the URL of the last request sent, or {@literal null} if none was sent.
+	 */
+	public String getUrl() {
+		return url;
+	}
+
+	/**
+	 * @return the HTTP status code of the last response, or {@code -1} if none was received.
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	/**
+	 * @return whether the call ran on a pooled connection.
+	 */
+	public boolean isConnectionReused() {
+		return connectionReused;
+	}
+
+	/**
+	 * @return the failure of the call, or {@literal null} if it completed.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	void addPhaseNanos(Phase phase, long nanos) {
+		if (nanos > 0) {
+			phaseNanos[phase.ordinal()] += nanos;
+		}
+	}
+
+	void setUrl(String url) {
+		this.url = url;
+	}
+
+	void setStatusCode(int statusCode) {
+		this.statusCode = statusCode;
+	}
+
+	void setConnectionReused(boolean connectionReused) {
+		this.connectionReused = connectionReused;
+	}
+
+	void end(long durationNanos, Throwable error) {
+		this.durationNanos = durationNanos;
+		this.error = error;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder(method.toString()).append(' ').append(context)
+				.append(" status=").append(statusCode).append(" duration=").append(durationNanos / 1000).append("us");
+		for (Map.Entry<Phase, Long> phase : getPhases().entrySet()) {
+			builder.append(' ').append(phase.getKey().getTagValue()).append('=').append(phase.getValue() / 1000).append("us");
+		}
+		if (error != null) {
+			builder.append(" error=").append(error);
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,19 @@
+package com.mitobit.retrofit2.spring.trace;
+
+/**
+ * Receives the completed {@link Span}s of the sampled calls, e.g. to send them to a tracing backend. Invoked on the
+ * thread completing the call: implementations must not block.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see InMemorySpanExporter
+ */
+public interface SpanExporter {
+
+	/**
+	 * Exports the given span.
+	 *
+	 * @param span the completed span, never {@literal null}.
+	 */
+	void export(Span span);
+
+}
@@ -0,0 +1,236 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * {@link EventListener} of a sampled call, recording its {@link Span}. The events of a call are delivered
+ * sequentially, the conversion of its response body happens on the thread that received the response headers.
+ * <p>
+ * The converter closes the response body, which ends the OkHttp call before the conversion completes: in that case
+ * the span ends with the conversion.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+final class SpanRecorder extends EventListener {
+
+	private final Tracer tracer;
+
+	private final Span span;
+
+	private long callStart;
+
+	private long dnsStart;
+
+	private long connectStart;
+
+	private long secureConnectStart;
+
+	private boolean connecting;
+
+	private boolean acquired;
+
+	private long sendStart;
+
+	private long sendEnd;
+
+	private long receiveStart;
+
+	private long deserializeStart;
+
+	private boolean deserializing;
+
+	private boolean ended;
+
+	private Throwable error;
+
+	private boolean finished;
+
+	SpanRecorder(Tracer tracer, Span span) {
+		this.tracer = tracer;
+		this.span = span;
+		this.callStart = System.nanoTime();
+	}
+
+	Span getSpan() {
+		return span;
+	}
+
+	@Override
+	public void callStart(Call call) {
+		callStart = System.nanoTime();
+		tracer.callStarted(call, this);
+	}
+
+	@Override
+	public void dnsStart(Call call, String domainName) {
+		dnsStart = System.nanoTime();
+	}
+
+	@Override
+	public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+		span.addPhaseNanos(Phase.DNS, System.nanoTime() - dnsStart);
+	}
+
+	@Override
+	public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+		connecting = true;
+		connectStart = System.nanoTime();
+		secureConnectStart = 0;
+	}
+
+	@Override
+	public void secureConnectStart(Call call) {
+		secureConnectStart = System.nanoTime();
+		span.addPhaseNanos(Phase.CONNECT, secureConnectStart - connectStart);
+	}
+
+	@Override
+	public void secureConnectEnd(Call call, Handshake handshake) {
+		span.addPhaseNanos(Phase.TLS, System.nanoTime() - secureConnectStart);
+	}
+
+	@Override
+	public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+		if (secureConnectStart == 0) {
+			span.addPhaseNanos(Phase.CONNECT, System.nanoTime() - connectStart);
+		}
+	}
+
+	@Override
+	public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+			IOException ioe) {
+		span.addPhaseNanos(secureConnectStart == 0 ? Phase.CONNECT : Phase.TLS,
+				System.nanoTime() - (secureConnectStart == 0 ? connectStart : secureConnectStart));
+	}
+
+	@Override
+	public void connectionAcquired(Call call, Connection connection) {
+		if (!acquired) {
+			acquired = true;
+			span.setConnectionReused(!connecting);
+			long setup = span.getPhaseNanos(Phase.DNS) + span.getPhaseNanos(Phase.CONNECT) + span.getPhaseNanos(Phase.TLS);
+			span.addPhaseNanos(Phase.QUEUE, System.nanoTime() - callStart - setup);
+		}
+	}
+
+	@Override
+	public void requestHeadersStart(Call call) {
+		long now = System.nanoTime();
+		if (receiveStart != 0) {
+			// a follow-up request: the previous response has been received
+			span.addPhaseNanos(Phase.RECEIVE, now - receiveStart);
+			receiveStart = 0;
+		}
+		sendStart = now;
+	}
+
+	@Override
+	public void requestHeadersEnd(Call call, Request request) {
+		sendEnd = System.nanoTime();
+		span.setUrl(request.url().toString());
+	}
+
+	@Override
+	public void requestBodyEnd(Call call, long byteCount) {
+		sendEnd = System.nanoTime();
+	}
+
+	@Override
+	public void responseHeadersStart(Call call) {
+		// fired when the client starts reading, before the server answers
+		span.addPhaseNanos(Phase.SEND, sendEnd - sendStart);
+	}
+
+	@Override
+	public void responseHeadersEnd(Call call, Response response) {
+		receiveStart = System.nanoTime();
+		span.addPhaseNanos(Phase.WAIT, receiveStart - sendEnd);
+		span.setStatusCode(response.code());
+		TraceScope.RECEIVING.set(this);
+	}
+
+	@Override
+	public void callEnd(Call call) {
+		tracer.callEnded(call);
+		ended = true;
+		if (!deserializing) {
+			finish();
+		}
+	}
+
+	@Override
+	public void callFailed(Call call, IOException ioe) {
+		tracer.callEnded(call);
+		ended = true;
+		error = ioe;
+		if (!deserializing) {
+			finish();
+		}
+	}
+
+	/**
+	 * Invoked by the converter of the response body before converting it.
+	 *
+	 * @return whether the conversion is recorded.
+	 */
+	boolean deserializeStarted() {
+		if (finished || deserializing) {
+			return false;
+		}
+		deserializeStart = System.nanoTime();
+		if (receiveStart != 0) {
+			span.addPhaseNanos(Phase.RECEIVE, deserializeStart - receiveStart);
+			receiveStart = 0;
+		}
+		deserializing = true;
+		return true;
+	}
+
+	/**
+	 * Invoked by the converter of the response body once converted.
+	 *
+	 * @param failure the conversion failure, or {@literal null}.
+	 */
+	void deserializeEnded(Throwable failure) {
+		span.addPhaseNanos(Phase.DESERIALIZE, System.nanoTime() - deserializeStart);
+		deserializing = false;
+		if (failure != null && error == null) {
+			error = failure;
+		}
+		if (TraceScope.RECEIVING.get() == this) {
+			TraceScope.RECEIVING.remove();
+		}
+		if (ended) {
+			finish();
+		}
+	}
+
+	private void finish() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		long now = System.nanoTime();
+		if (receiveStart != 0) {
+			span.addPhaseNanos(Phase.RECEIVE, now - receiveStart);
+		}
+		if (TraceScope.RECEIVING.get() == this) {
+			TraceScope.RECEIVING.remove();
+		}
+		span.end(now - callStart, error);
+		tracer.finish(this);
+	}
+
+}
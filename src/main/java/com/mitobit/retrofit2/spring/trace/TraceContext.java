@@ -0,0 +1,93 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import java.util.Random;
+
+import org.springframework.util.Assert;
+
+/**
+ * The identifiers of a span within its trace, as propagated to the servers: a 32 hex digit trace id, a 16 hex digit
+ * span id and the sampling decision.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public final class TraceContext {
+
+	private final String traceId;
+
+	private final String spanId;
+
+	private final boolean sampled;
+
+	/**
+	 * Creates a new {@link TraceContext}.
+	 *
+	 * @param traceId the trace id, must not be {@literal null}.
+	 * @param spanId the span id, must not be {@literal null}.
+	 * @param sampled whether the trace is sampled.
+	 */
+	public TraceContext(String traceId, String spanId, boolean sampled) {
+		Assert.notNull(traceId, "Trace id must not be null");
+		Assert.notNull(spanId, "Span id must not be null");
+		this.traceId = traceId;
+		this.spanId = spanId;
+		this.sampled = sampled;
+	}
+
+	/**
+	 * Creates the context of a sampled span starting a new trace.
+	 *
+	 * @param random the source of the identifiers.
+	 */
+	static TraceContext newRoot(Random random) {
+		return new TraceContext(hex(random.nextLong()) + hex(random.nextLong()), hex(random.nextLong()), true);
+	}
+
+	/**
+	 * Creates the context of a span child of this one, in the same trace.
+	 *
+	 * @param random the source of the identifier.
+	 */
+	TraceContext newChild(Random random) {
+		return new TraceContext(traceId, hex(random.nextLong()), sampled);
+	}
+
+	public String getTraceId() {
+		return traceId;
+	}
+
+	public String getSpanId() {
+		return spanId;
+	}
+
+	public boolean isSampled() {
+		return sampled;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof TraceContext)) {
+			return false;
+		}
+		TraceContext other = (TraceContext) obj;
+		return traceId.equals(other.traceId) && spanId.equals(other.spanId) && sampled == other.sampled;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * traceId.hashCode() + spanId.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return traceId + "/" + spanId + (sampled ? "" : " (not sampled)");
+	}
+
+	private static String hex(long value) {
+		String digits = Long.toHexString(value);
+		return "0000000000000000".substring(digits.length()) + digits;
+	}
+
+}
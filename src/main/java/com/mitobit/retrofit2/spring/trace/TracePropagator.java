@@ -0,0 +1,30 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import okhttp3.Request;
+
+/**
+ * Propagation SPI of the trace context: bridges the {@link Tracer} to the tracing system of the application, whose
+ * current span becomes the parent of the spans of the calls, and writes the context of the spans into the requests.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see W3CTracePropagator
+ */
+public interface TracePropagator {
+
+	/**
+	 * Returns the context of the current span of the calling thread, invoked when a call is executed or enqueued. Its
+	 * sampling decision is kept by the span of the call.
+	 *
+	 * @return the current context, or {@literal null} to start a new trace.
+	 */
+	TraceContext currentContext();
+
+	/**
+	 * Writes the given context into the given request, usually as headers.
+	 *
+	 * @param context the context of the span of the call, never {@literal null}.
+	 * @param request the request about to be sent.
+	 */
+	void inject(TraceContext context, Request.Builder request);
+
+}
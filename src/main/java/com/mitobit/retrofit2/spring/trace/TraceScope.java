@@ -0,0 +1,28 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+
+/**
+ * The thread-bound state linking the layers a traced call goes through: Retrofit creates the OkHttp call, and the
+ * {@link Tracer} its listener, on the thread executing or enqueuing it; OkHttp then reads the response and Retrofit
+ * converts it on the same thread.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+final class TraceScope {
+
+	/**
+	 * The service method whose call is being executed or enqueued, set by {@link TracingCallDecoratorFactory}.
+	 */
+	static final ThreadLocal<ServiceMethodDescriptor> METHOD = new ThreadLocal<ServiceMethodDescriptor>();
+
+	/**
+	 * The recorder of the call whose response is being received, read by {@link TracingConverterFactory}.
+	 */
+	static final ThreadLocal<SpanRecorder> RECEIVING = new ThreadLocal<SpanRecorder>();
+
+	private TraceScope() {
+		// hide default constructor
+	}
+
+}
@@ -0,0 +1,227 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+import com.mitobit.retrofit2.spring.metrics.SampledValue;
+import com.mitobit.retrofit2.spring.metrics.ServiceMetrics;
+
+import retrofit2.Converter;
+
+/**
+ * Traces the calls of the Retrofit services. Installed on the shared client as its {@link EventListener.Factory} and
+ * as an application {@link Interceptor}, it records a {@link Span} of the sampled calls of the service methods, broken
+ * down into {@link Phase}s, and writes the trace context into their requests through the {@link TracePropagator}.
+ * The service method of a call is known through the {@link TracingCallDecoratorFactory} of its service, the time
+ * spent converting its response through the {@link #getConverterFactory() converter factory}.
+ * <p>
+ * Calls are sampled at the {@link #setSampleRate(double) sample rate}, unless the propagator provides a parent
+ * context, whose decision is kept. Calls that are not sampled get the no-op listener: neither recorded nor propagated,
+ * they cost one random number, and no lookup in the interceptor while no sampled call is in progress. Completed spans
+ * are handed to the {@link SpanExporter}s and, when {@link ServiceMetrics} are set, added to the
+ * {@value ServiceMetrics#TRACED_CALLS} and {@value ServiceMetrics#CALL_PHASE_TIME} counters of their method.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class Tracer implements EventListener.Factory, Interceptor {
+
+	private static final Log logger = LogFactory.getLog(Tracer.class);
+
+	private double sampleRate = 1;
+
+	private TracePropagator propagator = new W3CTracePropagator();
+
+	private List<SpanExporter> exporters = Collections.emptyList();
+
+	private ServiceMetrics serviceMetrics;
+
+	private final TracingConverterFactory converterFactory = new TracingConverterFactory();
+
+	// the sampled calls in progress, from their start to their end
+	private final ConcurrentMap<Call, SpanRecorder> recorders = new ConcurrentHashMap<Call, SpanRecorder>();
+
+	private final ConcurrentMap<ServiceMethodDescriptor, PhaseCounters> phaseCounters = new ConcurrentHashMap<ServiceMethodDescriptor, PhaseCounters>();
+
+	/**
+	 * Sets the ratio of the calls starting a trace that are sampled, defaults to {@code 1}.
+	 *
+	 * @param sampleRate between {@code 0}, none, and {@code 1}, all.
+	 */
+	public void setSampleRate(double sampleRate) {
+		Assert.isTrue(sampleRate >= 0 && sampleRate <= 1, "Sample rate must be between 0 and 1");
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Sets the propagator of the trace context, defaults to a {@link W3CTracePropagator}.
+	 *
+	 * @param propagator
+	 */
+	public void setPropagator(TracePropagator propagator) {
+		Assert.notNull(propagator, "Propagator must not be null");
+		this.propagator = propagator;
+	}
+
+	/**
+	 * Sets the exporters of the completed spans, none by default.
+	 *
+	 * @param exporters
+	 */
+	public void setExporters(List<SpanExporter> exporters) {
+		this.exporters = exporters != null ? exporters : Collections.<SpanExporter> emptyList();
+	}
+
+	/**
+	 * Sets the metrics the phase breakdown of each service method is recorded by.
+	 *
+	 * @param serviceMetrics
+	 */
+	public void setServiceMetrics(ServiceMetrics serviceMetrics) {
+		this.serviceMetrics = serviceMetrics;
+	}
+
+	/**
+	 * @return the converter factory timing the conversion of the response bodies, to be consulted first.
+	 */
+	public Converter.Factory getConverterFactory() {
+		return converterFactory;
+	}
+
+	@Override
+	public EventListener create(Call call) {
+		ServiceMethodDescriptor method = TraceScope.METHOD.get();
+		if (method == null) {
+			return EventListener.NONE;
+		}
+		TraceContext parent = propagator.currentContext();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (parent != null ? !parent.isSampled() : random.nextDouble() >= sampleRate) {
+			return EventListener.NONE;
+		}
+		TraceContext context = parent != null ? parent.newChild(random) : TraceContext.newRoot(random);
+		return new SpanRecorder(this, new Span(method, context, parent != null ? parent.getSpanId() : null));
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException {
+		SpanRecorder recorder = recorders.isEmpty() ? null : recorders.get(chain.call());
+		if (recorder == null) {
+			return chain.proceed(chain.request());
+		}
+		Request.Builder request = chain.request().newBuilder();
+		propagator.inject(recorder.getSpan().getContext(), request);
+		return chain.proceed(request.build());
+	}
+
+	/**
+	 * Makes a sampled call known to the interceptor until it ends.
+	 */
+	void callStarted(Call call, SpanRecorder recorder) {
+		recorders.put(call, recorder);
+	}
+
+	void callEnded(Call call) {
+		recorders.remove(call);
+	}
+
+	/**
+	 * Exports the span of a completed call.
+	 */
+	void finish(SpanRecorder recorder) {
+		Span span = recorder.getSpan();
+		if (serviceMetrics != null) {
+			phaseCountersOf(span.getMethod()).record(span);
+		}
+		for (SpanExporter exporter : exporters) {
+			try {
+				exporter.export(span);
+			} catch (RuntimeException e) {
+				logger.warn("Could not export span " + span, e);
+			}
+		}
+	}
+
+	private PhaseCounters phaseCountersOf(ServiceMethodDescriptor method) {
+		PhaseCounters counters = phaseCounters.get(method);
+		if (counters == null) {
+			PhaseCounters created = new PhaseCounters();
+			counters = phaseCounters.putIfAbsent(method, created);
+			if (counters == null) {
+				counters = created;
+				created.register(serviceMetrics, method);
+			}
+		}
+		return counters;
+	}
+
+	/**
+	 * The counters of the traced calls of one service method and of the time they spent in each phase.
+	 */
+	private static final class PhaseCounters {
+
+		private final AtomicLong calls = new AtomicLong();
+
+		private final AtomicLong[] phaseNanos = new AtomicLong[Phase.values().length];
+
+		PhaseCounters() {
+			for (int i = 0; i < phaseNanos.length; i++) {
+				phaseNanos[i] = new AtomicLong();
+			}
+		}
+
+		void register(ServiceMetrics serviceMetrics, ServiceMethodDescriptor method) {
+			serviceMetrics.counter(ServiceMetrics.TRACED_CALLS, tags(method, null), calls);
+			for (Phase phase : Phase.values()) {
+				final AtomicLong nanos = phaseNanos[phase.ordinal()];
+				serviceMetrics.counter(ServiceMetrics.CALL_PHASE_TIME, tags(method, phase), new SampledValue() {
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public double doubleValue() {
+						return nanos.get() / (double) TimeUnit.SECONDS.toNanos(1);
+					}
+				});
+			}
+		}
+
+		void record(Span span) {
+			calls.incrementAndGet();
+			for (Phase phase : Phase.values()) {
+				long nanos = span.getPhaseNanos(phase);
+				if (nanos > 0) {
+					phaseNanos[phase.ordinal()].addAndGet(nanos);
+				}
+			}
+		}
+
+		private static Map<String, String> tags(ServiceMethodDescriptor method, Phase phase) {
+			Map<String, String> tags = new LinkedHashMap<String, String>();
+			tags.put("service", method.getServiceInterface().getName());
+			tags.put("method", method.getMethod().getName());
+			if (phase != null) {
+				tags.put("phase", phase.getTagValue());
+			}
+			return tags;
+		}
+	}
+
+}
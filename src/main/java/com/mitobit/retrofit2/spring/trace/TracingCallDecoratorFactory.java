@@ -0,0 +1,103 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import java.io.IOException;
+
+import okhttp3.Request;
+
+import com.mitobit.retrofit2.spring.call.CallDecorator;
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.ForwardingCall;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * {@link CallDecoratorFactory} telling the {@link Tracer} which service method a call belongs to: the method is bound
+ * to the thread while the call is executed, enqueued or its request created, which is when Retrofit creates the
+ * OkHttp call. Must be the innermost decorator, so that each retry and hedged request is attributed.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class TracingCallDecoratorFactory implements CallDecoratorFactory {
+
+	@Override
+	public CallDecorator create(ServiceMethodDescriptor method) {
+		return new Scope(method);
+	}
+
+	private static final class Scope implements CallDecorator {
+
+		private final ServiceMethodDescriptor method;
+
+		Scope(ServiceMethodDescriptor method) {
+			this.method = method;
+		}
+
+		@Override
+		public <R> Call<R> decorate(Call<R> call) {
+			return new ScopedCall<R>(call, this);
+		}
+
+		ServiceMethodDescriptor enter() {
+			ServiceMethodDescriptor previous = TraceScope.METHOD.get();
+			TraceScope.METHOD.set(method);
+			return previous;
+		}
+
+		void exit(ServiceMethodDescriptor previous) {
+			if (previous != null) {
+				TraceScope.METHOD.set(previous);
+			} else {
+				TraceScope.METHOD.remove();
+			}
+		}
+	}
+
+	private static final class ScopedCall<T> extends ForwardingCall<T> {
+
+		private final Scope scope;
+
+		ScopedCall(Call<T> delegate, Scope scope) {
+			super(delegate);
+			this.scope = scope;
+		}
+
+		@Override
+		public Response<T> execute() throws IOException {
+			ServiceMethodDescriptor previous = scope.enter();
+			try {
+				return delegate.execute();
+			} finally {
+				scope.exit(previous);
+			}
+		}
+
+		@Override
+		public void enqueue(Callback<T> callback) {
+			ServiceMethodDescriptor previous = scope.enter();
+			try {
+				delegate.enqueue(callback);
+			} finally {
+				scope.exit(previous);
+			}
+		}
+
+		@Override
+		public Request request() {
+			ServiceMethodDescriptor previous = scope.enter();
+			try {
+				return delegate.request();
+			} finally {
+				scope.exit(previous);
+			}
+		}
+
+		@Override
+		public Call<T> clone() {
+			return new ScopedCall<T>(delegate.clone(), scope);
+		}
+	}
+
+}
@@ -0,0 +1,53 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * {@link Converter.Factory} timing the conversion of the response bodies of the traced calls, as the
+ * {@link Phase#DESERIALIZE} phase of their span. It wraps the converter of the next factory, so it must be the first
+ * one; the built-in converters of Retrofit, e.g. of {@code ResponseBody} and {@code Void}, are not timed.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ * @see Tracer#getConverterFactory()
+ */
+final class TracingConverterFactory extends Converter.Factory {
+
+	@Override
+	public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+		return new TimedConverter<Object>(retrofit.<Object> nextResponseBodyConverter(this, type, annotations));
+	}
+
+	private static final class TimedConverter<T> implements Converter<ResponseBody, T> {
+
+		private final Converter<ResponseBody, T> delegate;
+
+		TimedConverter(Converter<ResponseBody, T> delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public T convert(ResponseBody value) throws IOException {
+			SpanRecorder recorder = TraceScope.RECEIVING.get();
+			if (recorder == null || !recorder.deserializeStarted()) {
+				return delegate.convert(value);
+			}
+			Throwable failure = null;
+			try {
+				return delegate.convert(value);
+			} catch (IOException | RuntimeException e) {
+				failure = e;
+				throw e;
+			} finally {
+				recorder.deserializeEnded(failure);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,29 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import okhttp3.Request;
+
+/**
+ * {@link TracePropagator} writing the {@code traceparent} header of the W3C Trace Context recommendation. Every call
+ * starts a new trace; subclasses bridging the tracing system of the application override {@link #currentContext()}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class W3CTracePropagator implements TracePropagator {
+
+	/**
+	 * The name of the header.
+	 */
+	public static final String TRACEPARENT = "traceparent";
+
+	@Override
+	public TraceContext currentContext() {
+		return null;
+	}
+
+	@Override
+	public void inject(TraceContext context, Request.Builder request) {
+		request.header(TRACEPARENT, "00-" + context.getTraceId() + "-" + context.getSpanId()
+				+ (context.isSampled() ? "-01" : "-00"));
+	}
+
+}
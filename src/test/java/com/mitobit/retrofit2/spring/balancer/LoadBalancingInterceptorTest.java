@@ -0,0 +1,249 @@
+package com.mitobit.retrofit2.spring.balancer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the {@link LoadBalancingInterceptor} against {@link MockWebServer}s.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class LoadBalancingInterceptorTest {
+
+	private static final String BASE_URL = "http://service/api/";
+
+	private final List<MockWebServer> servers = new ArrayList<MockWebServer>();
+
+	private final List<AtomicInteger> statuses = new ArrayList<AtomicInteger>();
+
+	@Before
+	public void startServers() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			final AtomicInteger status = new AtomicInteger(200);
+			MockWebServer server = new MockWebServer();
+			server.setDispatcher(new Dispatcher() {
+				@Override
+				public MockResponse dispatch(RecordedRequest request) {
+					return new MockResponse().setResponseCode(status.get()).setBody("ok");
+				}
+			});
+			server.start();
+			servers.add(server);
+			statuses.add(status);
+		}
+	}
+
+	@After
+	public void shutdownServers() throws IOException {
+		for (MockWebServer server : servers) {
+			server.shutdown();
+		}
+	}
+
+	@Test
+	public void rewritesRequestsToTheBaseUrl() throws Exception {
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(1), LoadBalancingStrategy.ROUND_ROBIN);
+		OkHttpClient client = client(interceptor);
+
+		assertEquals(200, get(client, BASE_URL + "items/1?q=a"));
+		assertEquals("/1/items/1?q=a", servers.get(0).takeRequest().getPath());
+	}
+
+	@Test
+	public void leavesOtherRequestsUntouched() throws Exception {
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(2), LoadBalancingStrategy.ROUND_ROBIN);
+		OkHttpClient client = client(interceptor);
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals(200, get(client, servers.get(1).url("/other").toString()));
+		}
+		assertEquals(0, servers.get(0).getRequestCount());
+		assertEquals(4, servers.get(1).getRequestCount());
+	}
+
+	@Test
+	public void roundRobinSpreadsRequestsEvenly() throws Exception {
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(3), LoadBalancingStrategy.ROUND_ROBIN);
+		OkHttpClient client = client(interceptor);
+
+		for (int i = 0; i < 30; i++) {
+			assertEquals(200, get(client, BASE_URL + "items"));
+		}
+		for (MockWebServer server : servers) {
+			assertEquals(10, server.getRequestCount());
+		}
+	}
+
+	@Test
+	public void leastInFlightAvoidsBusyServer() throws Exception {
+		assertAvoidsBusyServer(LoadBalancingStrategy.LEAST_IN_FLIGHT);
+	}
+
+	@Test
+	public void powerOfTwoChoicesAvoidsBusyServer() throws Exception {
+		assertAvoidsBusyServer(LoadBalancingStrategy.POWER_OF_TWO_CHOICES);
+	}
+
+	@Test
+	public void powerOfTwoChoicesSpreadsRequests() throws Exception {
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(2), LoadBalancingStrategy.POWER_OF_TWO_CHOICES);
+		OkHttpClient client = client(interceptor);
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals(200, get(client, BASE_URL + "items"));
+		}
+		assertTrue(servers.get(0).getRequestCount() > 0);
+		assertTrue(servers.get(1).getRequestCount() > 0);
+	}
+
+	@Test
+	public void ejectsFailingServer() throws Exception {
+		statuses.get(0).set(500);
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(2), LoadBalancingStrategy.ROUND_ROBIN);
+		interceptor.setMaxFailures(2);
+		interceptor.setEjectionTime(60000);
+		OkHttpClient client = client(interceptor);
+
+		for (int i = 0; i < 14; i++) {
+			get(client, BASE_URL + "items");
+		}
+		Endpoint failing = interceptor.getEndpoints().get(0);
+		assertTrue(failing.isEjected());
+		assertEquals(1, failing.getEjections());
+		assertFalse(interceptor.getEndpoints().get(1).isEjected());
+		// ejected after its second failure, at the third request
+		assertEquals(2, servers.get(0).getRequestCount());
+		assertEquals(12, servers.get(1).getRequestCount());
+	}
+
+	@Test
+	public void returnsEjectedServerAfterEjectionTime() throws Exception {
+		statuses.get(0).set(500);
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(2), LoadBalancingStrategy.ROUND_ROBIN);
+		interceptor.setMaxFailures(1);
+		interceptor.setEjectionTime(200);
+		OkHttpClient client = client(interceptor);
+
+		assertEquals(500, get(client, BASE_URL + "items"));
+		assertTrue(interceptor.getEndpoints().get(0).isEjected());
+		statuses.get(0).set(200);
+		for (int i = 0; i < 4; i++) {
+			assertEquals(200, get(client, BASE_URL + "items"));
+		}
+		assertEquals(1, servers.get(0).getRequestCount());
+
+		Thread.sleep(300);
+		assertFalse(interceptor.getEndpoints().get(0).isEjected());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(200, get(client, BASE_URL + "items"));
+		}
+		assertEquals(3, servers.get(0).getRequestCount());
+	}
+
+	@Test
+	public void failsOpenWhenEveryServerIsEjected() throws Exception {
+		statuses.get(0).set(500);
+		statuses.get(1).set(500);
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(2), LoadBalancingStrategy.ROUND_ROBIN);
+		interceptor.setMaxFailures(1);
+		interceptor.setEjectionTime(60000);
+		OkHttpClient client = client(interceptor);
+
+		assertEquals(500, get(client, BASE_URL + "items"));
+		assertEquals(500, get(client, BASE_URL + "items"));
+		for (Endpoint endpoint : interceptor.getEndpoints()) {
+			assertTrue(endpoint.isEjected());
+		}
+		statuses.get(1).set(200);
+		for (int i = 0; i < 4; i++) {
+			get(client, BASE_URL + "items");
+		}
+		assertEquals(3, servers.get(0).getRequestCount());
+		assertEquals(3, servers.get(1).getRequestCount());
+	}
+
+	@Test
+	public void rebindKeepsStateOfListedServers() throws Exception {
+		statuses.get(0).set(500);
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(2), LoadBalancingStrategy.ROUND_ROBIN);
+		interceptor.setMaxFailures(1);
+		interceptor.setEjectionTime(60000);
+		OkHttpClient client = client(interceptor);
+
+		get(client, BASE_URL + "items");
+		interceptor.rebind("http://other/", urls(3));
+
+		assertEquals(3, interceptor.getEndpoints().size());
+		assertTrue(interceptor.getEndpoints().get(0).isEjected());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(200, get(client, "http://other/items"));
+		}
+		assertEquals(1, servers.get(0).getRequestCount());
+		assertEquals(2, servers.get(1).getRequestCount());
+		assertEquals(2, servers.get(2).getRequestCount());
+	}
+
+	private void assertAvoidsBusyServer(LoadBalancingStrategy strategy) throws Exception {
+		LoadBalancingInterceptor interceptor = new LoadBalancingInterceptor(BASE_URL, urls(2), strategy);
+		OkHttpClient client = client(interceptor);
+
+		// in flight until its body is closed
+		Response busy = client.newCall(new Request.Builder().url(BASE_URL + "items").build()).execute();
+		int busyServer = servers.get(0).getRequestCount() == 1 ? 0 : 1;
+		try {
+			for (int i = 0; i < 10; i++) {
+				assertEquals(200, get(client, BASE_URL + "items"));
+			}
+			assertEquals(1, servers.get(busyServer).getRequestCount());
+			assertEquals(10, servers.get(1 - busyServer).getRequestCount());
+		} finally {
+			busy.close();
+		}
+		for (Endpoint endpoint : interceptor.getEndpoints()) {
+			assertEquals(0, endpoint.getInFlight());
+		}
+	}
+
+	/**
+	 * Returns the base URLs of the first servers, each with its own base path.
+	 */
+	private List<String> urls(int count) {
+		List<String> urls = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			urls.add(servers.get(i).url("/" + (i + 1) + "/").toString());
+		}
+		return urls;
+	}
+
+	private static OkHttpClient client(LoadBalancingInterceptor interceptor) {
+		return new OkHttpClient.Builder().addInterceptor(interceptor).build();
+	}
+
+	private static int get(OkHttpClient client, String url) throws IOException {
+		Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+		try {
+			return response.code();
+		} finally {
+			response.close();
+		}
+	}
+
+}
@@ -0,0 +1,276 @@
+package com.mitobit.retrofit2.spring.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.util.concurrent.ListenableFuture;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.HttpException;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.http.Body;
+import retrofit2.http.GET;
+import retrofit2.http.POST;
+import retrofit2.http.Path;
+
+/**
+ * Tests of the {@link MethodBatcher} against a {@link MockWebServer} answering each key {@code k} of a batch with the
+ * value {@code "v-k"}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class MethodBatcherTest {
+
+	private static final long WINDOW = 1000;
+
+	interface Items {
+
+		@Batched(value = "getItems", maxSize = 3, window = WINDOW)
+		@GET("items/{id}")
+		Call<String> getItem(@Path("id") String id);
+
+		@POST("items/list")
+		Call<List<String>> getItems(@Body List<String> ids);
+
+		@Batched(value = "getItemsById", window = WINDOW)
+		@GET("items/{id}")
+		ListenableFuture<String> getItemFuture(@Path("id") String id);
+
+		@POST("items/map")
+		Call<Map<String, String>> getItemsById(@Body List<String> ids);
+
+	}
+
+	private final MockWebServer server = new MockWebServer();
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	private final BlockingQueue<RecordedRequest> requests = new LinkedBlockingQueue<RecordedRequest>();
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	private final Map<Method, MethodBatcher> batchers = MethodBatcher.forInterface(Items.class, scheduler);
+
+	private volatile Items target;
+
+	private final ObjectFactory<Items> targetFactory = new ObjectFactory<Items>() {
+		@Override
+		public Items getObject() {
+			return target;
+		}
+	};
+
+	@Before
+	public void startServer() throws IOException {
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				requests.add(request);
+				try {
+					List<?> ids = mapper.readValue(request.getBody().clone().readUtf8(), List.class);
+					if (ids.contains("fail")) {
+						return new MockResponse().setResponseCode(503).setBody("unavailable");
+					}
+					Object values;
+					if (request.getPath().endsWith("/map")) {
+						Map<Object, Object> byId = new LinkedHashMap<Object, Object>();
+						for (Object id : ids) {
+							if (!"missing".equals(id)) {
+								byId.put(id, "v-" + id);
+							}
+						}
+						values = byId;
+					} else {
+						String[] list = new String[ids.size()];
+						for (int i = 0; i < list.length; i++) {
+							list[i] = "v-" + ids.get(i);
+						}
+						values = list;
+					}
+					return new MockResponse().setHeader("Content-Type", "application/json")
+							.setBody(mapper.writeValueAsString(values));
+				} catch (IOException e) {
+					return new MockResponse().setResponseCode(400);
+				}
+			}
+		});
+		server.start();
+		target = create("/");
+	}
+
+	@After
+	public void shutdownServer() throws IOException {
+		scheduler.shutdownNow();
+		server.shutdown();
+	}
+
+	@Test
+	public void batchIsSentWhenWindowCloses() throws Exception {
+		Outcome<String> a = new Outcome<String>();
+		Outcome<String> b = new Outcome<String>();
+		Outcome<String> sameKey = new Outcome<String>();
+
+		long start = System.nanoTime();
+		getItem("a").enqueue(a);
+		getItem("b").enqueue(b);
+		getItem("a").enqueue(sameKey);
+
+		assertEquals("v-a", a.response().body());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= WINDOW);
+		assertEquals("v-b", b.response().body());
+		assertEquals("v-a", sameKey.response().body());
+		assertEquals(1, server.getRequestCount());
+		assertEquals("[\"a\",\"b\"]", requests.take().getBody().readUtf8());
+	}
+
+	@Test
+	public void fullBatchIsSentAtOnce() throws Exception {
+		Outcome<String> a = new Outcome<String>();
+		Outcome<String> b = new Outcome<String>();
+
+		long start = System.nanoTime();
+		getItem("a").enqueue(a);
+		getItem("b").enqueue(b);
+		Response<String> c = getItem("c").execute();
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < WINDOW);
+		assertEquals("v-a", a.response().body());
+		assertEquals("v-b", b.response().body());
+		assertEquals("v-c", c.body());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void mapResponseIsSplitByKey() throws Exception {
+		ListenableFuture<String> a = getItemFuture("a");
+		ListenableFuture<String> b = getItemFuture("b");
+		ListenableFuture<String> missing = getItemFuture("missing");
+
+		assertEquals("v-a", a.get(5, TimeUnit.SECONDS));
+		assertEquals("v-b", b.get(5, TimeUnit.SECONDS));
+		try {
+			missing.get(5, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			assertTrue(e.getCause().getMessage().contains("no value for key missing"));
+		}
+		assertEquals(1, server.getRequestCount());
+		assertTrue(requests.take().getPath().endsWith("/items/map"));
+	}
+
+	@Test
+	public void errorBodyIsCopiedForEachCall() throws Exception {
+		Outcome<String> a = new Outcome<String>();
+		Outcome<String> failing = new Outcome<String>();
+
+		getItem("a").enqueue(a);
+		getItem("fail").enqueue(failing);
+
+		Response<String> first = a.response();
+		Response<String> second = failing.response();
+		assertEquals(503, first.code());
+		assertEquals("unavailable", first.errorBody().string());
+		assertEquals("unavailable", second.errorBody().string());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void failedBatchFailsFutures() throws Exception {
+		ListenableFuture<String> a = getItemFuture("a");
+		ListenableFuture<String> failing = getItemFuture("fail");
+
+		for (ListenableFuture<String> future : Arrays.asList(a, failing)) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail("Expected ExecutionException");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof HttpException);
+				assertEquals(503, ((HttpException) e.getCause()).code());
+			}
+		}
+	}
+
+	@Test
+	public void batchIsSentToTargetCurrentWhenSent() throws Exception {
+		Outcome<String> a = new Outcome<String>();
+
+		getItem("a").enqueue(a);
+		target = create("/v2/");
+
+		assertEquals("v-a", a.response().body());
+		assertEquals("/v2/items/list", requests.take().getPath());
+	}
+
+	@SuppressWarnings("unchecked")
+	private Call<String> getItem(String id) throws NoSuchMethodException {
+		return (Call<String>) batchers.get(Items.class.getMethod("getItem", String.class)).invoke(targetFactory, id);
+	}
+
+	@SuppressWarnings("unchecked")
+	private ListenableFuture<String> getItemFuture(String id) throws NoSuchMethodException {
+		return (ListenableFuture<String>) batchers.get(Items.class.getMethod("getItemFuture", String.class))
+				.invoke(targetFactory, id);
+	}
+
+	private Items create(String path) {
+		return new Retrofit.Builder().baseUrl(server.url(path)).addConverterFactory(JacksonConverterFactory.create())
+				.build().create(Items.class);
+	}
+
+	/**
+	 * Callback keeping the outcome of a call.
+	 */
+	private static final class Outcome<T> implements Callback<T> {
+
+		private final BlockingQueue<Object> outcome = new LinkedBlockingQueue<Object>();
+
+		@Override
+		public void onResponse(Call<T> call, Response<T> response) {
+			outcome.add(response);
+		}
+
+		@Override
+		public void onFailure(Call<T> call, Throwable t) {
+			outcome.add(t);
+		}
+
+		@SuppressWarnings("unchecked")
+		Response<T> response() throws Exception {
+			Object result = outcome.poll(5, TimeUnit.SECONDS);
+			if (!(result instanceof Response)) {
+				throw new AssertionError("Expected a response, got " + result);
+			}
+			return (Response<T>) result;
+		}
+	}
+
+}
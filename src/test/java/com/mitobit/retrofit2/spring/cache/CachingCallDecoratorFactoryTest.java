@@ -0,0 +1,123 @@
+package com.mitobit.retrofit2.spring.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mitobit.retrofit2.spring.RetrofitRegistry;
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.DecoratingCallAdapterFactory;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Converter;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+
+/**
+ * Tests of the {@link CachingCallDecoratorFactory} against a {@link MockWebServer}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class CachingCallDecoratorFactoryTest {
+
+	interface Names {
+
+		@CacheResponse(ttl = 60000)
+		@GET("names/{group}")
+		Call<List<String>> list(@Path("group") String group);
+
+		@CacheResponse(ttl = 60000)
+		@GET("names")
+		Call<ResponseBody> raw();
+
+	}
+
+	private final MockWebServer server = new MockWebServer();
+
+	private final AtomicInteger createdCalls = new AtomicInteger();
+
+	@Before
+	public void startServer() throws IOException {
+		server.start();
+	}
+
+	@After
+	public void shutdownServer() throws IOException {
+		server.shutdown();
+	}
+
+	@Test
+	public void hitSendsNoRequest() throws Exception {
+		server.enqueue(names());
+		server.enqueue(names());
+		Names names = create();
+
+		assertEquals(Collections.singletonList("a"), names.list("a").execute().body());
+		assertEquals(Collections.singletonList("a"), names.list("a").execute().body());
+		assertEquals(1, server.getRequestCount());
+
+		names.list("b").execute();
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test
+	public void hitCreatesNoHttpCall() throws Exception {
+		server.enqueue(names());
+		Names names = create();
+
+		names.list("a").execute();
+		names.list("a").execute();
+		names.list("a").execute();
+
+		assertEquals(1, createdCalls.get());
+	}
+
+	@Test
+	public void rejectsStreamedResponseType() throws Exception {
+		try {
+			new CachingCallDecoratorFactory()
+					.create(new ServiceMethodDescriptor(Names.class, Names.class.getMethod("raw")));
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("buffered response type"));
+		}
+	}
+
+	private Names create() {
+		OkHttpClient client = new OkHttpClient.Builder().eventListenerFactory(new EventListener.Factory() {
+			@Override
+			public EventListener create(okhttp3.Call call) {
+				createdCalls.incrementAndGet();
+				return EventListener.NONE;
+			}
+		}).build();
+		return new RetrofitRegistry().obtain(server.url("/").toString(), client,
+				Collections.<Converter.Factory> singletonList(JacksonConverterFactory.create()),
+				Collections.<CallAdapter.Factory> singletonList(new DecoratingCallAdapterFactory(Names.class,
+						Collections.<CallDecoratorFactory> singletonList(new CachingCallDecoratorFactory()))),
+				null).create(Names.class);
+	}
+
+	private static MockResponse names() {
+		return new MockResponse().setHeader("Content-Type", "application/json").setBody("[\"a\"]");
+	}
+
+}
@@ -0,0 +1,211 @@
+package com.mitobit.retrofit2.spring.coalesce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ResponseBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.DecoratingCallAdapterFactory;
+import com.mitobit.retrofit2.spring.call.ServiceMethodDescriptor;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+
+/**
+ * Tests of the {@link CoalescingCallDecoratorFactory} against a {@link MockWebServer}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class CoalescingCallDecoratorFactoryTest {
+
+	interface Names {
+
+		@Coalesce
+		@GET("names/{group}")
+		Call<List<String>> list(@Path("group") String group);
+
+		@Coalesce
+		@GET("names")
+		Call<ResponseBody> raw();
+
+	}
+
+	private final MockWebServer server = new MockWebServer();
+
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private volatile MockResponse response = names();
+
+	@Before
+	public void startServer() throws IOException {
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+				release.await(5, TimeUnit.SECONDS);
+				return response;
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void shutdownServer() throws IOException {
+		release.countDown();
+		server.shutdown();
+	}
+
+	@Test
+	public void identicalCallsShareOneRequest() throws Exception {
+		Names names = create();
+		Outcome<List<String>> first = new Outcome<List<String>>();
+		Outcome<List<String>> second = new Outcome<List<String>>();
+		Outcome<List<String>> other = new Outcome<List<String>>();
+
+		names.list("a").enqueue(first);
+		names.list("a").enqueue(second);
+		names.list("b").enqueue(other);
+		release.countDown();
+
+		assertEquals(Collections.singletonList("a"), first.response().body());
+		assertEquals(Collections.singletonList("a"), second.response().body());
+		assertEquals(Collections.singletonList("a"), other.response().body());
+		assertEquals(2, server.getRequestCount());
+	}
+
+	@Test
+	public void cancelingCallDetachesItFromFlight() throws Exception {
+		Names names = create();
+		Outcome<List<String>> leader = new Outcome<List<String>>();
+		Outcome<List<String>> canceled = new Outcome<List<String>>();
+
+		names.list("a").enqueue(leader);
+		Call<List<String>> call = names.list("a");
+		call.enqueue(canceled);
+		call.cancel();
+		release.countDown();
+
+		assertEquals("Canceled", canceled.failure().getMessage());
+		assertEquals(Collections.singletonList("a"), leader.response().body());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void cancelingAllCallsCancelsUpstreamRequest() throws Exception {
+		Names names = create();
+		Outcome<List<String>> first = new Outcome<List<String>>();
+		Outcome<List<String>> second = new Outcome<List<String>>();
+
+		Call<List<String>> firstCall = names.list("a");
+		firstCall.enqueue(first);
+		Call<List<String>> secondCall = names.list("a");
+		secondCall.enqueue(second);
+		firstCall.cancel();
+		secondCall.cancel();
+
+		assertEquals("Canceled", first.failure().getMessage());
+		assertEquals("Canceled", second.failure().getMessage());
+		release.countDown();
+		// the flight landed with the canceled upstream request, a new call sends its own
+		assertEquals(Collections.singletonList("a"), names.list("a").execute().body());
+	}
+
+	@Test
+	public void sharedErrorBodyIsCopiedForEachCall() throws Exception {
+		response = new MockResponse().setResponseCode(503).setBody("unavailable");
+		Names names = create();
+		Outcome<List<String>> first = new Outcome<List<String>>();
+		Outcome<List<String>> second = new Outcome<List<String>>();
+
+		names.list("a").enqueue(first);
+		names.list("a").enqueue(second);
+		release.countDown();
+
+		Response<List<String>> firstResponse = first.response();
+		Response<List<String>> secondResponse = second.response();
+		assertEquals(503, firstResponse.code());
+		assertEquals("unavailable", firstResponse.errorBody().string());
+		assertEquals("unavailable", secondResponse.errorBody().string());
+		assertEquals(1, server.getRequestCount());
+	}
+
+	@Test
+	public void rejectsStreamedResponseType() throws Exception {
+		try {
+			new CoalescingCallDecoratorFactory()
+					.create(new ServiceMethodDescriptor(Names.class, Names.class.getMethod("raw")));
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("buffered response type"));
+		}
+	}
+
+	private Names create() {
+		return new Retrofit.Builder().baseUrl(server.url("/")).addConverterFactory(JacksonConverterFactory.create())
+				.addCallAdapterFactory(new DecoratingCallAdapterFactory(Names.class,
+						Collections.<CallDecoratorFactory> singletonList(new CoalescingCallDecoratorFactory())))
+				.build().create(Names.class);
+	}
+
+	private static MockResponse names() {
+		return new MockResponse().setHeader("Content-Type", "application/json").setBody("[\"a\"]");
+	}
+
+	/**
+	 * Callback keeping the outcome of a call.
+	 */
+	private static final class Outcome<T> implements Callback<T> {
+
+		private final BlockingQueue<Object> outcome = new LinkedBlockingQueue<Object>();
+
+		@Override
+		public void onResponse(Call<T> call, Response<T> response) {
+			outcome.add(response);
+		}
+
+		@Override
+		public void onFailure(Call<T> call, Throwable t) {
+			outcome.add(t);
+		}
+
+		@SuppressWarnings("unchecked")
+		Response<T> response() throws Exception {
+			Object result = outcome.poll(5, TimeUnit.SECONDS);
+			if (!(result instanceof Response)) {
+				throw new AssertionError("Expected a response, got " + result);
+			}
+			return (Response<T>) result;
+		}
+
+		Throwable failure() throws Exception {
+			Object result = outcome.poll(5, TimeUnit.SECONDS);
+			if (!(result instanceof Throwable)) {
+				throw new AssertionError("Expected a failure, got " + result);
+			}
+			return (Throwable) result;
+		}
+	}
+
+}
@@ -0,0 +1,182 @@
+package com.mitobit.retrofit2.spring.retry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.DecoratingCallAdapterFactory;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.http.GET;
+
+/**
+ * Tests of the hedged calls of the {@link RetryingCallDecoratorFactory} against a {@link MockWebServer} answering the
+ * first request of a call slowly and the second one at once.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class RetryingCallDecoratorFactoryTest {
+
+	private static final long SLOW = 2000;
+
+	interface Names {
+
+		@Hedge(percentile = 0, delay = 200)
+		@GET("names")
+		Call<List<String>> list();
+
+	}
+
+	private final MockWebServer server = new MockWebServer();
+
+	private final AtomicInteger requests = new AtomicInteger();
+
+	private final OkHttpClient client = new OkHttpClient();
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	@Before
+	public void startServer() throws IOException {
+		server.setDispatcher(new Dispatcher() {
+			@Override
+			public MockResponse dispatch(RecordedRequest request) {
+				if (request.getPath().equals("/busy") || requests.incrementAndGet() == 1) {
+					return names("slow").setHeadersDelay(SLOW, TimeUnit.MILLISECONDS);
+				}
+				return names("fast");
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void shutdownServer() throws IOException {
+		client.dispatcher().cancelAll();
+		scheduler.shutdownNow();
+		server.shutdown();
+	}
+
+	@Test
+	public void hedgeIsSentAfterDelayAndWins() throws Exception {
+		Names names = create(new RetryBudget(1, 10));
+		final BlockingQueue<Object> outcome = new LinkedBlockingQueue<Object>();
+
+		long start = System.nanoTime();
+		names.list().enqueue(new Callback<List<String>>() {
+			@Override
+			public void onResponse(Call<List<String>> call, Response<List<String>> response) {
+				outcome.add(response);
+			}
+
+			@Override
+			public void onFailure(Call<List<String>> call, Throwable t) {
+				outcome.add(t);
+			}
+		});
+		Object result = outcome.poll(SLOW, TimeUnit.MILLISECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue(result instanceof Response);
+		assertEquals(Collections.singletonList("fast"), ((Response<?>) result).body());
+		assertTrue(elapsed >= 200);
+		assertEquals(2, server.getRequestCount());
+		assertFirstRequestCanceled();
+	}
+
+	@Test
+	public void executeSendsFirstRequestOnCallingThread() throws Exception {
+		client.dispatcher().setMaxRequestsPerHost(1);
+		// takes the only asynchronous slot of the host
+		client.newCall(new Request.Builder().url(server.url("/busy")).build()).enqueue(new okhttp3.Callback() {
+			@Override
+			public void onResponse(okhttp3.Call call, okhttp3.Response response) {
+				response.close();
+			}
+
+			@Override
+			public void onFailure(okhttp3.Call call, IOException e) {
+			}
+		});
+		requests.set(1);
+		Names names = create(new RetryBudget(1, 10));
+
+		long start = System.nanoTime();
+		Response<List<String>> response = names.list().execute();
+
+		assertEquals(Collections.singletonList("fast"), response.body());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < SLOW);
+	}
+
+	@Test
+	public void executeReturnsHedgeWhenFirst() throws Exception {
+		Names names = create(new RetryBudget(1, 10));
+
+		long start = System.nanoTime();
+		Response<List<String>> response = names.list().execute();
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertEquals(Collections.singletonList("fast"), response.body());
+		assertTrue(elapsed >= 200 && elapsed < SLOW);
+		assertEquals(2, server.getRequestCount());
+		assertFirstRequestCanceled();
+	}
+
+	@Test
+	public void exhaustedBudgetRefusesHedge() throws Exception {
+		RetryBudget budget = new RetryBudget(0, 0);
+		Names names = create(budget);
+
+		Response<List<String>> response = names.list().execute();
+
+		assertEquals(Collections.singletonList("slow"), response.body());
+		assertEquals(1, server.getRequestCount());
+		assertEquals(1, budget.getExhausted());
+	}
+
+	private void assertFirstRequestCanceled() throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SLOW / 2);
+		while (client.dispatcher().runningCallsCount() > 0 && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, client.dispatcher().runningCallsCount());
+	}
+
+	private Names create(RetryBudget budget) {
+		CallDecoratorFactory retrying = new RetryingCallDecoratorFactory(budget, scheduler, null);
+		return new Retrofit.Builder().baseUrl(server.url("/")).client(client)
+				.addConverterFactory(JacksonConverterFactory.create())
+				.addCallAdapterFactory(new DecoratingCallAdapterFactory(Names.class,
+						Collections.<CallDecoratorFactory> singletonList(retrying)))
+				.build().create(Names.class);
+	}
+
+	private static MockResponse names(String name) {
+		return new MockResponse().setHeader("Content-Type", "application/json").setBody("[\"" + name + "\"]");
+	}
+
+}
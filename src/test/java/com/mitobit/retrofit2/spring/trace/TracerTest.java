@@ -0,0 +1,220 @@
+package com.mitobit.retrofit2.spring.trace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mitobit.retrofit2.spring.call.CallDecoratorFactory;
+import com.mitobit.retrofit2.spring.call.DecoratingCallAdapterFactory;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+import retrofit2.http.GET;
+
+/**
+ * Tests of the {@link Tracer} against a {@link MockWebServer}.
+ *
+ * @author <a href="mailto:michele.blasi@mitobit.com">Michele Blasi</a>
+ */
+public class TracerTest {
+
+	interface Names {
+
+		@GET("names")
+		Call<List<String>> list();
+
+	}
+
+	private final MockWebServer server = new MockWebServer();
+
+	private final InMemorySpanExporter exporter = new InMemorySpanExporter();
+
+	private final Tracer tracer = new Tracer();
+
+	@Before
+	public void startServer() throws IOException {
+		server.start();
+		tracer.setExporters(Collections.<SpanExporter> singletonList(exporter));
+	}
+
+	@After
+	public void shutdownServer() throws IOException {
+		server.shutdown();
+	}
+
+	@Test
+	public void recordsPhasesOfSampledCall() throws Exception {
+		server.enqueue(names().setHeadersDelay(50, TimeUnit.MILLISECONDS));
+		server.enqueue(names());
+		Names names = create();
+
+		assertEquals(Arrays.asList("a", "b"), names.list().execute().body());
+
+		List<Span> spans = exporter.getSpans(Names.class);
+		assertEquals(1, spans.size());
+		Span span = spans.get(0);
+		assertEquals("list", span.getMethod().getMethod().getName());
+		assertEquals(200, span.getStatusCode());
+		assertEquals(server.url("/names").toString(), span.getUrl());
+		assertNull(span.getError());
+		assertNull(span.getParentSpanId());
+		assertFalse(span.isConnectionReused());
+		assertTrue(span.getPhaseNanos(Phase.CONNECT) > 0);
+		assertTrue(span.getPhaseNanos(Phase.WAIT) >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertTrue(span.getPhaseNanos(Phase.DESERIALIZE) > 0);
+		long phasesNanos = 0;
+		for (long nanos : span.getPhases().values()) {
+			phasesNanos += nanos;
+		}
+		assertTrue(phasesNanos <= span.getDurationNanos());
+
+		names.list().execute();
+
+		span = exporter.getSpans(Names.class).get(1);
+		assertTrue(span.isConnectionReused());
+		assertEquals(0, span.getPhaseNanos(Phase.CONNECT));
+	}
+
+	@Test
+	public void injectsTraceparentOfSpan() throws Exception {
+		server.enqueue(names());
+
+		create().list().execute();
+
+		TraceContext context = exporter.getSpans().get(0).getContext();
+		RecordedRequest request = server.takeRequest();
+		assertEquals("00-" + context.getTraceId() + "-" + context.getSpanId() + "-01",
+				request.getHeader(W3CTracePropagator.TRACEPARENT));
+	}
+
+	@Test
+	public void skipsCallsNotSampled() throws Exception {
+		tracer.setSampleRate(0);
+		server.enqueue(names());
+
+		create().list().execute();
+
+		assertTrue(exporter.getSpans().isEmpty());
+		assertNull(server.takeRequest().getHeader(W3CTracePropagator.TRACEPARENT));
+	}
+
+	@Test
+	public void keepsSamplingDecisionOfParent() throws Exception {
+		final AtomicReference<TraceContext> parent = new AtomicReference<TraceContext>();
+		tracer.setPropagator(new W3CTracePropagator() {
+			@Override
+			public TraceContext currentContext() {
+				return parent.get();
+			}
+		});
+		tracer.setSampleRate(0);
+		server.enqueue(names());
+		server.enqueue(names());
+		Names names = create();
+
+		parent.set(new TraceContext("0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331", true));
+		names.list().execute();
+		parent.set(new TraceContext("0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331", false));
+		names.list().execute();
+
+		List<Span> spans = exporter.getSpans();
+		assertEquals(1, spans.size());
+		assertEquals("0af7651916cd43dd8448eb211c80319c", spans.get(0).getContext().getTraceId());
+		assertEquals("b7ad6b7169203331", spans.get(0).getParentSpanId());
+		assertTrue(server.takeRequest().getHeader(W3CTracePropagator.TRACEPARENT)
+				.startsWith("00-0af7651916cd43dd8448eb211c80319c-"));
+		assertNull(server.takeRequest().getHeader(W3CTracePropagator.TRACEPARENT));
+	}
+
+	@Test
+	public void ignoresCallsOutsideServiceMethods() throws Exception {
+		server.enqueue(names());
+
+		new Retrofit.Builder().baseUrl(server.url("/")).client(client())
+				.addConverterFactory(JacksonConverterFactory.create()).build().create(Names.class).list().execute();
+
+		assertTrue(exporter.getSpans().isEmpty());
+		assertNull(server.takeRequest().getHeader(W3CTracePropagator.TRACEPARENT));
+	}
+
+	@Test
+	public void clearsScopeAfterCall() throws Exception {
+		server.enqueue(names());
+		server.enqueue(new MockResponse().setResponseCode(404).setBody("missing"));
+		Names names = create();
+
+		names.list().execute();
+		assertNull(TraceScope.RECEIVING.get());
+		assertNull(TraceScope.METHOD.get());
+
+		Response<List<String>> response = names.list().execute();
+		assertEquals(404, response.code());
+		assertNull(TraceScope.RECEIVING.get());
+		assertEquals(404, exporter.getSpans().get(1).getStatusCode());
+	}
+
+	@Test
+	public void clearsScopeAfterEnqueuedCall() throws Exception {
+		server.enqueue(names());
+		final AtomicReference<Object> receiving = new AtomicReference<Object>("unset");
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		create().list().enqueue(new Callback<List<String>>() {
+			@Override
+			public void onResponse(Call<List<String>> call, Response<List<String>> response) {
+				receiving.set(TraceScope.RECEIVING.get());
+				latch.countDown();
+			}
+
+			@Override
+			public void onFailure(Call<List<String>> call, Throwable t) {
+				latch.countDown();
+			}
+		});
+
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertNull(receiving.get());
+		Span span = exporter.getSpans().get(0);
+		assertEquals(200, span.getStatusCode());
+		assertTrue(span.getPhaseNanos(Phase.DESERIALIZE) > 0);
+	}
+
+	private Names create() {
+		return new Retrofit.Builder().baseUrl(server.url("/")).client(client())
+				.addConverterFactory(tracer.getConverterFactory())
+				.addConverterFactory(JacksonConverterFactory.create())
+				.addCallAdapterFactory(new DecoratingCallAdapterFactory(Names.class,
+						Collections.<CallDecoratorFactory> singletonList(new TracingCallDecoratorFactory())))
+				.build().create(Names.class);
+	}
+
+	private OkHttpClient client() {
+		return new OkHttpClient.Builder().eventListenerFactory(tracer).addInterceptor(tracer).build();
+	}
+
+	private static MockResponse names() {
+		return new MockResponse().setHeader("Content-Type", "application/json").setBody("[\"a\",\"b\"]");
+	}
+
+}